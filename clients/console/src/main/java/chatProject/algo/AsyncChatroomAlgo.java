@@ -0,0 +1,35 @@
+package chatProject.algo;
+
+import chatProject.model.messages.Chatroom;
+import chatProject.model.user.UserInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The algorithm to manage {@link Chatroom}s, without blocking the caller : see {@link ChatroomAlgo}.
+ * @param <T> the type of messages in the chat
+ */
+public interface AsyncChatroomAlgo<T> {
+
+    /**
+     * Gets the list of all {@link Chatroom}s.
+     * @return the names of all chatrooms in the model, when the server answers
+     */
+    CompletableFuture<List<String>> getCurrentChatroomNamesAsync();
+
+    /**
+     * Gets the model of a chatroom given its ID.
+     * @param chatroomId the chatroom ID
+     * @return the model of the chatroom, when the server answers
+     */
+    CompletableFuture<Chatroom<T>> getChatroomAsync(int chatroomId);
+
+    /**
+     * Adds a new {@link Chatroom} in the model and notifies clients about it.
+     * @param chatroomName the name of the chatroom to create
+     * @param owner the user who created the chatroom
+     * @return the new chatroom ID, when the server answers
+     */
+    CompletableFuture<Integer> addChatroomAsync(String chatroomName, UserInfo owner);
+}
@@ -0,0 +1,42 @@
+package chatProject.algo;
+
+import chatProject.model.messages.Message;
+import chatProject.model.user.UserInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The algorithms to manage {@link Message}s, without blocking the caller : see {@link MessageAlgo}.
+ * @param <T> the type of messages in the chat
+ */
+public interface AsyncMessageAlgo<T> {
+
+    /**
+     * Adds a new {@link Message} in the model and notifies clients about it.
+     * @param chatroomId the ID of the chatroom that contains the message
+     * @param user the use who sent the message
+     * @param content the content of the message
+     * @return the new message added to the model, when the server answers
+     */
+    CompletableFuture<Message<T>> addMessageAsync(int chatroomId, UserInfo user, T content);
+
+    /**
+     * Gets the list of messages in a chatroom.
+     * @param chatroomId the ID of the chatroom to query
+     * @return the list of messages in this chatroom, when the server answers
+     */
+    CompletableFuture<List<Message<T>>> getChatroomMessagesAsync(int chatroomId);
+
+    /**
+     * Gets a page of the messages in a chatroom, between 2 message IDs.
+     * @param chatroomId the ID of the chatroom to query
+     * @param afterId the ID of the message before the page (excluded), null to start at the first message
+     * @param beforeId the ID of the message after the page (excluded), null to stop at the last message
+     * @param limit the maximum number of messages in the page
+     * @return the page of messages (see {@link MessageAlgo#getChatroomMessages(int, Long, Long, int)}),
+     * when the server answers
+     */
+    CompletableFuture<List<Message<T>>> getChatroomMessagesAsync(int chatroomId, Long afterId, Long beforeId,
+                                                                 int limit);
+}
@@ -0,0 +1,33 @@
+package chatProject.algo;
+
+import chatProject.model.user.PresenceChanges;
+import chatProject.model.user.UserInfo;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The algorithms to manage {@link UserInfo}s, without blocking the caller : see {@link UserAlgo}.
+ */
+public interface AsyncUserAlgo {
+
+    /**
+     * Logs in the given user.
+     * @param userName the username to login
+     * @return the logged in user, when the server answers
+     */
+    CompletableFuture<UserInfo> loginAsync(String userName);
+
+    /**
+     * Gets all users registered in the chat.
+     * @return the users stored in the chat, when the server answers
+     */
+    CompletableFuture<Collection<UserInfo>> getUsersAsync();
+
+    /**
+     * Gets the users whose status changed after a version of the presence of the users.
+     * @param sinceVersion the last version known, 0 for all the users
+     * @return the changed users, with the version to ask the next changes from, when the server answers
+     */
+    CompletableFuture<PresenceChanges> getUserChangesAsync(long sinceVersion);
+}
@@ -27,4 +27,14 @@ public interface MessageAlgo<T> extends MessageListener<T> {
      * @return the list of messages in this chatroom
      */
     List<Message<T>> getChatroomMessages(int chatroomId);
+
+    /**
+     * Gets a page of the messages in a chatroom, between 2 message IDs.
+     * @param chatroomId the ID of the chatroom to query
+     * @param afterId the ID of the message before the page (excluded), null to start at the first message
+     * @param beforeId the ID of the message after the page (excluded), null to stop at the last message
+     * @param limit the maximum number of messages in the page
+     * @return the first messages after {@code afterId} if set, the last messages before {@code beforeId} otherwise
+     */
+    List<Message<T>> getChatroomMessages(int chatroomId, Long afterId, Long beforeId, int limit);
 }
@@ -2,6 +2,9 @@ package chatProject.client.chat.algo;
 
 import chatProject.AddMessageForm;
 import chatProject.FakeInstances;
+import chatProject.algo.AsyncChatroomAlgo;
+import chatProject.algo.AsyncMessageAlgo;
+import chatProject.algo.AsyncUserAlgo;
 import chatProject.algo.ChatroomAlgo;
 import chatProject.algo.MessageAlgo;
 import chatProject.algo.UserAlgo;
@@ -11,7 +14,12 @@ import chatProject.model.listener.UserListener;
 import chatProject.model.messages.ChatInstance;
 import chatProject.model.messages.Chatroom;
 import chatProject.model.messages.Message;
+import chatProject.model.messages.MessageIds;
+import chatProject.model.messages.MessagePage;
+import chatProject.model.user.PresenceChanges;
 import chatProject.model.user.UserInfo;
+import chatProject.protocol.NotificationProtocol;
+import chatProject.threads.ThreadMode;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.http.client.fluent.Request;
@@ -20,11 +28,18 @@ import org.apache.http.entity.ContentType;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
-public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>, AutoCloseable {
+/**
+ * The client of the chat : calls the Web services of the server, and receives its notifications on a socket.
+ * Every request has a blocking method and an asynchronous one : the blocking methods wait for the asynchronous ones.
+ * @param <T> the type of messages in the chat
+ */
+public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
+        AsyncUserAlgo, AsyncChatroomAlgo<T>, AsyncMessageAlgo<T>, AutoCloseable {
 
     private final ChatInstance<T> chatInstance;
-    private UserInfo currentUser;
+    private volatile UserInfo currentUser;
 
     private final Map<Integer, Collection<MessageListener<T>>> messageListeners;
     private final Collection<ChatroomsListener<T>> chatroomListeners;
@@ -34,22 +49,75 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
 
     private final Gson json = new Gson();
 
+    /**
+     * Sends the requests to the server on pooled keep-alive connections, without blocking the caller.
+     */
+    private final HttpTransport http;
+
+    /**
+     * The number of messages asked per request when catching up with a chatroom.
+     */
+    private static final int SYNC_PAGE_SIZE = 500;
+
     private SocketReader<T> socketListener = null;
 
+    private Thread socketThread = null;
+
+    /**
+     * The thread keeping the current user active on the server : heartbeats on the socket, or logins over HTTP.
+     * Must be interrupted on close.
+     */
     private Thread pingThread = null;
 
+    /**
+     * Notified on the actions of the user, to wake up the ping thread when the heartbeats backed off.
+     */
+    private final Object activity = new Object();
+
+    /**
+     * The time of the last action of the user, from {@link System#nanoTime()}.
+     */
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * The interval announced by the last heartbeat, in milliseconds (0 without heartbeats).
+     */
+    private volatile long heartbeatMillis = 0;
+
+    /**
+     * The version of the presence of the users known by this client.
+     */
+    private volatile long usersVersion = 0;
+
+    /**
+     * The kind of threads running the blocking work of this client.
+     */
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
     public ChatClient(ChatInstance<T> chatInstance,
                       UserInfo currentUser,
                       Map<Integer, Collection<MessageListener<T>>> messageListeners,
                       Collection<ChatroomsListener<T>> chatroomListeners,
                       Collection<UserListener> usersListeners,
                       String serverUrl) {
+        this(chatInstance, currentUser, messageListeners, chatroomListeners, usersListeners, serverUrl,
+                new HttpTransport(TransportConfig.fromSystemProperties(), ThreadMode.PLATFORM));
+    }
+
+    public ChatClient(ChatInstance<T> chatInstance,
+                      UserInfo currentUser,
+                      Map<Integer, Collection<MessageListener<T>>> messageListeners,
+                      Collection<ChatroomsListener<T>> chatroomListeners,
+                      Collection<UserListener> usersListeners,
+                      String serverUrl,
+                      HttpTransport http) {
         this.chatInstance = chatInstance;
         this.currentUser = currentUser;
         this.messageListeners = messageListeners;
         this.chatroomListeners = chatroomListeners;
         this.usersListeners = usersListeners;
         this.serverUrl = serverUrl;
+        this.http = http;
     }
 
     public static <T> ChatClient<T> initEmptyChat(
@@ -59,14 +127,17 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
 
         final String serverUrl = "http://" + hostname + ':' + webServerPort + '/';
 
+        final ThreadMode threadMode = ThreadMode.fromSystemProperties();
         final ChatClient<T> client = new ChatClient<>(
                 ChatInstance.initEmptyChat(),
                 FakeInstances.UNKNOWN_USER_INFO,
                 new HashMap<>(),
                 new HashSet<>(),
                 new HashSet<>(),
-                serverUrl
+                serverUrl,
+                new HttpTransport(TransportConfig.fromSystemProperties(), threadMode)
         );
+        client.threadMode = threadMode;
 
         client.socketListener = new SocketReader<> (
                 hostname,
@@ -74,22 +145,9 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
                 client,
                 client.json
         );
-        client.socketListener.start();
+        client.socketThread = client.threadMode.start("socket-reader", client.socketListener);
 
-        client.pingThread = new Thread(() -> {
-            while(true) {
-                try {
-                    Thread.sleep(1000); // ping every 1s
-                    if (client.currentUser != null
-                            && !client.currentUser.equals(FakeInstances.UNKNOWN_USER_INFO)) {
-                        client.login(client.currentUser.getAccount().getUsername());
-                    }
-                } catch (InterruptedException e) {
-                    // interrupted
-                    break;
-                }
-            }
-        });
+        client.pingThread = client.threadMode.newThread("ping", client::keepAlive);
         client.pingThread.start();
 
         return client;
@@ -102,7 +160,66 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
         pingThread.interrupt();
         // cleanly close the socket on exit
         socketListener.closeSocket();
-        socketListener.interrupt();
+        socketThread.interrupt();
+        // stop the requests in flight
+        http.close();
+    }
+
+    /**
+     * The loop of the ping thread : keeps the current user active on the server.
+     * Once the socket is authenticated, sends heartbeats on it : the interval doubles while the user is idle,
+     * up to the longest interval offered by the server, and is back to the shortest one on the next action of the user.
+     * Until then (or with a server without heartbeats), logs in again over HTTP every second.
+     */
+    private void keepAlive() {
+        long lastHeartbeat = System.nanoTime();
+        while (true) {
+            try {
+                if (socketListener.isAuthenticated()) {
+                    final long minMillis = socketListener.getMinHeartbeatMillis();
+                    final boolean idle = lastActivity - lastHeartbeat < 0;
+                    heartbeatMillis = (idle && heartbeatMillis > 0)
+                            ? Math.min(heartbeatMillis * 2, socketListener.getMaxHeartbeatMillis())
+                            : minMillis;
+                    lastHeartbeat = System.nanoTime();
+                    socketListener.heartbeat(heartbeatMillis);
+                    synchronized (activity) {
+                        // woken up early by an action of the user
+                        activity.wait(heartbeatMillis);
+                    }
+                } else {
+                    heartbeatMillis = 0;
+                    Thread.sleep(1000); // ping every 1s
+                    if (currentUser != null && !currentUser.equals(FakeInstances.UNKNOWN_USER_INFO)) {
+                        login(currentUser.getAccount().getUsername());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // interrupted
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records an action of the user : the heartbeats are back to the shortest interval.
+     */
+    private void onActivity() {
+        lastActivity = System.nanoTime();
+        // no heartbeat without socket
+        if (heartbeatMillis > 0 && heartbeatMillis > socketListener.getMinHeartbeatMillis()) {
+            synchronized (activity) {
+                activity.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the kind of threads running the blocking work of this client.
+     * @return the thread mode selected at startup
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
     }
 
     /* **************************** User part *********************/
@@ -120,42 +237,78 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public UserInfo login(String userName) {
-
-        final String response;
-        try {
-            response = Request.Post(serverUrl + "/login").bodyByteArray(userName.getBytes())
-                    .execute().returnContent().asString();
-        } catch (IOException e) {
-            System.err.println("Cannot login " + userName);
-            return FakeInstances.UNKNOWN_USER_INFO;
-        }
-
-        final UserInfo user =
-                Optional.ofNullable(response)
-                        .map(resp -> json.fromJson(resp, UserInfo.class))
-                        .orElse(FakeInstances.UNKNOWN_USER_INFO);
-        this.currentUser = user;
-        return user;
+        return HttpTransport.await(loginAsync(userName));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<UserInfo> loginAsync(String userName) {
+        return http.send(Request.Post(serverUrl + "/login").bodyByteArray(userName.getBytes()),
+                        "Cannot login " + userName,
+                        NotificationProtocol.SESSION_HEADER,
+                        token -> {
+                            if (socketListener != null) {
+                                // the socket keeps the user active once authenticated
+                                socketListener.authenticate(token);
+                            }
+                        })
+                .handle((response, error) -> {
+                    if (error != null) {
+                        System.err.println("Cannot login " + userName);
+                        return FakeInstances.UNKNOWN_USER_INFO;
+                    }
+                    final UserInfo user =
+                            Optional.ofNullable(response)
+                                    .map(resp -> json.fromJson(resp, UserInfo.class))
+                                    .orElse(FakeInstances.UNKNOWN_USER_INFO);
+                    this.currentUser = user;
+                    return user;
+                });
+    }
 
     /**
+     * Gets the users of the chat, only downloading the presence changes since the last call.
+     * The changes are merged in the users of the client.
      * {@inheritDoc}
      */
     @Override
     public Collection<UserInfo> getUsers() {
+        return HttpTransport.await(getUsersAsync());
+    }
+
+    /**
+     * Gets the users of the chat, only downloading the presence changes since the last call.
+     * The changes are merged in the users of the client.
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Collection<UserInfo>> getUsersAsync() {
+        return getUserChangesAsync(usersVersion).thenApply(changes -> {
+            synchronized (this) {
+                changes.getUsers().forEach(this::notifyUserChange);
+                usersVersion = changes.getVersion();
+            }
+            return new ArrayList<>(chatInstance.getUsers().keySet());
+        });
+    }
 
-        try {
-            final String response = Request.Get(serverUrl + "/users")
-                    .execute().returnContent().asString();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PresenceChanges getUserChanges(long sinceVersion) {
+        return HttpTransport.await(getUserChangesAsync(sinceVersion));
+    }
 
-            // we need a Type token to deserialize a list with a parametrized type
-            // avoids cast issues from Tree to concrete class
-            Type listOfUsers = new TypeToken<Collection<UserInfo>>() {}.getType();
-            return json.fromJson(response, listOfUsers);
-        } catch (IOException e) {
-            throw new RuntimeException("Cannot get users", e);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PresenceChanges> getUserChangesAsync(long sinceVersion) {
+        return http.get(serverUrl + "/users?sinceVersion=" + sinceVersion, "Cannot get users")
+                .thenApply(response -> json.fromJson(response, PresenceChanges.class));
     }
 
     /**
@@ -186,15 +339,17 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public List<String> getCurrentChatroomNames() {
-        try {
-            Type listOfString = new TypeToken<List<String>>() {}.getType();
-            return json.fromJson(
-                    Request.Get(serverUrl + "/chatrooms")
-                            .execute().returnContent().asString(),
-                    listOfString);
-        } catch (IOException e) {
-            throw new RuntimeException("Cannot get chatroom names", e);
-        }
+        return HttpTransport.await(getCurrentChatroomNamesAsync());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<String>> getCurrentChatroomNamesAsync() {
+        Type listOfString = new TypeToken<List<String>>() {}.getType();
+        return http.get(serverUrl + "/chatrooms", "Cannot get chatroom names")
+                .thenApply(response -> json.fromJson(response, listOfString));
     }
 
     /**
@@ -202,24 +357,32 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public Chatroom<T> getChatroom(int chatroomId) {
-        try {
-            Type chatroomT = new TypeToken<Chatroom<T>>() {}.getType();
-            return json.fromJson(
-                    Request.Get(serverUrl + "/chatroom/" + chatroomId)
-                            .execute().returnContent().asString(),
-                    chatroomT);
-        } catch (IOException e) {
-            throw new RuntimeException("Cannot get chatroom " + chatroomId, e);
-        }
+        return HttpTransport.await(getChatroomAsync(chatroomId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Chatroom<T>> getChatroomAsync(int chatroomId) {
+        Type chatroomT = new TypeToken<Chatroom<T>>() {}.getType();
+        return http.get(serverUrl + "/chatroom/" + chatroomId, "Cannot get chatroom " + chatroomId)
+                .thenApply(response -> json.fromJson(response, chatroomT));
     }
 
     /**
      * Gets the name of a chatroom given its ID.
+     * Read from the names of the chatrooms (in the order of their IDs) : the messages of the chatroom are not downloaded.
      * @param chatroomId the chatroom ID
      * @return the chatroom name
+     * @throws RuntimeException if the chatroom does not exist
      */
     public String getChatroomName(int chatroomId) {
-        return getChatroom(chatroomId).getName();
+        final List<String> names = getCurrentChatroomNames();
+        if (chatroomId < 0 || chatroomId >= names.size()) {
+            throw new RuntimeException("Cannot get chatroom " + chatroomId);
+        }
+        return names.get(chatroomId);
     }
 
     /**
@@ -227,16 +390,25 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public int addChatroom(String chatroomName, UserInfo owner) {
-        try {
-            final String response = Request.Put(serverUrl + "/chatroom/" + chatroomName).bodyString(
-                    json.toJson(owner),
-                    ContentType.APPLICATION_JSON
-            ).execute().returnContent().asString();
-            return json.fromJson(response, Integer.class);
-        } catch (IOException e) {
-            System.err.println("Cannot add chatroom");
-            return -1;
-        }
+        return HttpTransport.await(addChatroomAsync(chatroomName, owner));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Integer> addChatroomAsync(String chatroomName, UserInfo owner) {
+        return http.send(Request.Put(serverUrl + "/chatroom/" + chatroomName).bodyString(
+                        json.toJson(owner),
+                        ContentType.APPLICATION_JSON
+                ), "Cannot add chatroom " + chatroomName)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        System.err.println("Cannot add chatroom");
+                        return -1;
+                    }
+                    return json.fromJson(response, Integer.class);
+                });
     }
 
     /**
@@ -244,6 +416,7 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      * @param chatroomName the name of the chatroom to create
      */
     public void createChatroomFromCurrentUser(String chatroomName) {
+        onActivity();
         addChatroom(chatroomName, currentUser);
     }
 
@@ -269,12 +442,14 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     /* **************************** Messages part *********************/
 
     /**
-     * Sends a new message in a chatroom using the current user of the client.
+     * Sends a new message in a chatroom using the current user of the client, without waiting for the server.
      * @param chatroomId the ID of the chatroom where the message is sent
      * @param message the content of the message to send
+     * @return the new message, when the server answers
      */
-    public void sendMessageForCurrentUser(int chatroomId, T message) {
-        addMessage(chatroomId, currentUser, message);
+    public CompletableFuture<Message<T>> sendMessageForCurrentUser(int chatroomId, T message) {
+        onActivity();
+        return addMessageAsync(chatroomId, currentUser, message);
     }
 
     /**
@@ -282,23 +457,47 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public Message<T> addMessage(int chatroomId, UserInfo currentUser, T content) {
+        return HttpTransport.await(addMessageAsync(chatroomId, currentUser, content));
+    }
 
-        final String response;
-        try {
-            response = Request.Put(serverUrl + "/message")
-                    .bodyString(
-                            json.toJson(new AddMessageForm<>(chatroomId, currentUser, content.toString())),
-                            ContentType.APPLICATION_JSON
-                    ).execute().returnContent().asString();
-            Type messageT = new TypeToken<Message<T>>() {}.getType();
-            return json.fromJson(response, messageT);
-        } catch (IOException e) {
-            throw new RuntimeException(
-                    "Unable to add the message in chatroom " + chatroomId
-                            + " for user " + currentUser
-                            + " with content " + content,
-                    e);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Message<T>> addMessageAsync(int chatroomId, UserInfo currentUser, T content) {
+        Type messageT = new TypeToken<Message<T>>() {}.getType();
+        return http.send(Request.Put(serverUrl + "/message")
+                        .bodyString(
+                                json.toJson(new AddMessageForm<>(chatroomId, currentUser, content.toString())),
+                                ContentType.APPLICATION_JSON
+                        ),
+                "Unable to add the message in chatroom " + chatroomId
+                        + " for user " + currentUser
+                        + " with content " + content)
+                .thenApply(response -> json.fromJson(response, messageT));
+    }
+
+    /**
+     * Sends many messages in one request, possibly in many chatrooms (e.g. for a bot or a bridge).
+     * The messages of a chatroom keep the order of the list.
+     * @param messages the messages to send
+     * @return the IDs of the new messages, in the order of the list
+     */
+    public List<Long> addMessages(List<AddMessageForm<T>> messages) {
+        return HttpTransport.await(addMessagesAsync(messages));
+    }
+
+    /**
+     * Sends many messages in one request, without waiting for the server (see {@link #addMessages(List)}).
+     * @param messages the messages to send
+     * @return the IDs of the new messages, in the order of the list, when the server answers
+     */
+    public CompletableFuture<List<Long>> addMessagesAsync(List<AddMessageForm<T>> messages) {
+        Type listOfIds = new TypeToken<List<Long>>() {}.getType();
+        return http.send(Request.Put(serverUrl + "/messages/batch")
+                                .bodyString(json.toJson(messages), ContentType.APPLICATION_JSON),
+                        "Unable to add a batch of " + messages.size() + " messages")
+                .thenApply(response -> json.fromJson(response, listOfIds));
     }
 
     /**
@@ -306,19 +505,106 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public List<Message<T>> getChatroomMessages(int chatroomId) {
+        return HttpTransport.await(getChatroomMessagesAsync(chatroomId));
+    }
 
-        final String response;
-        try {
-            response = Request.Get(serverUrl + "/messages/" + chatroomId)
-                    .execute().returnContent().asString();
-
-            // we need a Type token to deserialize a list with a parametrized type
-            // avoids cast issues from Tree to concrete class
-            Type listOfMessages = new TypeToken<List<Message<T>>>() {}.getType();
-            return json.fromJson(response, listOfMessages);
-        } catch (IOException e) {
-            throw new RuntimeException("Cannot get chatroom messages for " + chatroomId, e);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Message<T>>> getChatroomMessagesAsync(int chatroomId) {
+        return http.send(Request.Get(serverUrl + "/messages/" + chatroomId + "?users=true"),
+                        "Cannot get chatroom messages for " + chatroomId)
+                .thenApply(this::readMessagePage);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Message<T>> getChatroomMessages(int chatroomId, Long afterId, Long beforeId, int limit) {
+        return HttpTransport.await(getChatroomMessagesAsync(chatroomId, afterId, beforeId, limit));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Message<T>>> getChatroomMessagesAsync(int chatroomId, Long afterId, Long beforeId,
+                                                                        int limit) {
+        final StringBuilder url = new StringBuilder(serverUrl + "/messages/" + chatroomId
+                + "?users=true&limit=" + limit);
+        if (afterId != null) {
+            url.append("&after=").append(afterId);
         }
+        if (beforeId != null) {
+            url.append("&before=").append(beforeId);
+        }
+        return http.send(Request.Get(url.toString()), "Cannot get chatroom messages for " + chatroomId)
+                .thenApply(this::readMessagePage);
+    }
+
+    /**
+     * Reads messages sent with the table of their senders : the senders are merged in the users of the client.
+     * @param response the JSON of a {@link MessagePage}
+     * @return the messages
+     */
+    private List<Message<T>> readMessagePage(String response) {
+        // we need a Type token to deserialize a page with a parametrized type
+        // avoids cast issues from Tree to concrete class
+        Type pageOfMessages = new TypeToken<MessagePage<T>>() {}.getType();
+        final MessagePage<T> page = json.fromJson(response, pageOfMessages);
+        page.getUsers().forEach(this::notifyUserChange);
+        return page.getMessages();
+    }
+
+    /**
+     * Finds the sender of a message in the users of the client.
+     * The users are downloaded again once if the sender is not known yet.
+     * @param message the message
+     * @return the sender, null if it is not a user of the chat
+     */
+    public UserInfo resolveSender(Message<T> message) {
+        if (message.getSenderId() == Message.NO_SENDER) {
+            return null;
+        }
+        final UserInfo known = chatInstance.getUser(message.getSenderId());
+        if (known != null) {
+            return known;
+        }
+        getUsers();
+        return chatInstance.getUser(message.getSenderId());
+    }
+
+    /**
+     * Gets the messages of a chatroom sent after a message, page by page.
+     * @param chatroomId the ID of the chatroom to query
+     * @param lastSeenId the ID of the last message known by the caller, null to get all the messages
+     * @return the newer messages, in order
+     */
+    public List<Message<T>> getMessagesSince(int chatroomId, Long lastSeenId) {
+        final List<Message<T>> messages = new ArrayList<>();
+        // without cursor, the server gives the last page : page forward from the first message instead
+        Long after = (lastSeenId == null) ? MessageIds.BEFORE_FIRST : lastSeenId;
+        List<Message<T>> page;
+        do {
+            page = getChatroomMessages(chatroomId, after, null, SYNC_PAGE_SIZE);
+            messages.addAll(page);
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == SYNC_PAGE_SIZE);
+        return messages;
+    }
+
+    /**
+     * Gets the last messages of a chatroom.
+     * @param chatroomId the ID of the chatroom to query
+     * @param count the number of messages to get
+     * @return the last messages of the chatroom, in order
+     */
+    public List<Message<T>> getLastMessages(int chatroomId, int count) {
+        return getChatroomMessages(chatroomId, null, null, count);
     }
 
     /**
@@ -347,6 +633,26 @@ public class ChatClient<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
 
         currentListeners.add(listener);
         messageListeners.put(chatroomId, currentListeners);
+        // receive only the messages of the chatrooms listened to
+        if (socketListener != null) {
+            socketListener.subscribe(chatroomId);
+        }
+    }
+
+    /**
+     * Removes a listener on message changes in a chatroom.
+     * The server stops sending the messages of the chatroom once there is no more listener on it.
+     * @param chatroomId the chatroom listened to
+     * @param listener the listener to remove
+     */
+    public void removeMessageListener(int chatroomId, MessageListener<T> listener) {
+        final Collection<MessageListener<T>> currentListeners = this.messageListeners.get(chatroomId);
+        if (currentListeners != null && currentListeners.remove(listener) && currentListeners.isEmpty()) {
+            messageListeners.remove(chatroomId);
+            if (socketListener != null) {
+                socketListener.unsubscribe(chatroomId);
+            }
+        }
     }
 
 }
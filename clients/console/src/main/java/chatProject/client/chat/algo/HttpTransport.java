@@ -0,0 +1,155 @@
+package chatProject.client.chat.algo;
+
+import chatProject.threads.ThreadMode;
+import org.apache.http.Header;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.fluent.Content;
+import org.apache.http.client.fluent.ContentResponseHandler;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The HTTP requests of a client to the server, run without blocking the caller.
+ * <p>
+ * The requests are sent on a pool of keep-alive connections : a connection is reused by the next requests
+ * instead of being opened for each one. At most {@link TransportConfig#getMaxRequestsPerHost()} requests are in
+ * flight, each on its own connection and its own request thread. The next requests wait in the queue of the threads.
+ */
+public class HttpTransport implements Closeable {
+
+    /**
+     * The pooled connections to the server.
+     */
+    private final PoolingHttpClientConnectionManager connections;
+    private final CloseableHttpClient httpClient;
+    /**
+     * Runs the fluent requests on the pooled connections.
+     */
+    private final Executor http;
+    /**
+     * The threads waiting for the responses : one per request in flight.
+     */
+    private final ExecutorService requestThreads;
+    /**
+     * The last bodies read, reused while the server does not change them.
+     */
+    private final ResponseCache responses;
+
+    public HttpTransport(TransportConfig config, ThreadMode threadMode) {
+        connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(config.getMaxRequestsPerHost());
+        connections.setDefaultMaxPerRoute(config.getMaxRequestsPerHost());
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(config.getConnectTimeoutMillis())
+                        .setSocketTimeout(config.getReadTimeoutMillis())
+                        .build())
+                .build();
+        http = Executor.newInstance(httpClient);
+        responses = new ResponseCache(http);
+
+        final AtomicInteger threads = new AtomicInteger();
+        requestThreads = Executors.newFixedThreadPool(config.getMaxRequestsPerHost(), task -> {
+            final Thread thread = threadMode.newThread("http-" + threads.incrementAndGet(), task);
+            // never keeps the client running
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends a request and reads the body of its response.
+     * @param request the request to send
+     * @param failure the message of the error if the request fails
+     * @return the body of the response, or a {@link RuntimeException} with the message and the cause of the failure
+     */
+    public CompletableFuture<String> send(Request request, String failure) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return http.execute(request).returnContent().asString();
+            } catch (IOException e) {
+                throw new RuntimeException(failure, e);
+            }
+        }, requestThreads);
+    }
+
+    /**
+     * Sends a request and reads the body of its response, handing a header of the response to the caller.
+     * @param request the request to send
+     * @param failure the message of the error if the request fails
+     * @param header the name of the header to read
+     * @param onHeader called with the value of the header (null if the response has none) before the body is read
+     * @return the body of the response, or a {@link RuntimeException} with the message and the cause of the failure
+     */
+    public CompletableFuture<String> send(Request request, String failure, String header, Consumer<String> onHeader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return http.execute(request).handleResponse(response -> {
+                    final Content content = new ContentResponseHandler().handleResponse(response);
+                    final Header value = response.getFirstHeader(header);
+                    onHeader.accept(value == null ? null : value.getValue());
+                    return content.asString();
+                });
+            } catch (IOException e) {
+                throw new RuntimeException(failure, e);
+            }
+        }, requestThreads);
+    }
+
+    /**
+     * Gets the body of a URL, reusing the last body read if the server did not change it (see {@link ResponseCache}).
+     * @param url the URL to GET
+     * @param failure the message of the error if the request fails
+     * @return the body of the response, or a {@link RuntimeException} with the message and the cause of the failure
+     */
+    public CompletableFuture<String> get(String url, String failure) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return responses.get(url);
+            } catch (IOException e) {
+                throw new RuntimeException(failure, e);
+            }
+        }, requestThreads);
+    }
+
+    /**
+     * Waits for the result of a request : the blocking methods of the client wrap the asynchronous ones.
+     * @param future the result of the request
+     * @param <R> the type of the result
+     * @return the result
+     * @throws RuntimeException the failure of the request
+     */
+    public static <R> R await(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the request threads and closes the connections.
+     * @throws IOException if the connections cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        requestThreads.shutdownNow();
+        httpClient.close();
+    }
+}
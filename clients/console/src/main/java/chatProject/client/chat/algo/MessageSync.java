@@ -0,0 +1,95 @@
+package chatProject.client.chat.algo;
+
+import chatProject.model.listener.MessageListener;
+import chatProject.model.messages.Message;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Keeps a view of a chatroom up to date with the messages pushed by the socket and a periodic delta poll.
+ * <p>
+ * The poll only asks the server for the messages after the last one it confirmed ({@link #syncedId}) :
+ * the messages of the socket received meanwhile are remembered until the poll confirms them,
+ * so that each message is delivered once, even if the socket missed or reordered some of them.
+ * @param <T> the type of messages to use
+ */
+public class MessageSync<T> implements MessageListener<T> {
+
+    private final ChatClient<T> chat;
+    private final int chatroomId;
+
+    /**
+     * The view to deliver the new messages to.
+     */
+    private final MessageListener<T> view;
+
+    /**
+     * The ID of the last message of the server known to be delivered with all the previous ones, null if none.
+     */
+    private Long syncedId = null;
+
+    /**
+     * The IDs of the messages delivered from the socket after {@link #syncedId}.
+     */
+    private final TreeSet<Long> pushedIds = new TreeSet<>();
+
+    public MessageSync(ChatClient<T> chat, int chatroomId, MessageListener<T> view) {
+        this.chat = chat;
+        this.chatroomId = chatroomId;
+        this.view = view;
+    }
+
+    /**
+     * Starts the sync from the messages already displayed by the view.
+     * @param displayed the last messages of the chatroom, in order
+     */
+    public synchronized void start(List<Message<T>> displayed) {
+        if (!displayed.isEmpty()) {
+            syncedId = displayed.get(displayed.size() - 1).getId();
+        }
+        pushedIds.clear();
+    }
+
+    /**
+     * Delivers a message pushed by the socket, unless it was already delivered.
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Message<T> notifyNewMessage(int chatroomId, Message<T> message) {
+        if ((syncedId == null || message.getId() > syncedId) && pushedIds.add(message.getId())) {
+            view.notifyNewMessage(chatroomId, message);
+        }
+        return message;
+    }
+
+    /**
+     * Asks the server for the messages after the last synced one, and delivers the ones the socket did not push.
+     */
+    public void poll() {
+        final Long since;
+        synchronized (this) {
+            since = syncedId;
+        }
+        // outside of the lock : the socket keeps delivering meanwhile
+        final List<Message<T>> newMessages = chat.getMessagesSince(chatroomId, since);
+
+        synchronized (this) {
+            if (!Objects.equals(since, syncedId)) {
+                // restarted meanwhile
+                return;
+            }
+            for (Message<T> message : newMessages) {
+                if (!pushedIds.remove(message.getId())) {
+                    view.notifyNewMessage(chatroomId, message);
+                }
+                syncedId = message.getId();
+            }
+            // forget the messages confirmed by the server
+            if (syncedId != null) {
+                pushedIds.headSet(syncedId, true).clear();
+            }
+        }
+    }
+}
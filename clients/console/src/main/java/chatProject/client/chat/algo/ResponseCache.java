@@ -0,0 +1,99 @@
+package chatProject.client.chat.algo;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last bodies read from the server, with their ETag.
+ * A GET sends back the ETag of the body it already has (If-None-Match) : if the server answers 304 (Not Modified),
+ * the body is reused instead of being downloaded again.
+ * Only the bodies of the last URLs read are kept.
+ * <p>
+ * The requests ask for a compressed response (gzip or deflate) and the bodies are decompressed when read :
+ * done by the HTTP client, the bodies kept are the JSON.
+ */
+public class ResponseCache {
+
+    /**
+     * The number of URLs whose body is kept.
+     */
+    private static final int MAX_ENTRIES = 32;
+
+    /**
+     * A body with its version on the server.
+     */
+    private static class CachedBody {
+        private final String etag;
+        private final String body;
+
+        private CachedBody(String etag, String body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Sends the requests.
+     */
+    private final Executor http;
+
+    /**
+     * The bodies by URL, the least recently read first. Guarded by itself.
+     */
+    private final Map<String, CachedBody> entries = new LinkedHashMap<String, CachedBody>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedBody> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public ResponseCache(Executor http) {
+        this.http = http;
+    }
+
+    /**
+     * Gets the body of a URL, from the cache if the server did not change it.
+     * @param url the URL to GET
+     * @return the body of the response, in UTF-8
+     * @throws IOException if the server cannot be reached or answers with an error
+     */
+    public String get(String url) throws IOException {
+        final CachedBody cached;
+        synchronized (entries) {
+            cached = entries.get(url);
+        }
+        final Request request = Request.Get(url);
+        if (cached != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, cached.etag);
+        }
+        final HttpResponse response = http.execute(request).returnResponse();
+        final int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+            return cached.body;
+        }
+        if (status >= 300) {
+            throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
+        }
+        final String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        final Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        synchronized (entries) {
+            if (etag != null) {
+                entries.put(url, new CachedBody(etag.getValue(), body));
+            } else {
+                entries.remove(url);
+            }
+        }
+        return body;
+    }
+}
@@ -2,29 +2,105 @@ package chatProject.client.chat.algo;
 
 import chatProject.model.messages.Chatroom;
 import chatProject.model.messages.Message;
+import chatProject.model.messages.MessageBatch;
 import chatProject.model.user.UserInfo;
+import chatProject.protocol.BinaryFrame;
+import chatProject.protocol.FrameType;
+import chatProject.protocol.NotificationProtocol;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A dedicated class to manage the socket that sends and receives notifications from and to the server.
+ * The reader subscribes to the chatrooms it needs the messages of, so the server does not send the others.
+ * The connection starts with the text protocol and upgrades to the binary protocol if the server offers it
+ * (see {@link NotificationProtocol}). Both protocols are parsed from the raw bytes, without intermediate Strings.
+ * <p>
+ * If the server offers heartbeats, the reader authenticates the connection with the session token of the user :
+ * the heartbeats sent on this connection then keep the user active, instead of logging in again over HTTP.
  * @param <T> the type of messages to use (probably String)
  */
-public class SocketReader<T> extends Thread {
+public class SocketReader<T> implements Runnable {
 
     private final String serverHostname;
     private final int serverSocketPort;
     private final ChatClient<T> chatClient;
     private final Gson json;
 
+    /**
+     * The highest version of the protocol to use (the binary protocol unless overridden at startup).
+     */
+    private final int maxVersion = Integer.getInteger(
+            "chat.notifications.protocolVersion", NotificationProtocol.BINARY_VERSION);
+
+    // we need a Type token to deserialize a parametrized type
+    private final Type chatroomT = new TypeToken<Chatroom<T>>() {}.getType();
+    private final Type messageT = new TypeToken<Message<T>>() {}.getType();
+    private final Type batchT = new TypeToken<MessageBatch<T>>() {}.getType();
+
+    /**
+     * The chatrooms this client needs the messages of.
+     * Sent again to the server when the socket is opened.
+     */
+    private final Set<Integer> subscriptions = ConcurrentHashMap.newKeySet();
+
     private Socket socket;
 
+    private OutputStream output;
+
+    /**
+     * The version of the protocol of the frames sent to the server.
+     */
+    private int outputVersion = NotificationProtocol.TEXT_VERSION;
+
+    /**
+     * The version of the protocol of the frames received from the server (only used by this thread).
+     */
+    private int inputVersion = NotificationProtocol.TEXT_VERSION;
+
+    /**
+     * The buffer holding the frame being read (only used by this thread).
+     */
+    private byte[] buffer = new byte[8192];
+
+    /**
+     * The sequence number of the last event received in the binary protocol.
+     */
+    private volatile long lastSequence = 0;
+
+    /**
+     * The session token of the user, to authenticate the connection. Null until logged in.
+     */
+    private String sessionToken = null;
+
+    /**
+     * The bounds of the interval between two heartbeats offered by the server, in milliseconds.
+     * 0 if the server does not support heartbeats (or did not offer them yet).
+     */
+    private volatile long minHeartbeatMillis = 0;
+    private volatile long maxHeartbeatMillis = 0;
+
+    /**
+     * True once the server acknowledged the authentication of the connection.
+     */
+    private volatile boolean authenticated = false;
+
     public SocketReader(String serverHostname, int serverSocketPort, ChatClient<T> chatClient, Gson json) {
         this.serverHostname = serverHostname;
         this.serverSocketPort = serverSocketPort;
@@ -32,50 +108,31 @@ public class SocketReader<T> extends Thread {
         this.json = json;
     }
 
+    @Override
     public void run() {
         try {
             this.socket = new Socket(serverHostname, serverSocketPort);
+            synchronized (this) {
+                this.output = socket.getOutputStream();
+                // subscriptions done before the socket was opened
+                for (Integer chatroomId : subscriptions) {
+                    sendControl(FrameType.SUBSCRIBE, chatroomId);
+                }
+            }
         } catch (IOException | RuntimeException e) {
             System.err.println("Unable to connect to host : " + serverHostname + ":" + serverSocketPort);
             System.exit(2);
         }
-        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
 
             while (true) {
                 try {
-                    String response = reader.readLine();
-                    if (response != null && !response.isEmpty()) {
-                        final int code = Character.getNumericValue(response.charAt(0));
-                        switch (code) {
-                            case 0:
-                                // ADD CHATROOM
-                                Type chatroomT = new TypeToken<Chatroom<T>>() {}.getType();
-                                final Chatroom<T> chatroom = json.fromJson(
-                                        response.substring(1),
-                                        chatroomT);
-                                chatClient.notifyNewChatroom(chatroom);
-                                break;
-                            case 1:
-                                // NEW MESSAGE
-                                final int chatroomId = Character.getNumericValue(response.charAt(1));
-                                Type messageT = new TypeToken<Message<T>>() {}.getType();
-                                final Message<T> msg = json.fromJson(
-                                        response.substring(2),
-                                        messageT
-                                );
-                                chatClient.notifyNewMessage(chatroomId, msg);
-                                break;
-                            case 2:
-                                // USER CHANGED
-                                final UserInfo user = json.fromJson(
-                                        response.substring(1),
-                                        UserInfo.class
-                                );
-                                chatClient.notifyUserChange(user);
-                            default:
-                                break;
-                        }
-
+                    final boolean open = (inputVersion == NotificationProtocol.BINARY_VERSION)
+                            ? readBinaryFrame(input)
+                            : readLine(input);
+                    if (!open) {
+                        // the server closed the socket
+                        return;
                     }
                 } catch (IOException ex) {
                     // socket closed
@@ -84,6 +141,295 @@ public class SocketReader<T> extends Thread {
             }
         } catch (IOException e) {
             throw new RuntimeException("Unable to open new socket to reach " + serverHostname + " on port " + serverSocketPort);
+        } finally {
+            // the heartbeats cannot keep the user active anymore
+            authenticated = false;
+        }
+    }
+
+    /**
+     * Reads and handles a line of the text protocol :
+     * the frame type code, the chatroom ID for new messages, then the Json of the event.
+     * @param input the socket input
+     * @return false if the end of the stream is reached
+     * @throws IOException if the socket is closed
+     */
+    private boolean readLine(DataInputStream input) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                return false;
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = (byte) b;
+        }
+        if (length == 0) {
+            return true;
+        }
+
+        final FrameType type = FrameType.fromCode(Character.getNumericValue(buffer[0]));
+        int offset = 1;
+        int chatroomId = -1;
+        if (type == FrameType.NEW_MESSAGE) {
+            // the chatroom ID is followed by the Json object
+            chatroomId = 0;
+            while (offset < length && buffer[offset] >= '0' && buffer[offset] <= '9') {
+                chatroomId = chatroomId * 10 + (buffer[offset++] - '0');
+            }
+        }
+        if (type != null) {
+            dispatch(type, chatroomId, buffer, offset, length - offset);
+        }
+        return true;
+    }
+
+    /**
+     * Reads and handles a frame of the binary protocol.
+     * @param input the socket input
+     * @return false if the end of the stream is reached
+     * @throws IOException if the socket is closed or the frame is invalid
+     */
+    private boolean readBinaryFrame(DataInputStream input) throws IOException {
+        final int length;
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        if (length <= 0 || length > NotificationProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length : " + length);
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        input.readFully(buffer, 0, length);
+
+        final BinaryFrame frame;
+        try {
+            frame = BinaryFrame.decode(ByteBuffer.wrap(buffer, 0, length));
+        } catch (IllegalArgumentException e) {
+            // unknown frame type from a newer server - skip it
+            return true;
+        }
+        if (frame.getSequence() > 0) {
+            lastSequence = frame.getSequence();
+        }
+        final ByteBuffer payload = frame.getPayload();
+        dispatch(frame.getType(), frame.getChatroomId(),
+                payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        return true;
+    }
+
+    /**
+     * Handles a frame received from the server.
+     * @param type the type of the frame
+     * @param chatroomId the chatroom ID, -1 if the frame is not about a chatroom
+     * @param payload the array holding the payload
+     * @param offset the start of the payload in the array
+     * @param length the length of the payload
+     */
+    private void dispatch(FrameType type, int chatroomId, byte[] payload, int offset, int length) {
+        switch (type) {
+            case NEW_CHATROOM:
+                // ADD CHATROOM
+                final Chatroom<T> chatroom = json.fromJson(reader(payload, offset, length), chatroomT);
+                chatClient.notifyNewChatroom(chatroom);
+                break;
+            case NEW_MESSAGE:
+                // NEW MESSAGE
+                final Message<T> msg = json.fromJson(reader(payload, offset, length), messageT);
+                chatClient.notifyNewMessage(chatroomId, msg);
+                break;
+            case NEW_MESSAGES:
+                // MESSAGES SENT TOGETHER
+                final MessageBatch<T> batch = json.fromJson(reader(payload, offset, length), batchT);
+                batch.getMessages().forEach((room, messages) ->
+                        messages.forEach(message -> chatClient.notifyNewMessage(room, message))
+                );
+                break;
+            case USER_CHANGE:
+                // USER CHANGED
+                final UserInfo user = json.fromJson(reader(payload, offset, length), UserInfo.class);
+                chatClient.notifyUserChange(user);
+                break;
+            case PROTOCOL:
+                onProtocol(new String(payload, offset, length, StandardCharsets.UTF_8));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Reader reader(byte[] payload, int offset, int length) {
+        return new InputStreamReader(new ByteArrayInputStream(payload, offset, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles a protocol frame : requests the binary protocol when the server offers it,
+     * and switches to it when the server acknowledges it.
+     * @param text the text of the frame
+     */
+    private void onProtocol(String text) {
+        final String upgrade = Character.toString(NotificationProtocol.UPGRADE) + NotificationProtocol.BINARY_VERSION;
+        if (text.startsWith(NotificationProtocol.HELLO)) {
+            final int serverVersion = Integer.parseInt(text.substring(NotificationProtocol.HELLO.length()).trim());
+            if (serverVersion >= NotificationProtocol.BINARY_VERSION && maxVersion >= NotificationProtocol.BINARY_VERSION) {
+                requestUpgrade(upgrade);
+            }
+        } else if (text.equals(upgrade)) {
+            inputVersion = NotificationProtocol.BINARY_VERSION;
+        } else if (text.startsWith(NotificationProtocol.HEARTBEAT_INTERVALS)) {
+            final String[] intervals = text.substring(NotificationProtocol.HEARTBEAT_INTERVALS.length()).trim().split(" ");
+            maxHeartbeatMillis = Long.parseLong(intervals[1]);
+            minHeartbeatMillis = Long.parseLong(intervals[0]);
+            sendAuthentication();
+        } else if (text.startsWith(NotificationProtocol.AUTHENTICATED)) {
+            authenticated = true;
+        }
+    }
+
+    /**
+     * Authenticates the connection with the session token of the user, as soon as the server offers heartbeats.
+     * @param token the session token received at login, null if the server did not send one
+     */
+    public synchronized void authenticate(String token) {
+        if (token == null || token.equals(sessionToken)) {
+            return;
+        }
+        sessionToken = token;
+        sendAuthentication();
+    }
+
+    /**
+     * Sends the session token to the server, once known and once the server offered heartbeats.
+     * Never sent to a server without heartbeats : it would not know the command.
+     */
+    private synchronized void sendAuthentication() {
+        if (sessionToken != null && minHeartbeatMillis > 0) {
+            sendCommand(FrameType.AUTHENTICATE, NotificationProtocol.AUTHENTICATE, sessionToken);
+        }
+    }
+
+    /**
+     * Sends a heartbeat on the authenticated connection.
+     * @param nextIntervalMillis the delay before the next heartbeat, within the bounds offered by the server
+     */
+    public synchronized void heartbeat(long nextIntervalMillis) {
+        sendCommand(FrameType.HEARTBEAT, NotificationProtocol.HEARTBEAT, Long.toString(nextIntervalMillis));
+    }
+
+    /**
+     * Checks if the heartbeats of this connection keep the user active.
+     * @return true if the server acknowledged the authentication of the connection and the connection is open
+     */
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    /**
+     * Gets the shortest interval between two heartbeats offered by the server.
+     * @return the minimum interval in milliseconds, 0 if the server does not support heartbeats
+     */
+    public long getMinHeartbeatMillis() {
+        return minHeartbeatMillis;
+    }
+
+    /**
+     * Gets the longest interval between two heartbeats offered by the server.
+     * @return the maximum interval in milliseconds, 0 if the server does not support heartbeats
+     */
+    public long getMaxHeartbeatMillis() {
+        return maxHeartbeatMillis;
+    }
+
+    /**
+     * Requests the binary protocol to the server. All the frames sent after the request are binary.
+     * @param upgrade the upgrade request
+     */
+    private synchronized void requestUpgrade(String upgrade) {
+        try {
+            output.write((upgrade + '\n').getBytes(StandardCharsets.UTF_8));
+            output.flush();
+            outputVersion = NotificationProtocol.BINARY_VERSION;
+        } catch (IOException e) {
+            System.err.println("Unable to upgrade the notification protocol : " + e);
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last event received from the server.
+     * @return the last sequence number, 0 if none (or with the text protocol)
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Subscribes to the messages of a chatroom.
+     * Once subscribed to a chatroom, the server only sends the messages of the subscribed chatrooms.
+     * @param chatroomId the chatroom to subscribe to
+     */
+    public synchronized void subscribe(int chatroomId) {
+        if (subscriptions.add(chatroomId)) {
+            sendControl(FrameType.SUBSCRIBE, chatroomId);
+        }
+    }
+
+    /**
+     * Unsubscribes from the messages of a chatroom.
+     * @param chatroomId the chatroom to unsubscribe from
+     */
+    public synchronized void unsubscribe(int chatroomId) {
+        if (subscriptions.remove(chatroomId)) {
+            sendControl(FrameType.UNSUBSCRIBE, chatroomId);
+        }
+    }
+
+    /**
+     * Sends a control frame to the server, if the socket is already opened.
+     * @param type the type of the frame
+     * @param chatroomId the chatroom ID
+     */
+    private void sendControl(FrameType type, int chatroomId) {
+        if (output == null) {
+            // sent once the socket is opened
+            return;
+        }
+        try {
+            if (outputVersion == NotificationProtocol.BINARY_VERSION) {
+                output.write(NotificationProtocol.encode(type, chatroomId, 0, new byte[0]));
+            } else {
+                final char command = (type == FrameType.SUBSCRIBE) ? 'S' : 'U';
+                output.write((Character.toString(command) + chatroomId + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            output.flush();
+        } catch (IOException e) {
+            System.err.println("Unable to send a subscription to the server : " + e);
+        }
+    }
+
+    /**
+     * Sends a command to the server, with its argument as payload in the binary protocol.
+     * @param type the type of the frame in the binary protocol
+     * @param command the command in the text protocol
+     * @param argument the argument of the command
+     */
+    private void sendCommand(FrameType type, char command, String argument) {
+        if (output == null) {
+            return;
+        }
+        try {
+            if (outputVersion == NotificationProtocol.BINARY_VERSION) {
+                output.write(NotificationProtocol.encode(type, -1, 0, argument.getBytes(StandardCharsets.UTF_8)));
+            } else {
+                output.write((Character.toString(command) + argument + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            output.flush();
+        } catch (IOException e) {
+            System.err.println("Unable to send a " + type + " frame to the server : " + e);
         }
     }
 
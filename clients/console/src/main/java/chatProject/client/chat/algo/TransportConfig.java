@@ -0,0 +1,66 @@
+package chatProject.client.chat.algo;
+
+/**
+ * The configuration of the HTTP connections of a client to the server.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.client.maxRequestsPerHost=8}).
+ */
+public class TransportConfig {
+
+    /**
+     * The maximum number of requests in flight to the server, each on its own keep-alive connection.
+     */
+    private final int maxRequestsPerHost;
+    /**
+     * How long to wait for a connection to the server.
+     */
+    private final int connectTimeoutMillis;
+    /**
+     * How long to wait for the data of a response.
+     */
+    private final int readTimeoutMillis;
+
+    public TransportConfig(int maxRequestsPerHost, int connectTimeoutMillis, int readTimeoutMillis) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("At least 1 request in flight is needed, got " + maxRequestsPerHost);
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static TransportConfig fromSystemProperties() {
+        return new TransportConfig(
+                Integer.getInteger("chat.client.maxRequestsPerHost", 4),
+                Integer.getInteger("chat.client.connectTimeoutMillis", 5_000),
+                Integer.getInteger("chat.client.readTimeoutMillis", 30_000)
+        );
+    }
+
+    /**
+     * Gets the maximum number of requests in flight to the server.
+     * @return the number of pooled connections and of request threads
+     */
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Gets how long to wait for a connection to the server.
+     * @return the timeout, in milliseconds
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Gets how long to wait for the data of a response.
+     * @return the timeout, in milliseconds
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+}
@@ -1,21 +1,29 @@
 package chatProject.client.gui.text.chat;
 
+import chatProject.FakeInstances;
 import chatProject.client.chat.algo.ChatClient;
+import chatProject.client.chat.algo.MessageSync;
 import chatProject.client.gui.text.helpers.GUIHelpers;
 import chatProject.model.listener.MessageListener;
 import chatProject.model.listener.UserListener;
 import chatProject.model.messages.Message;
 import chatProject.model.user.UserInfo;
-import chatProject.model.user.Status;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.gui2.*;
 
+import java.util.List;
+
 /**
  * The window of a {@link chatProject.model.messages.Chatroom}
  * @param <T> the type of messages to use
  */
 public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
 
+    /**
+     * The number of messages displayed : only the tail of the chatroom is loaded.
+     */
+    private static final int DISPLAYED_MESSAGES = 10;
+
     private final ChatClient<T> chat;
     private final int chatroomId;
     private final Window window;
@@ -24,6 +32,11 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
 
     private Thread msgUpdateThread = null;
 
+    /**
+     * Merges the messages pushed by the socket and the ones polled from the server.
+     */
+    private MessageSync<T> sync = null;
+
     public ChatroomGUI(ChatClient<T> chat, int chatroomId, Window window, Panel contentPanel, TextBox messages) {
         this.chat = chat;
         this.chatroomId = chatroomId;
@@ -44,7 +57,7 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
         gridLayout.setHorizontalSpacing(2);
 
         // init instance
-        final TextBox messagesTextBox = new TextBox(new TerminalSize(60, 10))
+        final TextBox messagesTextBox = new TextBox(new TerminalSize(60, DISPLAYED_MESSAGES))
                 .setReadOnly(true)
                 .setEnabled(false);
         final ChatroomGUI<T> instance = new ChatroomGUI<>(
@@ -54,24 +67,24 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
                 contentPanel,
                 messagesTextBox
         );
+        instance.sync = new MessageSync<>(chat, chatroomId, instance);
         instance.createWindow();
 
         // listen on new messages
-        chat.addMessageListener(chatroomId, instance);
+        chat.addMessageListener(chatroomId, instance.sync);
         chat.addUserListener(instance);
 
-        instance.msgUpdateThread = new Thread(() -> {
+        instance.msgUpdateThread = chat.getThreadMode().start("chatroom-update-" + chatroomId, () -> {
             while (true) {
                 try {
-                    Thread.sleep(5000); // update every 5s
-                    instance.fillMessagesContent();
+                    Thread.sleep(5000); // catch up every 5s with the messages missed by the socket, if any
+                    instance.sync.poll();
                 } catch (InterruptedException e) {
                     // interrupted
                     return;
                 }
             }
         });
-        instance.msgUpdateThread.start();
 
         // render the window
         textGUI.addWindowAndWait(window);
@@ -91,6 +104,8 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
         final Runnable action =  () -> {
             window.close();
             msgUpdateThread.interrupt();
+            // stop receiving the messages of this chatroom
+            chat.removeMessageListener(chatroomId, sync);
         };
 
         // add an horizontal space
@@ -135,27 +150,29 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
     @SuppressWarnings("unchecked")
     private Runnable sendButtonAction(int chatroomId, TextBox message) {
         return () -> {
-            chat.sendMessageForCurrentUser(chatroomId, (T) message.getText());
+            // sent in the background : the window does not wait for the server
+            chat.sendMessageForCurrentUser(chatroomId, (T) message.getText())
+                    .exceptionally(e -> {
+                        System.err.println("Cannot send the message : " + e.getMessage());
+                        return null;
+                    });
             message.setText("");
         };
     }
 
     private void fillMessagesContent() {
         messages.setText("");
-        chat
-                .getChatroomMessages(chatroomId)
-                .forEach(msg -> messages.addLine(messageAsString(msg)));
+        final List<Message<T>> lastMessages = chat.getLastMessages(chatroomId, DISPLAYED_MESSAGES);
+        lastMessages.forEach(msg -> messages.addLine(messageAsString(msg)));
+        // then only the newer messages are received
+        sync.start(lastMessages);
     }
 
     private String messageAsString(Message<T> msg) {
-        final UserInfo sender = msg.getSender();
+        // the message only has the ID of its sender : resolved from the users known by the client
+        final UserInfo sender = chat.resolveSender(msg);
         return GUIHelpers.getUserRepresentation(
-                // Force user status refresh from the user model if the user is not in the model anymore
-                chat.getUsers().stream().filter(userInfo -> sender.getAccount().equals(userInfo.getAccount()))
-                        .findAny().orElseGet(() -> {
-                        sender.setCurrentStatus(Status.INACTIVE);
-                        return sender;
-                })
+                (sender == null) ? FakeInstances.UNKNOWN_USER_INFO : sender
         ) + "> " + msg.getMessage().toString();
     }
 
@@ -169,7 +186,7 @@ public class ChatroomGUI<T> implements MessageListener<T>, UserListener {
     @Override
     public UserInfo notifyUserChange(UserInfo user) {
         // a user changed - refresh the messages (best effort)
-        // the content is already refreshed by the refresh thread every second
+        // the senders of the new messages are resolved when they are displayed
         return user;
     }
 }
@@ -0,0 +1,125 @@
+package chatProject.client.chat.algo;
+
+import chatProject.model.messages.ChatInstance;
+import chatProject.model.messages.Chatroom;
+import chatProject.model.messages.Message;
+import chatProject.model.user.Status;
+import chatProject.model.user.UserAccount;
+import chatProject.model.user.UserInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class MessageSyncTest {
+
+    private static final UserInfo USER = new UserInfo(new UserAccount(1, "User1"), Status.ACTIVE);
+
+    /**
+     * A client reading the pages of messages from a chatroom in memory instead of the server.
+     */
+    private static class PagedChatClient extends ChatClient<String> {
+
+        private final Chatroom<String> chatroom = new Chatroom<>("test", USER, new ArrayList<>());
+
+        PagedChatClient() {
+            super(ChatInstance.initEmptyChat(), USER, new HashMap<>(), new HashSet<>(), new HashSet<>(), "http://localhost:0/");
+        }
+
+        @Override
+        public List<Message<String>> getChatroomMessages(int chatroomId, Long afterId, Long beforeId, int limit) {
+            return chatroom.getMessagesPage(afterId, beforeId, limit);
+        }
+    }
+
+    private final PagedChatClient chat = new PagedChatClient();
+
+    /**
+     * The IDs of the messages delivered to the view, in order.
+     */
+    private final List<Long> delivered = new ArrayList<>();
+
+    private final MessageSync<String> sync = new MessageSync<>(chat, 0, (chatroomId, message) -> {
+        delivered.add(message.getId());
+        return message;
+    });
+
+    private List<Message<String>> addMessages(int count) {
+        final List<Message<String>> added = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            added.add(chat.chatroom.addMessage(USER, "Message " + i));
+        }
+        return added;
+    }
+
+    private static List<Long> ids(long from, long to) {
+        return LongStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void getMessagesSinceWithoutCursor() {
+        addMessages(1200);
+
+        final List<Message<String>> messages = chat.getMessagesSince(0, null);
+
+        assertEquals("Every message should be read, page by page from the first one",
+                ids(0, 1200), messages.stream().map(Message::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void getMessagesSinceCursor() {
+        addMessages(1200);
+
+        assertEquals("Only the messages after the cursor should be read",
+                ids(1000, 1200), chat.getMessagesSince(0, 999L).stream().map(Message::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void pollFromEmptyChatroom() {
+        sync.start(new ArrayList<>());
+        addMessages(1200);
+
+        sync.poll();
+
+        assertEquals("The messages sent before the first poll should all be delivered", ids(0, 1200), delivered);
+    }
+
+    @Test
+    public void pollDeliversMissedMessagesOnce() {
+        sync.start(new ArrayList<>());
+        final List<Message<String>> added = addMessages(4);
+
+        // the socket misses the message 1 and reorders the others
+        sync.notifyNewMessage(0, added.get(0));
+        sync.notifyNewMessage(0, added.get(3));
+        sync.notifyNewMessage(0, added.get(2));
+        sync.notifyNewMessage(0, added.get(2));
+        sync.poll();
+        sync.poll();
+        // pushed again after the poll confirmed it
+        sync.notifyNewMessage(0, added.get(1));
+
+        assertEquals("Each message should be delivered once : pushed first, then missed", listOf(0, 3, 2, 1), delivered);
+    }
+
+    @Test
+    public void pollAfterDisplayedMessages() {
+        final List<Message<String>> displayed = addMessages(3);
+        sync.start(displayed.subList(1, 3));
+        addMessages(2);
+
+        sync.poll();
+
+        assertEquals("Only the messages after the displayed ones should be delivered", ids(3, 5), delivered);
+    }
+
+    private static List<Long> listOf(long... ids) {
+        return LongStream.of(ids).boxed().collect(Collectors.toList());
+    }
+}
@@ -1,34 +1,45 @@
 package chatProject.model.messages;
 
+import chatProject.model.user.Presence;
+import chatProject.model.user.PresenceTable;
+import chatProject.model.user.Status;
 import chatProject.model.user.UserAccount;
 import chatProject.model.user.UserInfo;
 
 import java.time.LocalTime;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 /**
  * The main class for the model of the chat.
  * Holds a list of {@link Chatroom} that each contain many {@link Message}.
  * Also holds the list of {@link UserInfo}.
+ * Safe to use from many threads : the chatrooms and the users are kept in concurrent indexes
+ * ({@link ChatroomRegistry}, {@link PresenceTable}) read without lock.
  * @param <T> the type of messages in the chat
  */
 public class ChatInstance<T> {
 
     /**
-     * The list of chatrooms in the chat.
+     * The chatrooms in the chat, by ID and by name.
      */
-    private final transient List<Chatroom<T>> chatrooms;
+    private final transient ChatroomRegistry<T> chatrooms = new ChatroomRegistry<>();
 
     /**
-     * The list of users in the chat.
-     * The key is the user infomation
-     * The value is the last login time
+     * The presence of the users in the chat : their status and their last login time.
      */
-    private final Map<UserInfo, LocalTime> users;
+    private final transient PresenceTable users = new PresenceTable();
 
     public ChatInstance(List<Chatroom<T>> chatrooms, Map<UserInfo, LocalTime> users) {
-        this.chatrooms = chatrooms;
-        this.users = users;
+        if (chatrooms != null) {
+            for (int id = 0; id < chatrooms.size(); id++) {
+                this.chatrooms.restore(id, chatrooms.get(id));
+            }
+        }
+        if (users != null) {
+            users.forEach(this.users::restore);
+        }
     }
 
     /**
@@ -36,53 +47,159 @@ public class ChatInstance<T> {
      * @return the list of {@link Chatroom} in the model
      */
     public List<Chatroom<T>> getCurentChatrooms() {
-        // return a safe read-only copy
-        return Collections.unmodifiableList(chatrooms);
+        // a read-only list, published when a chatroom is added : no copy
+        return chatrooms.getAll();
+    }
+
+    /**
+     * Gets the names of the chatrooms in the chat.
+     * @return a read-only list of the names, in the order of the IDs of the chatrooms
+     */
+    public List<String> getChatroomNames() {
+        return chatrooms.getNames();
+    }
+
+    /**
+     * Gets the version of the chatrooms of the chat : changes each time a chatroom is added.
+     * @return the version of the chatrooms
+     */
+    public long getChatroomsVersion() {
+        return chatrooms.getVersion();
+    }
+
+    /**
+     * Gets a chatroom given its ID.
+     * @param chatroomId the ID of the chatroom
+     * @return the chatroom, null if there is no chatroom with this ID
+     */
+    public Chatroom<T> getChatroom(int chatroomId) {
+        return chatrooms.get(chatroomId);
+    }
+
+    /**
+     * Finds the ID of a chatroom given its name.
+     * @param name the name of the chatroom
+     * @return the ID of the chatroom, empty if there is no chatroom with this name
+     */
+    public Optional<Integer> findChatroom(String name) {
+        return Optional.ofNullable(chatrooms.findId(name));
     }
 
     /**
      * Adds a new {@link Chatroom} in the chat.
      * @param newChatroom the chatroom to add
      * @return the ID of the new chatroom added
+     * @throws IllegalArgumentException if a chatroom already has the same name
      */
     public int addChatroom(Chatroom<T> newChatroom) {
-        this.chatrooms.add(newChatroom);
-        return this.chatrooms.indexOf(newChatroom);
+        return chatrooms.add(newChatroom.getName(), id -> newChatroom);
+    }
+
+    /**
+     * Adds a new {@link Chatroom} in the chat, created once its ID is known.
+     * @param name the name of the chatroom
+     * @param factory creates the chatroom given its ID, only called if the name is free
+     * @return the ID of the new chatroom added
+     * @throws IllegalArgumentException if a chatroom already has this name
+     */
+    public int addChatroom(String name, IntFunction<Chatroom<T>> factory) {
+        return chatrooms.add(name, factory);
+    }
+
+    /**
+     * Restores a chatroom with its ID (e.g. from a backup), replacing the chatroom with the same ID if any.
+     * @param chatroomId the ID of the chatroom
+     * @param chatroom the chatroom to restore
+     * @return the ID of the other chatroom with the same name, null if the name is free (or not set) :
+     * the restored chatroom is kept, but is not found by its name
+     */
+    public Integer restoreChatroom(int chatroomId, Chatroom<T> chatroom) {
+        return chatrooms.restore(chatroomId, chatroom);
     }
 
 
     /**
-     * Adds a new {@link UserInfo} in the chat.
+     * Adds a new {@link UserInfo} in the chat, or updates the status of its account.
+     * The user is found by the index of the accounts : no scan of the users, and no lock.
      * @param newUser the user to add
+     * @return true if the user was added or its status changed, false if it was only seen again
      */
     public boolean addUser(UserInfo newUser) {
-        if (users.get(newUser) != null) {
-            // already found in the model (same account and same status) - no update
-            return false;
-        }
-
-        // may be already in the model but needs only to update the account
-        final UserAccount newUserAccount = newUser.getAccount();
-        final Optional<UserInfo> accountAlreadyPresent = users.keySet()
-                .stream()
-                .filter(user -> user.getAccount().equals(newUserAccount))
-                .findAny();
-        if (accountAlreadyPresent.isPresent()) {
-            final UserInfo userInfo = accountAlreadyPresent.get();
-            userInfo.setCurrentStatus(newUser.getCurrentStatus());
-            users.replace(userInfo, LocalTime.now());
-        } else {
-            users.put(newUser, LocalTime.now());
-        }
-        return true;
+        return users.update(newUser, LocalTime.now());
     }
 
     /**
      * Gets the list of all registered users.
-     * @return the collection of users in the chat.
+     * @return a copy of the users in the chat, with their last login time.
      */
     public Map<UserInfo, LocalTime> getUsers() {
-        return null;
+        final Map<UserInfo, LocalTime> copy = new LinkedHashMap<>();
+        users.getAll().forEach(presence -> copy.put(presence.getUser(), presence.getLastSeen()));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Gets the version of the users of the chat : changes each time a user is added or its status changes.
+     * @return the version of the presence table
+     */
+    public long getUsersVersion() {
+        return users.getVersion();
+    }
+
+    /**
+     * Gets the presence table of the users, to query it without copy.
+     * @return the presence of the users
+     */
+    public PresenceTable getPresence() {
+        return users;
+    }
+
+    /**
+     * Restores a user with its last-seen time (e.g. from a backup), replacing the user with the same account if any.
+     * @param user the user to restore
+     * @param lastSeen the last time the user was seen
+     */
+    public void restoreUser(UserInfo user, LocalTime lastSeen) {
+        users.restore(user, lastSeen);
+    }
+
+    /**
+     * Finds the account of a user given its username.
+     * @param username the username to find
+     * @return the account, empty if the user is not registered
+     */
+    public Optional<UserAccount> findAccount(String username) {
+        return users.findAccount(username);
+    }
+
+    /**
+     * Gets a user with its current status given its account ID.
+     * @param accountId the ID of the account
+     * @return the user, null if the user is not registered
+     */
+    public UserInfo getUser(int accountId) {
+        final Presence presence = users.get(accountId);
+        return (presence == null) ? null : presence.getUser();
+    }
+
+    /**
+     * Gets the users with a status.
+     * @param status the status of the users
+     * @return the users with this status
+     */
+    public List<UserInfo> getUsersByStatus(Status status) {
+        return users.getByStatus(status).stream()
+                .map(Presence::getUser)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the account of a user given its username, creating it with an unused ID if the user is not registered.
+     * @param username the username to find
+     * @return the account of the user
+     */
+    public UserAccount getOrCreateAccount(String username) {
+        return users.getOrCreateAccount(username);
     }
 
     /**
@@ -2,6 +2,7 @@ package chatProject.model.messages;
 
 import chatProject.model.user.UserInfo;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -23,9 +24,18 @@ public class Chatroom<T> {
     private final UserInfo owner;
     /**
      * The list of messages sent in this chatroom.
+     * May be a list backed by a durable storage : the new messages are written through to it.
+     * Read by many threads while the messages are appended : should be a {@link MessageList} (or a durable list
+     * with the same guarantees) when the chatroom is shared.
+     * Sorted by message ID : it is the index of the pages of messages (see {@link #getMessagesPage(Long, Long, int)}).
      */
     private final List<Message<T>> messages;
 
+    /**
+     * The IDs of the new messages : created with the first new message, after the messages already stored.
+     */
+    private transient volatile MessageSequencer sequencer;
+
     public Chatroom(String name, UserInfo owner, List<Message<T>> messages) {
         this.name = name;
         this.owner = owner;
@@ -57,18 +67,107 @@ public class Chatroom<T> {
         return Collections.unmodifiableList(messages);
     }
 
+    /**
+     * Gets the version of this chatroom : the name and the owner do not change, only new messages are added.
+     * @return the number of messages of the chatroom
+     */
+    public long getVersion() {
+        return messages.size();
+    }
+
     /**
      * Adds a new message in this chatroom given a user and a content.
+     * The message gets the next ID of the chatroom and the current time.
+     * The messages are appended one at a time, in the order of their IDs ; the wait for a durable storage
+     * does not hold back the next appends.
      * @param userInfo the user who sent the message
      * @param content the content of the message
      * @return the new message created
      */
     public Message<T> addMessage(UserInfo userInfo, T content) {
-        final Message<T> message = new Message<>(0, null, content);
-        this.messages.add(message);
+        final MessageSequencer sequencer = getSequencer();
+        final long sequence = sequencer.acquire(1);
+        final Message<T> message;
+        final long position;
+        try {
+            // stamped in turn : the times follow the IDs
+            message = new Message<>(sequencer.idOf(sequence), userInfo, content, System.currentTimeMillis());
+            if (messages instanceof DurableMessageList) {
+                position = ((DurableMessageList<T>) messages).append(message);
+            } else {
+                messages.add(message);
+                position = -1;
+            }
+        } finally {
+            sequencer.release();
+        }
+        if (position >= 0) {
+            // the next messages are appended meanwhile
+            ((DurableMessageList<T>) messages).awaitDurable(position);
+        }
         return message;
     }
 
+    /**
+     * Adds new messages in this chatroom, in one ordering step : the messages get consecutive IDs,
+     * in the order of the lists, and no other message is appended between them.
+     * @param senders the users who sent the messages
+     * @param contents the contents of the messages, in the order of the senders
+     * @return the new messages created, in order
+     */
+    public List<Message<T>> addMessages(List<UserInfo> senders, List<T> contents) {
+        if (senders.size() != contents.size()) {
+            throw new IllegalArgumentException(
+                    senders.size() + " senders for " + contents.size() + " messages");
+        }
+        final int count = contents.size();
+        final List<Message<T>> added = new ArrayList<>(count);
+        if (count == 0) {
+            return added;
+        }
+        final MessageSequencer sequencer = getSequencer();
+        final long first = sequencer.acquire(count);
+        long position = -1;
+        try {
+            final long timestamp = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                final Message<T> message =
+                        new Message<>(sequencer.idOf(first + i), senders.get(i), contents.get(i), timestamp);
+                if (messages instanceof DurableMessageList) {
+                    position = ((DurableMessageList<T>) messages).append(message);
+                } else {
+                    messages.add(message);
+                }
+                added.add(message);
+            }
+        } finally {
+            sequencer.release();
+        }
+        if (position >= 0) {
+            // the last message is durable once the previous ones are
+            ((DurableMessageList<T>) messages).awaitDurable(position);
+        }
+        return added;
+    }
+
+    private MessageSequencer getSequencer() {
+        MessageSequencer current = sequencer;
+        if (current == null) {
+            synchronized (this) {
+                current = sequencer;
+                if (current == null) {
+                    // after the messages already stored (e.g. restored from a backup)
+                    final long first = messages.isEmpty()
+                            ? 0
+                            : MessageIds.sequenceOf(messages.get(messages.size() - 1).getId()) + 1;
+                    current = new MessageSequencer(0, first);
+                    sequencer = current;
+                }
+            }
+        }
+        return current;
+    }
+
     /**
      * Stores a new message directly in this chatroom.
      * @param newMessage the new message to store
@@ -79,6 +178,52 @@ public class Chatroom<T> {
         return newMessage;
     }
 
+    /**
+     * Gets a page of the messages sent in this chatroom, between 2 message IDs.
+     * The page is found by a binary search on the IDs : only the messages of the page are read.
+     * @param afterId the ID of the message before the page (excluded), null to start at the first message
+     * @param beforeId the ID of the message after the page (excluded), null to stop at the last message
+     * @param limit the maximum number of messages in the page
+     * @return the first messages after {@code afterId} if set, the last messages before {@code beforeId} otherwise,
+     * in the order of the chatroom
+     */
+    public List<Message<T>> getMessagesPage(Long afterId, Long beforeId, int limit) {
+        // the messages are only appended : the bounds are read once
+        final int size = messages.size();
+        final int from = (afterId == null) ? 0 : indexOf(afterId, false, size);
+        final int to = (beforeId == null) ? size : indexOf(beforeId, true, size);
+        if (from >= to || limit <= 0) {
+            return new ArrayList<>();
+        }
+        final int count = Math.min(limit, to - from);
+        // a copy : the page does not depend on the storage of the messages
+        return (afterId != null)
+                ? new ArrayList<>(messages.subList(from, from + count))
+                : new ArrayList<>(messages.subList(to - count, to));
+    }
+
+    /**
+     * Finds the index of the first message after an ID.
+     * @param id the ID to search
+     * @param included true to include the message with this ID
+     * @param size the number of messages to search in
+     * @return the index of the first message after the ID, {@code size} if none
+     */
+    private int indexOf(long id, boolean included, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final long middleId = messages.get(middle).getId();
+            if (middleId < id || (middleId == id && !included)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
     @Override
     public String toString() {
         if (owner == null) {
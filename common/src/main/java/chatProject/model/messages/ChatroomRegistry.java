@@ -0,0 +1,167 @@
+package chatProject.model.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * The chatrooms of the chat, by ID and by name.
+ * <p>
+ * Each chatroom has a stable ID : the IDs are given in the order of creation and never reused.
+ * The names are unique : a new chatroom with the name of an existing one is rejected in O(1).
+ * The reads (by ID, by name, the lists) take no lock : the lists are immutable copies, published again only when
+ * a chatroom is added. The chatrooms are rarely added, so the writers are serialized.
+ * @param <T> the type of messages in the chat
+ */
+public class ChatroomRegistry<T> {
+
+    /**
+     * The chatrooms, by ID.
+     */
+    private final ConcurrentHashMap<Integer, Chatroom<T>> chatrooms = new ConcurrentHashMap<>();
+    /**
+     * The IDs of the named chatrooms, by name.
+     */
+    private final ConcurrentHashMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+
+    /**
+     * The chatrooms in the order of their IDs, published when a chatroom is added.
+     */
+    private volatile List<Chatroom<T>> published = Collections.emptyList();
+    /**
+     * The names of the chatrooms in the order of their IDs, published with {@link #published}.
+     */
+    private volatile List<String> names = Collections.emptyList();
+
+    /**
+     * The ID of the next chatroom, guarded by this registry.
+     */
+    private int nextId = 0;
+    /**
+     * The number of changes of the chatrooms, published with {@link #published}.
+     */
+    private volatile long version = 0;
+
+    /**
+     * Adds a new chatroom with the next ID.
+     * @param name the name of the chatroom, null for a chatroom without name
+     * @param factory creates the chatroom given its ID, only called if the name is free
+     * @return the ID of the new chatroom
+     * @throws IllegalArgumentException if a chatroom already has this name
+     */
+    public synchronized int add(String name, IntFunction<Chatroom<T>> factory) {
+        final int id = nextId;
+        if (name != null && idsByName.putIfAbsent(name, id) != null) {
+            throw new IllegalArgumentException("A chatroom named " + name + " already exists");
+        }
+        final Chatroom<T> chatroom;
+        try {
+            chatroom = factory.apply(id);
+        } catch (RuntimeException e) {
+            // the name is free again
+            if (name != null) {
+                idsByName.remove(name, id);
+            }
+            throw e;
+        }
+        put(id, chatroom);
+        return id;
+    }
+
+    /**
+     * Sets the chatroom of an ID (e.g. from a backup), replacing the chatroom with this ID if any.
+     * A chatroom with the name of another chatroom is kept, but is not found by its name.
+     * @param id the ID of the chatroom
+     * @param chatroom the chatroom to restore
+     * @return the ID of the other chatroom with the same name, null if the name is free (or not set)
+     */
+    public synchronized Integer restore(int id, Chatroom<T> chatroom) {
+        final Chatroom<T> replaced = chatrooms.get(id);
+        if (replaced != null && replaced.getName() != null) {
+            idsByName.remove(replaced.getName(), id);
+        }
+        final String name = chatroom.getName();
+        Integer conflict = null;
+        if (name != null) {
+            final Integer other = idsByName.putIfAbsent(name, id);
+            if (other != null && other != id) {
+                conflict = other;
+            }
+        }
+        put(id, chatroom);
+        return conflict;
+    }
+
+    /**
+     * Stores a chatroom and publishes the new lists.
+     */
+    private void put(int id, Chatroom<T> chatroom) {
+        chatrooms.put(id, chatroom);
+        nextId = Math.max(nextId, id + 1);
+
+        final List<Chatroom<T>> ordered = new ArrayList<>(chatrooms.size());
+        final List<String> orderedNames = new ArrayList<>(chatrooms.size());
+        for (int i = 0; i < nextId; i++) {
+            final Chatroom<T> current = chatrooms.get(i);
+            if (current != null) {
+                ordered.add(current);
+                orderedNames.add(current.getName());
+            }
+        }
+        published = Collections.unmodifiableList(ordered);
+        names = Collections.unmodifiableList(orderedNames);
+        version = version + 1;
+    }
+
+    /**
+     * Gets a chatroom given its ID.
+     * @param id the ID of the chatroom
+     * @return the chatroom, null if there is no chatroom with this ID
+     */
+    public Chatroom<T> get(int id) {
+        return chatrooms.get(id);
+    }
+
+    /**
+     * Finds the ID of a chatroom given its name.
+     * @param name the name of the chatroom
+     * @return the ID of the chatroom, null if there is no chatroom with this name
+     */
+    public Integer findId(String name) {
+        return (name == null) ? null : idsByName.get(name);
+    }
+
+    /**
+     * Gets all the chatrooms.
+     * @return a read-only list of the chatrooms, in the order of their IDs
+     */
+    public List<Chatroom<T>> getAll() {
+        return published;
+    }
+
+    /**
+     * Gets the names of all the chatrooms.
+     * @return a read-only list of the names, in the order of the IDs of the chatrooms
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Gets the version of the chatrooms : changes each time a chatroom is added or restored.
+     * @return the number of changes of the chatrooms
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of chatrooms.
+     * @return the number of chatrooms
+     */
+    public int size() {
+        return chatrooms.size();
+    }
+}
@@ -0,0 +1,24 @@
+package chatProject.model.messages;
+
+import java.util.List;
+
+/**
+ * A list of messages backed by a durable storage, where the wait for the storage is separated from the append.
+ * A {@link Chatroom} appends its messages in order, then waits for them to be durable without blocking the next appends.
+ * @param <T> the type of messages in the chat
+ */
+public interface DurableMessageList<T> extends List<Message<T>> {
+
+    /**
+     * Appends a message without waiting for it to be durable.
+     * @param message the new message
+     * @return the position of the message in the storage, to wait for with {@link #awaitDurable(long)}
+     */
+    long append(Message<T> message);
+
+    /**
+     * Waits for an appended message to be durable.
+     * @param position the position returned by {@link #append(Message)}
+     */
+    void awaitDurable(long position);
+}
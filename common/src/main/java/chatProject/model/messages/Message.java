@@ -5,41 +5,87 @@ import chatProject.model.user.UserInfo;
 
 /**
  * A model for a message sent in the chat.
- * A message has a content (of a generic type T), a unique ID and a sender.
+ * A message has a content (of a generic type T), a unique ID, a sender and the time it was received by the server.
+ * The sender is only referenced by its account ID in the serialized messages.
  * @param <T> the type of messages in the chat
  */
 public class Message<T> {
 
     /**
-     * The ID of the message (unique).
+     * The sender ID of a message without sender (the accounts are numbered from 1).
      */
-    private final int id;
+    public static final int NO_SENDER = 0;
+
+    /**
+     * The ID of the message (unique), in the order of its chatroom (see {@link MessageIds}).
+     */
+    private final long id;
     /**
-     * The sender of the message.
+     * The ID of the account of the sender, {@link #NO_SENDER} if unknown.
+     * Serialized instead of the sender : the readers resolve it with their table of users.
      */
-    private final MessageOwnerConcrete sender;
+    private final int senderId;
+    /**
+     * The sender of the message : the shared user given when the message was created (not a copy), null once
+     * the message is decoded. Not serialized.
+     */
+    private final transient UserInfo sender;
     /**
      * The content of the message.
      */
     private final T content;
+    /**
+     * The time the server received the message, in milliseconds since the epoch (0 if unknown).
+     */
+    private final long timestamp;
+
+    public Message(long id, UserInfo sender, T content) {
+        this(id, sender, content, 0);
+    }
 
-    public Message(int id, UserInfo sender, T content) {
+    public Message(long id, UserInfo sender, T content, long timestamp) {
         this.id = id;
-        this.sender = (sender == null) ? null : new MessageOwnerConcrete(sender.getAccount(), sender.getCurrentStatus());
+        this.senderId = (sender == null || sender.getAccount() == null) ? NO_SENDER : sender.getAccount().getId();
+        this.sender = sender;
         this.content = content;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Creates a message whose sender is only known by its ID (e.g. decoded from a compact storage).
+     * @param id the ID of the message
+     * @param senderId the ID of the account of the sender, {@link #NO_SENDER} if unknown
+     * @param content the content of the message
+     * @param timestamp the time the server received the message
+     */
+    public Message(long id, int senderId, T content, long timestamp) {
+        this.id = id;
+        this.senderId = senderId;
+        this.sender = null;
+        this.content = content;
+        this.timestamp = timestamp;
     }
 
     /**
      * Gets the ID of the message.
      * @return the message unique ID
      */
-    public int getId() {
+    public long getId() {
         return this.id;
     }
 
     /**
-     * Gets the sender of the message.
-     * @return the user who sent the message
+     * Gets the ID of the account of the sender of the message.
+     * @return the sender ID, {@link #NO_SENDER} if unknown
+     */
+    public int getSenderId() {
+        return senderId;
+    }
+
+    /**
+     * Gets the sender of the message, if the message was not decoded.
+     * A decoded message only has its sender ID : see {@link #getSenderId()}.
+     * @return the user who sent the message, null if unknown
      */
     public UserInfo getSender() {
         return sender;
@@ -53,11 +99,19 @@ public class Message<T> {
         return content;
     }
 
+    /**
+     * Gets the time the server received the message.
+     * @return the timestamp of the message in milliseconds since the epoch, 0 if unknown
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     @Override
     public String toString() {
         return "Message{" +
                 "id=" + id +
-                ", sender=" + sender +
+                ", senderId=" + senderId +
                 ", content=" + content +
                 '}';
     }
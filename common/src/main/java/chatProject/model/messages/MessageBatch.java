@@ -0,0 +1,60 @@
+package chatProject.model.messages;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Messages sent together, by chatroom : notified to a client at once instead of one message at a time.
+ * @param <T> the type of messages in the chat
+ */
+public class MessageBatch<T> {
+
+    /**
+     * The messages by chatroom ID, in the order of their chatroom.
+     */
+    private final Map<Integer, List<Message<T>>> messages = new LinkedHashMap<>();
+
+    /**
+     * Adds a message at the end of the messages of its chatroom.
+     * @param chatroomId the ID of the chatroom of the message
+     * @param message the message
+     */
+    public void add(int chatroomId, Message<T> message) {
+        messages.computeIfAbsent(chatroomId, id -> new ArrayList<>()).add(message);
+    }
+
+    /**
+     * Gets the messages of the batch.
+     * @return the messages by chatroom ID
+     */
+    public Map<Integer, List<Message<T>>> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Gets the chatrooms of the messages.
+     * @return the IDs of the chatrooms
+     */
+    public Set<Integer> getChatroomIds() {
+        return messages.keySet();
+    }
+
+    /**
+     * Gets the messages of some chatrooms only, e.g. the chatrooms a client subscribed to.
+     * @param chatroomIds the IDs of the chatrooms to keep
+     * @return a batch with the messages of these chatrooms
+     */
+    public MessageBatch<T> only(Collection<Integer> chatroomIds) {
+        final MessageBatch<T> subset = new MessageBatch<>();
+        messages.forEach((chatroomId, ofChatroom) -> {
+            if (chatroomIds.contains(chatroomId)) {
+                subset.messages.put(chatroomId, ofChatroom);
+            }
+        });
+        return subset;
+    }
+}
@@ -0,0 +1,61 @@
+package chatProject.model.messages;
+
+/**
+ * The scheme of the message IDs : a node prefix and the sequence of the message in its chatroom.
+ * <p>
+ * The node is the server that received the message, so that several servers can give IDs without conflict.
+ * With a single server (node 0), the ID of a message is its position in its chatroom.
+ * The IDs of a node grow with the order of the messages in a chatroom.
+ */
+public final class MessageIds {
+
+    /**
+     * The number of bits of the sequence : the low bits of the ID.
+     */
+    public static final int SEQUENCE_BITS = 48;
+    /**
+     * The number of bits of the node prefix : the high bits of the ID (the sign bit is not used).
+     */
+    public static final int NODE_BITS = 63 - SEQUENCE_BITS;
+
+    /**
+     * An ID before the ID of every message (the IDs are never negative) : the page after it starts at the first message.
+     */
+    public static final long BEFORE_FIRST = -1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private MessageIds() {
+    }
+
+    /**
+     * Builds the ID of a message.
+     * @param node the node that received the message
+     * @param sequence the sequence of the message in its chatroom
+     * @return the ID of the message
+     */
+    public static long compose(int node, long sequence) {
+        if (node < 0 || node >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("The node must fit in " + NODE_BITS + " bits, got " + node);
+        }
+        return ((long) node << SEQUENCE_BITS) | (sequence & SEQUENCE_MASK);
+    }
+
+    /**
+     * Gets the node that gave an ID.
+     * @param id the ID of a message
+     * @return the node prefix of the ID
+     */
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS);
+    }
+
+    /**
+     * Gets the sequence of a message in its chatroom.
+     * @param id the ID of a message
+     * @return the sequence part of the ID
+     */
+    public static long sequenceOf(long id) {
+        return id & SEQUENCE_MASK;
+    }
+}
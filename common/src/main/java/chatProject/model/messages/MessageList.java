@@ -0,0 +1,58 @@
+package chatProject.model.messages;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The messages of a chatroom kept in memory : an append-only list, safe to read while a message is added.
+ * <p>
+ * The writers are serialized (the {@link Chatroom} already appends its messages one at a time, in the order of
+ * their IDs), the readers take no lock : a reader sees all the messages up to the size it read, and never
+ * a {@link java.util.ConcurrentModificationException}.
+ * @param <T> the type of messages in the chat
+ */
+public class MessageList<T> extends AbstractList<Message<T>> implements RandomAccess {
+
+    /**
+     * The messages, in the order of the chatroom.
+     * Replaced when it grows : always read after {@link #size}.
+     */
+    private Message<?>[] messages = new Message<?>[16];
+
+    /**
+     * The number of messages, written after the messages so that the readers see them.
+     */
+    private volatile int size = 0;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Message<T> get(int index) {
+        final int currentSize = size;
+        if (index < 0 || index >= currentSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + currentSize);
+        }
+        return (Message<T>) messages[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a message at the end of the list.
+     * @param message the new message
+     * @return true
+     */
+    @Override
+    public synchronized boolean add(Message<T> message) {
+        if (size == messages.length) {
+            // the readers of the old array still see the messages up to their size
+            messages = Arrays.copyOf(messages, messages.length * 2);
+        }
+        messages[size] = message;
+        size = size + 1;
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package chatProject.model.messages;
+
+import chatProject.model.user.UserInfo;
+
+import java.util.List;
+
+/**
+ * Messages with the table of their senders : each sender is sent once, the messages only have its ID.
+ * @param <T> the type of messages in the chat
+ */
+public class MessagePage<T> {
+
+    /**
+     * The messages, in the order of their chatroom.
+     */
+    private final List<Message<T>> messages;
+    /**
+     * The senders of the messages, once each.
+     */
+    private final List<UserInfo> users;
+
+    public MessagePage(List<Message<T>> messages, List<UserInfo> users) {
+        this.messages = messages;
+        this.users = users;
+    }
+
+    public List<Message<T>> getMessages() {
+        return messages;
+    }
+
+    public List<UserInfo> getUsers() {
+        return users;
+    }
+}
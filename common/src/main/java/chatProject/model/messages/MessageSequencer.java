@@ -0,0 +1,59 @@
+package chatProject.model.messages;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gives the IDs of the new messages of a chatroom, and orders their appends.
+ * <p>
+ * The appends of a chatroom take its turn one at a time : the sequences are claimed and the messages appended
+ * under the same lock, so that the messages of the chatroom are always sorted by ID.
+ * A writer waiting for the turn is parked, not spinning (and a virtual thread releases its carrier meanwhile).
+ */
+final class MessageSequencer {
+
+    /**
+     * The node prefix of the IDs.
+     */
+    private final int node;
+    /**
+     * The turn of the chatroom to append its messages.
+     */
+    private final ReentrantLock turn = new ReentrantLock();
+    /**
+     * The next sequence to claim. Guarded by {@link #turn}.
+     */
+    private long next;
+
+    MessageSequencer(int node, long first) {
+        this.node = node;
+        this.next = first;
+    }
+
+    /**
+     * Waits for the turn of the chatroom and claims the consecutive sequences of new messages appended together.
+     * @param count the number of messages
+     * @return the first sequence : the messages must be appended before {@link #release()}
+     */
+    long acquire(int count) {
+        turn.lock();
+        final long first = next;
+        next += count;
+        return first;
+    }
+
+    /**
+     * Lets the next messages be appended. Must be called even if the append failed : its sequences are lost.
+     */
+    void release() {
+        turn.unlock();
+    }
+
+    /**
+     * Gets the ID of a message given its sequence.
+     * @param sequence the claimed sequence
+     * @return the ID of the message
+     */
+    long idOf(long sequence) {
+        return MessageIds.compose(node, sequence);
+    }
+}
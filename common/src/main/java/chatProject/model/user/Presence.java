@@ -0,0 +1,62 @@
+package chatProject.model.user;
+
+import java.time.LocalTime;
+
+/**
+ * The presence of a user : its current status, the last time it was seen and the version of its last change.
+ * Immutable : a new entry replaces the previous one in the {@link PresenceTable}.
+ */
+public final class Presence {
+
+    /**
+     * The user with its current status.
+     */
+    private final UserInfo user;
+    /**
+     * The last time the user was seen (only known by the server).
+     */
+    private final transient LocalTime lastSeen;
+    /**
+     * The version of the last change of the status.
+     */
+    private final long version;
+
+    public Presence(UserInfo user, LocalTime lastSeen, long version) {
+        this.user = user;
+        this.lastSeen = lastSeen;
+        this.version = version;
+    }
+
+    /**
+     * Gets the user with its current status.
+     * @return the user
+     */
+    public UserInfo getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the last time the user was seen.
+     * @return the last-seen time
+     */
+    public LocalTime getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Gets the version of the last change of the status of the user.
+     * @return the version of this entry
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Creates the entry of the same user seen again, without change.
+     * @param seen the time the user was seen
+     * @return the new entry, with the same version
+     */
+    Presence seenAt(LocalTime seen) {
+        return new Presence(user, seen, version);
+    }
+}
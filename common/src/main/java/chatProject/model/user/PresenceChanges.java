@@ -0,0 +1,31 @@
+package chatProject.model.user;
+
+import java.util.List;
+
+/**
+ * The users whose status changed after a version of the {@link PresenceTable}.
+ */
+public class PresenceChanges {
+
+    /**
+     * The version of the table covered by the changes : the version to ask the next changes from.
+     */
+    private final long version;
+    /**
+     * The changed users, with their current status.
+     */
+    private final List<UserInfo> users;
+
+    public PresenceChanges(long version, List<UserInfo> users) {
+        this.version = version;
+        this.users = users;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<UserInfo> getUsers() {
+        return users;
+    }
+}
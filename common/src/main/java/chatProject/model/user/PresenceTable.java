@@ -0,0 +1,255 @@
+package chatProject.model.user;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The presence of the users of the chat, safe to update from many threads : the entries are replaced without locks.
+ * <p>
+ * Each user has an immutable {@link Presence} entry, replaced by compare-and-set.
+ * Every status change gets a new version, so that a client can ask only for the changes after the last version it knows
+ * (see {@link #getChangesSince(long)}). The changes are applied concurrently : the readers only see the versions
+ * below the lowest change still in progress, without waiting for it.
+ * The entries are indexed by account ID, the accounts by username and the users by status.
+ */
+public class PresenceTable {
+
+    /**
+     * The presence of the users, by account ID.
+     */
+    private final ConcurrentHashMap<Integer, Presence> entries = new ConcurrentHashMap<>();
+    /**
+     * The account IDs of the current entries, by version.
+     */
+    private final ConcurrentSkipListMap<Long, Integer> idsByVersion = new ConcurrentSkipListMap<>();
+    /**
+     * The accounts, by username.
+     */
+    private final ConcurrentHashMap<String, UserAccount> accountsByName = new ConcurrentHashMap<>();
+    /**
+     * The account IDs of the users, by status.
+     * May contain the ID of a user whose status changed : cleaned when read.
+     */
+    private final Map<Status, Set<Integer>> idsByStatus = new EnumMap<>(Status.class);
+
+    /**
+     * The versions of the changes in progress, guarding {@link #lastVersion}.
+     */
+    private final TreeSet<Long> inProgress = new TreeSet<>();
+    /**
+     * The last version given to a change. Guarded by {@link #inProgress}.
+     */
+    private long lastVersion = 0;
+
+    /**
+     * The ID of the next account to create.
+     */
+    private final AtomicInteger nextAccountId = new AtomicInteger(1);
+
+    public PresenceTable() {
+        for (Status status : Status.values()) {
+            idsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Records that a user was seen with a status.
+     * @param user the user with its current status
+     * @param seen the time the user was seen
+     * @return true if the user is new or its status changed, false if it was only seen again
+     */
+    public boolean update(UserInfo user, LocalTime seen) {
+        final int accountId = user.getAccount().getId();
+        while (true) {
+            final Presence current = entries.get(accountId);
+            if (current != null && current.getUser().getCurrentStatus() == user.getCurrentStatus()) {
+                // same status : only the last-seen time changes, not the version
+                if (entries.replace(accountId, current, current.seenAt(seen))) {
+                    return false;
+                }
+            } else if (change(accountId, current, user, seen)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sets the presence of a user (e.g. from a backup), replacing its current entry if any.
+     * @param user the user with its status
+     * @param lastSeen the last time the user was seen
+     */
+    public void restore(UserInfo user, LocalTime lastSeen) {
+        final int accountId = user.getAccount().getId();
+        while (!change(accountId, entries.get(accountId), user, lastSeen)) {
+            // changed meanwhile : try again
+        }
+    }
+
+    /**
+     * Replaces an entry with a new version.
+     * @return false if the entry changed meanwhile
+     */
+    private boolean change(int accountId, Presence current, UserInfo user, LocalTime seen) {
+        final long version = startChange();
+        try {
+            final Presence next = new Presence(user, seen, version);
+            final boolean changed = (current == null)
+                    ? entries.putIfAbsent(accountId, next) == null
+                    : entries.replace(accountId, current, next);
+            if (changed) {
+                idsByVersion.put(version, accountId);
+                if (current != null) {
+                    idsByVersion.remove(current.getVersion());
+                }
+                final UserAccount account = user.getAccount();
+                accountsByName.put(account.getUsername(), account);
+                idsByStatus.get(user.getCurrentStatus()).add(accountId);
+                nextAccountId.accumulateAndGet(accountId + 1, Math::max);
+            }
+            return changed;
+        } finally {
+            // even if discarded : the readers wait for this version to see the next ones
+            endChange(version);
+        }
+    }
+
+    /**
+     * Gives a new version to a change, in progress until {@link #endChange(long)}.
+     * @return the version of the change
+     */
+    private long startChange() {
+        synchronized (inProgress) {
+            lastVersion++;
+            inProgress.add(lastVersion);
+            return lastVersion;
+        }
+    }
+
+    /**
+     * Publishes a change : its version is visible once the changes with a lower version are done too.
+     * @param version the version of the change done
+     */
+    private void endChange(long version) {
+        synchronized (inProgress) {
+            inProgress.remove(version);
+        }
+    }
+
+    /**
+     * Gets the last published version : all the changes up to it are in {@link #idsByVersion} (or were discarded).
+     * A reader never sees a version before all the previous ones are visible.
+     * @return the version before the lowest change in progress, the last version if none
+     */
+    private long publishedVersion() {
+        synchronized (inProgress) {
+            return inProgress.isEmpty() ? lastVersion : inProgress.first() - 1;
+        }
+    }
+
+    /**
+     * Gets the presence of a user.
+     * @param accountId the ID of the account of the user
+     * @return the entry of the user, null if the user is not registered
+     */
+    public Presence get(int accountId) {
+        return entries.get(accountId);
+    }
+
+    /**
+     * Gets the presence of all the users.
+     * @return a read-only view of the entries
+     */
+    public Collection<Presence> getAll() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Gets the number of users.
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Finds the account of a user given its username.
+     * @param username the username to find
+     * @return the account, empty if the user is not registered
+     */
+    public Optional<UserAccount> findAccount(String username) {
+        return Optional.ofNullable(accountsByName.get(username));
+    }
+
+    /**
+     * Finds the account of a user given its username, creating it with an unused ID if the user is not registered.
+     * @param username the username to find
+     * @return the account of the user
+     */
+    public UserAccount getOrCreateAccount(String username) {
+        return accountsByName.computeIfAbsent(username, name -> new UserAccount(nextAccountId.getAndIncrement(), name));
+    }
+
+    /**
+     * Gets the users with a status.
+     * @param status the status of the users
+     * @return the users with this status
+     */
+    public List<Presence> getByStatus(Status status) {
+        final Set<Integer> ids = idsByStatus.get(status);
+        final List<Presence> result = new ArrayList<>();
+        for (Integer accountId : ids) {
+            final Presence presence = entries.get(accountId);
+            if (presence.getUser().getCurrentStatus() == status) {
+                result.add(presence);
+            } else {
+                ids.remove(accountId);
+                // changed back meanwhile : the writer may have added it before the removal
+                if (entries.get(accountId).getUser().getCurrentStatus() == status) {
+                    ids.add(accountId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the users whose status changed after a version.
+     * @param sinceVersion the last version known by the caller, 0 for all the users
+     * @return the changed users, and the version to ask the next changes from
+     */
+    public PresenceChanges getChangesSince(long sinceVersion) {
+        final long upTo = publishedVersion();
+        // a version from the future (e.g. before a restart of the server) : all the users
+        final long from = (sinceVersion > upTo) ? 0 : sinceVersion;
+        final List<UserInfo> users = new ArrayList<>();
+        final ConcurrentNavigableMap<Long, Integer> changes = idsByVersion.subMap(from, false, upTo, true);
+        changes.forEach((version, accountId) -> {
+            final Presence presence = entries.get(accountId);
+            // skip the entries replaced meanwhile : their new version comes after
+            if (presence != null && presence.getVersion() == version) {
+                users.add(presence.getUser());
+            }
+        });
+        return new PresenceChanges(upTo, users);
+    }
+
+    /**
+     * Gets the version of the last published change.
+     * @return the current version of the table
+     */
+    public long getVersion() {
+        return publishedVersion();
+    }
+}
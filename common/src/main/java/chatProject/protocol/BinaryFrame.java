@@ -0,0 +1,72 @@
+package chatProject.protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A frame of the binary protocol (version 2) of the notification socket, decoded from its bytes.
+ * The payload is not copied : it is a view on the decoded bytes.
+ * See {@link NotificationProtocol} for the format.
+ */
+public final class BinaryFrame {
+
+    private final FrameType type;
+    private final int chatroomId;
+    private final long sequence;
+    private final ByteBuffer payload;
+
+    private BinaryFrame(FrameType type, int chatroomId, long sequence, ByteBuffer payload) {
+        this.type = type;
+        this.chatroomId = chatroomId;
+        this.sequence = sequence;
+        this.payload = payload;
+    }
+
+    /**
+     * Decodes a frame, without its length prefix.
+     * @param body the bytes of the frame, from the type byte to the end of the payload
+     * @return the decoded frame
+     * @throws IllegalArgumentException if the frame is malformed or of an unknown type
+     */
+    public static BinaryFrame decode(ByteBuffer body) {
+        try {
+            final FrameType type = FrameType.fromCode(body.get() & 0xFF);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown frame type");
+            }
+            final int chatroomId = NotificationProtocol.unzigzag(NotificationProtocol.readVarLong(body));
+            final long sequence = NotificationProtocol.readVarLong(body);
+            return new BinaryFrame(type, chatroomId, sequence, body.slice());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    public FrameType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the chatroom ID of the frame.
+     * @return the chatroom ID, -1 if the frame is not about a chatroom
+     */
+    public int getChatroomId() {
+        return chatroomId;
+    }
+
+    /**
+     * Gets the sequence number of the event.
+     * @return the sequence number, 0 for control frames
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the payload of the frame.
+     * @return a view on the payload bytes
+     */
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+}
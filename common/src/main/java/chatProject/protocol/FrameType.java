@@ -0,0 +1,47 @@
+package chatProject.protocol;
+
+/**
+ * The types of frames exchanged on the notification socket, with their code in the protocol.
+ * The codes are the same in the text protocol (first character of the line) and in the binary protocol (type byte).
+ */
+public enum FrameType {
+
+    NEW_CHATROOM(0), // server -> client : a new chatroom was created
+    NEW_MESSAGE(1), // server -> client : a new message was sent in a chatroom
+    USER_CHANGE(2), // server -> client : a user changed its status or account
+    NEW_MESSAGES(3), // server -> client : messages sent together, in one or more chatrooms
+    PROTOCOL(9), // both ways : protocol negotiation
+    SUBSCRIBE(10), // client -> server : subscribe to the messages of a chatroom
+    UNSUBSCRIBE(11), // client -> server : unsubscribe from the messages of a chatroom
+    AUTHENTICATE(12), // client -> server : bind the connection to a logged in user
+    HEARTBEAT(13); // client -> server : the client is alive, with the delay before its next heartbeat
+
+    private static final FrameType[] BY_CODE = new FrameType[14];
+    static {
+        for (FrameType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    /**
+     * The code of the frame type in the protocol.
+     */
+    private final int code;
+
+    FrameType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Gets a frame type from its code.
+     * @param code the code read in the protocol
+     * @return the frame type, or null if the code is unknown
+     */
+    public static FrameType fromCode(int code) {
+        return (code < 0 || code >= BY_CODE.length) ? null : BY_CODE[code];
+    }
+}
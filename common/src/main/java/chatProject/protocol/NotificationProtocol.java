@@ -0,0 +1,161 @@
+package chatProject.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The protocols of the notification socket between the server and the clients.
+ * <p>
+ * Version 1 (text, legacy) : one line per frame. The code of the {@link FrameType},
+ * the chatroom ID for new messages, then the Json of the event.
+ * <p>
+ * Version 2 (binary) : length-prefixed frames.
+ * <ul>
+ *     <li>the length of the rest of the frame (4 bytes, big endian)</li>
+ *     <li>the code of the {@link FrameType} (1 byte)</li>
+ *     <li>the chatroom ID (zigzag varint, -1 if the frame is not about a chatroom)</li>
+ *     <li>the sequence number of the event (varint, 0 for control frames)</li>
+ *     <li>the payload : the UTF-8 Json of the event</li>
+ * </ul>
+ * <p>
+ * Negotiation : every connection starts in version 1.
+ * The server sends the line {@code 9HELLO 2} (ignored by legacy clients).
+ * A client supporting the version 2 answers with the line {@code V2} and only sends binary frames from then on.
+ * The server acknowledges with the line {@code 9V2} and only sends binary frames after it.
+ * <p>
+ * Presence : the server supporting heartbeats also sends {@code 9HEARTBEAT <min> <max>} on connection,
+ * the bounds in milliseconds of the interval between two heartbeats.
+ * The client authenticates the connection with the token received in the {@link #SESSION_HEADER} of its login :
+ * the line {@code A<token>} (or an {@link FrameType#AUTHENTICATE} frame with the token as payload).
+ * The server acknowledges with {@code 9AUTHENTICATED <account ID>} : the user stays active while the connection is open.
+ * The client then sends {@code H<milliseconds>} (or a {@link FrameType#HEARTBEAT} frame with the milliseconds as payload)
+ * and promises its next heartbeat within this delay.
+ */
+public final class NotificationProtocol {
+
+    public static final int TEXT_VERSION = 1;
+    public static final int BINARY_VERSION = 2;
+
+    /**
+     * The payload of the protocol frame sent by the server on connection, followed by the highest version supported.
+     */
+    public static final String HELLO = "HELLO ";
+    /**
+     * The command to upgrade the protocol, followed by the version.
+     * Sent by the client to request it and by the server to acknowledge it.
+     */
+    public static final char UPGRADE = 'V';
+
+    /**
+     * The payload of the protocol frame sent by the server on connection if it supports heartbeats,
+     * followed by the minimum and maximum intervals between two heartbeats in milliseconds.
+     */
+    public static final String HEARTBEAT_INTERVALS = "HEARTBEAT ";
+    /**
+     * The payload of the protocol frame acknowledging the authentication of the connection, followed by the account ID.
+     */
+    public static final String AUTHENTICATED = "AUTHENTICATED ";
+    /**
+     * The command to authenticate the connection, followed by the session token.
+     */
+    public static final char AUTHENTICATE = 'A';
+    /**
+     * The command of a heartbeat, followed by the delay before the next one in milliseconds.
+     */
+    public static final char HEARTBEAT = 'H';
+    /**
+     * The HTTP header of the response to a login holding the session token, to authenticate the notification socket.
+     */
+    public static final String SESSION_HEADER = "Chat-Session";
+
+    /**
+     * The maximum length of a binary frame (after the length prefix).
+     */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private NotificationProtocol() {
+        // constants and helpers only
+    }
+
+    /**
+     * Encodes a binary frame (version 2), length prefix included.
+     * @param type the type of the frame
+     * @param chatroomId the chatroom ID, -1 if the frame is not about a chatroom
+     * @param sequence the sequence number of the event
+     * @param payload the payload of the frame
+     * @return the encoded frame
+     */
+    public static byte[] encode(FrameType type, int chatroomId, long sequence, byte[] payload) {
+        final long zigzagChatroomId = zigzag(chatroomId);
+        final int length = 1 + varLongSize(zigzagChatroomId) + varLongSize(sequence) + payload.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.put((byte) type.getCode());
+        writeVarLong(buffer, zigzagChatroomId);
+        writeVarLong(buffer, sequence);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * Writes a positive number in a variable number of bytes (7 bits per byte, low bits first).
+     * @param buffer the buffer to write to
+     * @param value the number to write
+     */
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarLong(ByteBuffer, long)}.
+     * @param buffer the buffer to read from
+     * @return the number read
+     * @throws IllegalArgumentException if the number is malformed
+     */
+    public static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Gets the number of bytes needed to write a number with {@link #writeVarLong(ByteBuffer, long)}.
+     * @param value the number to write
+     * @return the number of bytes
+     */
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Maps a signed number to a positive one so that small negative numbers stay small.
+     * @param value the signed number
+     * @return the positive number
+     */
+    public static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reverts {@link #zigzag(int)}.
+     * @param value the positive number
+     * @return the signed number
+     */
+    public static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+}
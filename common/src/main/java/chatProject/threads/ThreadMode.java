@@ -0,0 +1,98 @@
+package chatProject.threads;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The kind of threads running the blocking work of the server and the clients
+ * (one thread per connection, per request or per background task).
+ * <p>
+ * Selected at startup with {@code -Dchat.threads=platform} (default) or {@code -Dchat.threads=virtual}.
+ * Virtual threads need a JDK 21 or later : the sources stay compatible with Java 8,
+ * so they are created by reflection and the platform threads are used on older JDKs.
+ */
+public enum ThreadMode {
+
+    PLATFORM,
+    VIRTUAL;
+
+    /**
+     * The factory of unstarted virtual threads : {@code Thread.ofVirtual().name(name).unstarted(task)}.
+     * Null if the JDK has no virtual threads.
+     */
+    private static final MethodHandle UNSTARTED_VIRTUAL_THREAD = findVirtualThreadFactory();
+
+    /**
+     * Gets the mode selected at startup.
+     * Falls back to platform threads if virtual threads are requested on a JDK without them.
+     * @return the mode set by the {@code chat.threads} system property
+     */
+    public static ThreadMode fromSystemProperties() {
+        final ThreadMode mode = valueOf(System.getProperty("chat.threads", PLATFORM.name()).trim().toUpperCase());
+        if (mode == VIRTUAL && !isVirtualAvailable()) {
+            System.err.println("Virtual threads need a JDK 21 or later - using platform threads");
+            return PLATFORM;
+        }
+        return mode;
+    }
+
+    /**
+     * Checks that the running JDK supports virtual threads.
+     * @return true if virtual threads can be created
+     */
+    public static boolean isVirtualAvailable() {
+        return UNSTARTED_VIRTUAL_THREAD != null;
+    }
+
+    /**
+     * Creates a thread, not started yet.
+     * Note that virtual threads are always daemon threads.
+     * @param name the name of the thread
+     * @param task the work of the thread
+     * @return the new thread
+     */
+    public Thread newThread(String name, Runnable task) {
+        if (this == VIRTUAL && UNSTARTED_VIRTUAL_THREAD != null) {
+            try {
+                return (Thread) UNSTARTED_VIRTUAL_THREAD.invokeExact(name, task);
+            } catch (Throwable e) {
+                throw new RuntimeException("Unable to create the virtual thread " + name, e);
+            }
+        }
+        return new Thread(task, name);
+    }
+
+    /**
+     * Creates and starts a thread.
+     * @param name the name of the thread
+     * @param task the work of the thread
+     * @return the started thread
+     */
+    public Thread start(String name, Runnable task) {
+        final Thread thread = newThread(name, task);
+        thread.start();
+        return thread;
+    }
+
+    private static MethodHandle findVirtualThreadFactory() {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            final MethodHandle name = lookup.findVirtual(builderClass, "name",
+                    MethodType.methodType(builderClass, String.class));
+            final MethodHandle unstarted = lookup.findVirtual(builderClass, "unstarted",
+                    MethodType.methodType(Thread.class, Runnable.class));
+            // (String name, Runnable task) -> Thread.ofVirtual().name(name).unstarted(task)
+            final MethodHandle named = MethodHandles.collectArguments(name, 0,
+                    ofVirtual.asType(MethodType.methodType(builderClass)));
+            final MethodHandle builder = MethodHandles.collectArguments(unstarted, 0, named);
+            return builder.asType(MethodType.methodType(Thread.class, String.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            // JDK without virtual threads
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package chatProject.model.messages;
+
+import chatProject.model.user.Status;
+import chatProject.model.user.UserAccount;
+import chatProject.model.user.UserInfo;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ChatInstanceTest {
+
+    @Test
+    public void addUser() {
+        final ChatInstance<String> chat = ChatInstance.initEmptyChat();
+        final UserAccount account = new UserAccount(1, "MyUser");
+
+        assertTrue("A new user should be added", chat.addUser(new UserInfo(account, Status.ACTIVE)));
+        assertFalse("A user seen again with the same status is not a change",
+                chat.addUser(new UserInfo(account, Status.ACTIVE)));
+
+        assertEquals("The user should be found by username", Optional.of(account), chat.findAccount("MyUser"));
+        assertEquals("The user should be found by account ID", Status.ACTIVE, chat.getUser(1).getCurrentStatus());
+        assertEquals("The user should be indexed by status", 1, chat.getUsersByStatus(Status.ACTIVE).size());
+    }
+
+    @Test
+    public void addUserStatusChange() {
+        final ChatInstance<String> chat = ChatInstance.initEmptyChat();
+        final UserAccount account = new UserAccount(1, "MyUser");
+        chat.addUser(new UserInfo(account, Status.ACTIVE));
+
+        assertTrue("A status change should update the user", chat.addUser(new UserInfo(account, Status.INACTIVE)));
+
+        assertEquals("The user should only be registered once", 1, chat.getUsers().size());
+        assertEquals("The user should have its new status", Status.INACTIVE, chat.getUser(1).getCurrentStatus());
+        assertTrue("The user should not be active anymore", chat.getUsersByStatus(Status.ACTIVE).isEmpty());
+        assertEquals("The user should be inactive", 1, chat.getUsersByStatus(Status.INACTIVE).size());
+    }
+
+    @Test
+    public void getOrCreateAccount() {
+        final ChatInstance<String> chat = ChatInstance.initEmptyChat();
+        chat.addUser(new UserInfo(new UserAccount(5, "Existing"), Status.ACTIVE));
+
+        final UserAccount created = chat.getOrCreateAccount("New");
+
+        assertEquals("An existing user should keep its account", 5, chat.getOrCreateAccount("Existing").getId());
+        assertNotEquals("A new account should get an unused ID", 5, created.getId());
+        assertEquals("A created account should be found again", created.getId(), chat.getOrCreateAccount("New").getId());
+    }
+}
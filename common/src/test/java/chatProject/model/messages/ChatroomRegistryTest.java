@@ -0,0 +1,114 @@
+package chatProject.model.messages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ChatroomRegistryTest {
+
+    private static Chatroom<String> chatroom(String name) {
+        return new Chatroom<>(name, null, new ArrayList<>());
+    }
+
+    @Test
+    public void add() {
+        final ChatroomRegistry<String> registry = new ChatroomRegistry<>();
+
+        assertEquals("The first chatroom should have the ID 0", 0, registry.add("first", id -> chatroom("first")));
+        assertEquals("The IDs should follow the order of creation", 1, registry.add("second", id -> chatroom("second")));
+        assertEquals("A chatroom should be found by its name", Integer.valueOf(1), registry.findId("second"));
+        assertEquals("The names should be in the order of the IDs",
+                Arrays.asList("first", "second"), registry.getNames());
+    }
+
+    @Test
+    public void version() {
+        final ChatroomRegistry<String> registry = new ChatroomRegistry<>();
+        final long empty = registry.getVersion();
+
+        registry.add("first", id -> chatroom("first"));
+        final long added = registry.getVersion();
+        assertNotEquals("Adding a chatroom should change the version", empty, added);
+
+        try {
+            registry.add("first", id -> chatroom("first"));
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals("A rejected chatroom should not change the version", added, registry.getVersion());
+    }
+
+    @Test
+    public void addDuplicateName() {
+        final ChatroomRegistry<String> registry = new ChatroomRegistry<>();
+        registry.add("first", id -> chatroom("first"));
+        final List<String> names = registry.getNames();
+
+        try {
+            registry.add("first", id -> {
+                fail("The chatroom should not be created");
+                return null;
+            });
+            fail("A duplicate name should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame("The names should not be published again", names, registry.getNames());
+        assertEquals("The rejected chatroom should not use an ID", 1, registry.add("second", id -> chatroom("second")));
+    }
+
+    @Test
+    public void restore() {
+        final ChatroomRegistry<String> registry = new ChatroomRegistry<>();
+        assertNull("The first chatroom should have a free name", registry.restore(0, chatroom("first")));
+        assertEquals("The name conflict should be reported", Integer.valueOf(0), registry.restore(1, chatroom("first")));
+
+        assertEquals("A duplicate restored should be kept", 2, registry.size());
+        assertEquals("The first chatroom should keep its name", Integer.valueOf(0), registry.findId("first"));
+        assertEquals("A new chatroom should get the next ID", 2, registry.add("second", id -> chatroom("second")));
+    }
+
+    @Test
+    public void concurrentAdd() throws InterruptedException {
+        final ChatroomRegistry<String> registry = new ChatroomRegistry<>();
+        final int threads = 8;
+        final int chatrooms = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < chatrooms; i++) {
+                    final String name = "chatroom " + i;
+                    try {
+                        registry.add(name, id -> chatroom(name));
+                    } catch (IllegalArgumentException e) {
+                        // added by another thread
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals("Each name should be added once", chatrooms, registry.size());
+        for (int id = 0; id < chatrooms; id++) {
+            final String name = registry.get(id).getName();
+            assertEquals("Each chatroom should be found by its name", Integer.valueOf(id), registry.findId(name));
+            assertEquals("The names should be in the order of the IDs", name, registry.getNames().get(id));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package chatProject.model.messages;
+
+import chatProject.model.user.Status;
+import chatProject.model.user.UserAccount;
+import chatProject.model.user.UserInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ChatroomTest {
+
+    private static final UserInfo USER = new UserInfo(new UserAccount(1, "User1"), Status.ACTIVE);
+
+    @Test
+    public void addMessage() {
+        final Chatroom<String> chatroom = new Chatroom<>("test", USER, new ArrayList<>());
+        final long before = System.currentTimeMillis();
+
+        final Message<String> message = chatroom.addMessage(USER, "Test message");
+
+        assertEquals("The first message should have the ID 0", 0, message.getId());
+        assertEquals("The sender should be kept", USER.getAccount(), message.getSender().getAccount());
+        assertTrue("The message should have the time it was added", message.getTimestamp() >= before);
+    }
+
+    @Test
+    public void addMessageAfterStoredMessages() {
+        final List<Message<String>> stored = new ArrayList<>();
+        stored.add(new Message<>(0, USER, "First"));
+        stored.add(new Message<>(1, USER, "Second"));
+        final Chatroom<String> chatroom = new Chatroom<>("test", USER, stored);
+
+        assertEquals("A new message should follow the stored messages",
+                2, chatroom.addMessage(USER, "Third").getId());
+    }
+
+    @Test
+    public void addMessages() {
+        final Chatroom<String> chatroom = new Chatroom<>("test", USER, new ArrayList<>());
+        chatroom.addMessage(USER, "First");
+
+        final List<Message<String>> added = chatroom.addMessages(
+                Arrays.asList(USER, USER, USER), Arrays.asList("A", "B", "C"));
+
+        assertEquals("The messages should get consecutive IDs, in order",
+                Arrays.asList(1L, 2L, 3L), added.stream().map(Message::getId).collect(Collectors.toList()));
+        assertEquals("The messages should be stored in order",
+                Arrays.asList("First", "A", "B", "C"),
+                chatroom.getCurrentMessages().stream().map(Message::getMessage).collect(Collectors.toList()));
+        assertEquals("The next message should follow the batch", 4, chatroom.addMessage(USER, "Next").getId());
+    }
+
+    @Test
+    public void concurrentAddMessage() throws InterruptedException {
+        final Chatroom<String> chatroom = new Chatroom<>("test", USER, new ArrayList<>());
+        final int threads = 8;
+        final int messagesPerThread = 1000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < messagesPerThread; i++) {
+                    chatroom.addMessage(USER, "Message " + i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        final List<Message<String>> messages = chatroom.getCurrentMessages();
+        assertEquals("Every message should be stored", threads * messagesPerThread, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals("The messages should be stored in the order of their IDs, without gap",
+                    i, messages.get(i).getId());
+            if (i > 0) {
+                assertTrue("The times should follow the IDs",
+                        messages.get(i).getTimestamp() >= messages.get(i - 1).getTimestamp());
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package chatProject.model.messages;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageIdsTest {
+
+    @Test
+    public void compose() {
+        final long id = MessageIds.compose(3, 42);
+
+        assertEquals("The node should be found in the ID", 3, MessageIds.nodeOf(id));
+        assertEquals("The sequence should be found in the ID", 42, MessageIds.sequenceOf(id));
+        assertEquals("The ID of the node 0 should be the sequence", 42, MessageIds.compose(0, 42));
+        assertTrue("The IDs should be positive", MessageIds.compose((1 << MessageIds.NODE_BITS) - 1, 0) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void composeTooLargeNode() {
+        MessageIds.compose(1 << MessageIds.NODE_BITS, 0);
+    }
+}
@@ -0,0 +1,72 @@
+package chatProject.model.messages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MessageListTest {
+
+    @Test
+    public void add() {
+        final MessageList<String> messages = new MessageList<>();
+        for (int i = 0; i < 100; i++) {
+            messages.add(new Message<>(i, null, "Message " + i));
+        }
+
+        assertEquals("Every message should be stored", 100, messages.size());
+        assertEquals("The messages should be in the order they were added", 42, messages.get(42).getId());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getAfterEnd() {
+        final MessageList<String> messages = new MessageList<>();
+        messages.add(new Message<>(0, null, "Message"));
+
+        messages.get(1);
+    }
+
+    @Test
+    public void readWhileAdding() throws InterruptedException {
+        final MessageList<String> messages = new MessageList<>();
+        final int count = 100_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread reader = new Thread(() -> {
+                try {
+                    start.await();
+                    while (messages.size() < count) {
+                        // every message before the size read is visible, in order
+                        final int size = messages.size();
+                        for (int i = Math.max(0, size - 100); i < size; i++) {
+                            assertEquals(i, messages.get(i).getId());
+                        }
+                        for (Message<String> message : messages) {
+                            assertNotNull(message);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        start.countDown();
+        for (int i = 0; i < count; i++) {
+            messages.add(new Message<>(i, null, "Message " + i));
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull("The readers should see the messages while they are added", error.get());
+        assertEquals("Every message should be stored", count, messages.size());
+    }
+}
@@ -1,5 +1,7 @@
 package chatProject.model.messages;
 
+import chatProject.model.user.Status;
+import chatProject.model.user.UserInfo;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -23,5 +25,13 @@ public class MessageTest {
         assertEquals("The message content is not the one set in the constructor",
                 content, message.getMessage());
     }
-    
-}
\ No newline at end of file
+
+    @Test
+    public void getSenderIdWithoutAccount() {
+        final Message<String> message = new Message<>(0, new UserInfo(null, Status.ACTIVE), "TEST");
+
+        assertEquals("A sender without account should be stored as no sender",
+                Message.NO_SENDER, message.getSenderId());
+    }
+
+}
@@ -0,0 +1,103 @@
+package chatProject.model.user;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PresenceTableTest {
+
+    private static final UserAccount ACCOUNT_1 = new UserAccount(1, "User1");
+    private static final UserAccount ACCOUNT_2 = new UserAccount(2, "User2");
+
+    @Test
+    public void update() {
+        final PresenceTable table = new PresenceTable();
+
+        assertTrue("A new user is a change", table.update(new UserInfo(ACCOUNT_1, Status.ACTIVE), LocalTime.now()));
+        final long version = table.get(1).getVersion();
+        final LocalTime seen = LocalTime.now();
+
+        assertFalse("A user seen again is not a change", table.update(new UserInfo(ACCOUNT_1, Status.ACTIVE), seen));
+        assertEquals("A user seen again should keep its version", version, table.get(1).getVersion());
+        assertEquals("A user seen again should have a new last-seen time", seen, table.get(1).getLastSeen());
+
+        assertTrue("A status change is a change", table.update(new UserInfo(ACCOUNT_1, Status.INACTIVE), seen));
+        assertTrue("A status change should have a new version", table.get(1).getVersion() > version);
+    }
+
+    @Test
+    public void getChangesSince() {
+        final PresenceTable table = new PresenceTable();
+        table.update(new UserInfo(ACCOUNT_1, Status.ACTIVE), LocalTime.now());
+        table.update(new UserInfo(ACCOUNT_2, Status.ACTIVE), LocalTime.now());
+        final long version = table.getChangesSince(0).getVersion();
+
+        table.update(new UserInfo(ACCOUNT_1, Status.INACTIVE), LocalTime.now());
+        final PresenceChanges changes = table.getChangesSince(version);
+
+        assertEquals("Only the changed user should be returned",
+                1, changes.getUsers().size());
+        assertEquals("The changed user should have its new status",
+                Status.INACTIVE, changes.getUsers().get(0).getCurrentStatus());
+        assertTrue("No change should be returned after the last version",
+                table.getChangesSince(changes.getVersion()).getUsers().isEmpty());
+        assertEquals("A version from the future should return all the users",
+                2, table.getChangesSince(changes.getVersion() + 100).getUsers().size());
+    }
+
+    @Test
+    public void getByStatus() {
+        final PresenceTable table = new PresenceTable();
+        table.update(new UserInfo(ACCOUNT_1, Status.ACTIVE), LocalTime.now());
+        table.update(new UserInfo(ACCOUNT_2, Status.ACTIVE), LocalTime.now());
+        table.update(new UserInfo(ACCOUNT_1, Status.INACTIVE), LocalTime.now());
+
+        assertEquals("Only the active users should be returned",
+                1, table.getByStatus(Status.ACTIVE).size());
+        assertEquals("The inactive users should be returned",
+                ACCOUNT_1, table.getByStatus(Status.INACTIVE).get(0).getUser().getAccount());
+    }
+
+    @Test
+    public void concurrentUpdates() throws InterruptedException {
+        final PresenceTable table = new PresenceTable();
+        final int threads = 8;
+        final int users = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int round = 0; round < 1000; round++) {
+                    final Status status = (round % 2 == 0) ? Status.ACTIVE : Status.INACTIVE;
+                    table.update(new UserInfo(new UserAccount(round % users, "user" + round % users), status),
+                            LocalTime.now());
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals("Every user should have one entry", users, table.size());
+        assertEquals("The status index should match the entries",
+                table.getAll().stream().filter(p -> p.getUser().getCurrentStatus() == Status.ACTIVE).count(),
+                table.getByStatus(Status.ACTIVE).size());
+        assertEquals("The changes since the beginning should be the last entry of every user",
+                table.getAll().stream().map(Presence::getUser).collect(Collectors.toSet()),
+                table.getChangesSince(0).getUsers().stream().collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,51 @@
+package chatProject.protocol;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class NotificationProtocolTest {
+
+    @Test
+    public void encodeDecode() {
+        final byte[] payload = "{\"id\":42}".getBytes(StandardCharsets.UTF_8);
+        final byte[] encoded = NotificationProtocol.encode(FrameType.NEW_MESSAGE, 1234, 987654321L, payload);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        assertEquals("The length prefix should be the length of the rest of the frame",
+                encoded.length - 4, buffer.getInt());
+
+        final BinaryFrame frame = BinaryFrame.decode(buffer);
+        assertEquals(FrameType.NEW_MESSAGE, frame.getType());
+        assertEquals(1234, frame.getChatroomId());
+        assertEquals(987654321L, frame.getSequence());
+        final byte[] decodedPayload = new byte[frame.getPayload().remaining()];
+        frame.getPayload().get(decodedPayload);
+        assertArrayEquals("The payload should not change", payload, decodedPayload);
+    }
+
+    @Test
+    public void noChatroom() {
+        final byte[] encoded = NotificationProtocol.encode(FrameType.USER_CHANGE, -1, 1, new byte[0]);
+
+        final BinaryFrame frame = BinaryFrame.decode(ByteBuffer.wrap(encoded, 4, encoded.length - 4));
+        assertEquals("A frame without chatroom should keep the -1 chatroom ID", -1, frame.getChatroomId());
+        assertEquals(0, frame.getPayload().remaining());
+    }
+
+    @Test
+    public void zigzag() {
+        for (int value : new int[]{0, -1, 1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            assertEquals(value, NotificationProtocol.unzigzag(NotificationProtocol.zigzag(value)));
+        }
+        assertEquals("Small negative numbers should stay small", 1, NotificationProtocol.zigzag(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownType() {
+        BinaryFrame.decode(ByteBuffer.wrap(new byte[]{(byte) 99, 0, 0}));
+    }
+}
@@ -0,0 +1,37 @@
+package chatProject.threads;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ThreadModeTest {
+
+    @Test
+    public void platformByDefault() {
+        System.clearProperty("chat.threads");
+        assertEquals(ThreadMode.PLATFORM, ThreadMode.fromSystemProperties());
+    }
+
+    @Test
+    public void virtualOnlyIfAvailable() {
+        System.setProperty("chat.threads", "virtual");
+        try {
+            final ThreadMode expected = ThreadMode.isVirtualAvailable() ? ThreadMode.VIRTUAL : ThreadMode.PLATFORM;
+            assertEquals(expected, ThreadMode.fromSystemProperties());
+        } finally {
+            System.clearProperty("chat.threads");
+        }
+    }
+
+    @Test
+    public void runsTheTaskInANamedThread() throws InterruptedException {
+        for (ThreadMode mode : ThreadMode.values()) {
+            final AtomicReference<String> name = new AtomicReference<>();
+            final Thread thread = mode.start("test-" + mode, () -> name.set(Thread.currentThread().getName()));
+            thread.join();
+            assertEquals("test-" + mode, name.get());
+        }
+    }
+}
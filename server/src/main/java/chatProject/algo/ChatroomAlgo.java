@@ -21,7 +21,7 @@ public interface ChatroomAlgo<T> extends ChatroomsListener<T> {
     /**
      * Gets the model of a chatroom given its ID.
      * @param chatroomId the chatroom ID
-     * @return the model of the chatroom
+     * @return the model of the chatroom, null if there is no chatroom with this ID
      */
     Chatroom<T> getChatroom(int chatroomId);
 
@@ -30,6 +30,7 @@ public interface ChatroomAlgo<T> extends ChatroomsListener<T> {
      * @param chatroomName the name of the chatroom to create
      * @param owner the user who created the chatroom
      * @return the ID of the new chatroom created
+     * @throws IllegalArgumentException if a chatroom already has this name
      */
     int addChatroom(String chatroomName, UserInfo owner);
 
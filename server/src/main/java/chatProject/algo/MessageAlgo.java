@@ -25,6 +25,18 @@ public interface MessageAlgo<T> extends MessageListener<T> {
      * Gets the list of messages in a chatroom.
      * @param chatroomId the ID of the chatroom to query
      * @return the list of messages in this chatroom
+     * @throws IllegalArgumentException if the chatroom does not exist
      */
     List<Message<T>> getChatroomMessages(int chatroomId);
+
+    /**
+     * Gets a page of the messages in a chatroom, between 2 message IDs.
+     * @param chatroomId the ID of the chatroom to query
+     * @param afterId the ID of the message before the page (excluded), null to start at the first message
+     * @param beforeId the ID of the message after the page (excluded), null to stop at the last message
+     * @param limit the maximum number of messages in the page
+     * @return the first messages after {@code afterId} if set, the last messages before {@code beforeId} otherwise
+     * @throws IllegalArgumentException if the chatroom does not exist
+     */
+    List<Message<T>> getChatroomMessages(int chatroomId, Long afterId, Long beforeId, int limit);
 }
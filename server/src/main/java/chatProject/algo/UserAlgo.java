@@ -1,6 +1,7 @@
 package chatProject.algo;
 
 import chatProject.model.listener.UserListener;
+import chatProject.model.user.PresenceChanges;
 import chatProject.model.user.UserInfo;
 
 import java.util.Collection;
@@ -22,4 +23,11 @@ public interface UserAlgo extends UserListener {
      * @return the users stored in the chat.
      */
     Collection<UserInfo> getUsers();
+
+    /**
+     * Gets the users whose status changed after a version of the presence of the users.
+     * @param sinceVersion the last version known, 0 for all the users
+     * @return the changed users, with the version to ask the next changes from
+     */
+    PresenceChanges getUserChanges(long sinceVersion);
 }
@@ -1,22 +1,43 @@
 package chatProject.server;
 
+import chatProject.AddMessageForm;
 import chatProject.algo.ChatroomAlgo;
 import chatProject.algo.MessageAlgo;
 import chatProject.algo.UserAlgo;
 import chatProject.model.messages.ChatInstance;
 import chatProject.model.messages.Chatroom;
 import chatProject.model.messages.Message;
+import chatProject.model.messages.MessageBatch;
+import chatProject.model.messages.MessageList;
+import chatProject.model.messages.MessagePage;
 import chatProject.model.user.UserInfo;
+import chatProject.model.user.Presence;
+import chatProject.model.user.PresenceChanges;
 import chatProject.model.user.Status;
 import chatProject.model.user.UserAccount;
+import chatProject.server.history.ColdHistory;
+import chatProject.server.history.ColdTier;
+import chatProject.server.history.HistoryConfig;
+import chatProject.server.history.HistoryCounters;
+import chatProject.server.history.HistoryStats;
+import chatProject.server.history.HotTail;
+import chatProject.server.history.OffHeapArena;
+import chatProject.server.history.TieredMessages;
+import chatProject.server.log.ChatLog;
+import chatProject.server.log.LogConfig;
+import chatProject.server.log.RecoveryStats;
+import chatProject.threads.ThreadMode;
 import com.google.gson.Gson;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -24,7 +45,7 @@ import java.util.stream.Collectors;
  * To be generated in the {@link Main} instance using {@link #initEmptyChat(int, Gson)}.
  * @param <T> the type of messages to use (probably String)
  */
-public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>, AutoCloseable {
+public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>, SocketPresence, AutoCloseable {
 
     /**
      * The model for the chat.
@@ -32,9 +53,9 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     private final ChatInstance<T> chatInstance;
 
     /**
-     * The current list of connected clients.
+     * The current list of connected clients, with their chatroom subscriptions.
      */
-    private final Collection<ClientNotifierInterface<T>> clientNotifiers;
+    private final ClientRegistry<T> clientNotifiers;
 
     /**
      * A shared Json (de)serializer to improve performance.
@@ -42,7 +63,13 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     private final Gson json;
 
     /**
-     * The thread that holds a socket to send notifications of new messages and new chatrooms to clients.
+     * The non-blocking server of the socket that sends notifications of new messages and new chatrooms to clients.
+     * Must be closed on close.
+     */
+    private NotificationServer<T> notificationServer = null;
+
+    /**
+     * The thread that holds a blocking socket to send notifications to clients (legacy mode only).
      * Must be interrupted on close.
      */
     private Thread socketThread = null;
@@ -53,11 +80,70 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     private Thread checkIdleClients = null;
 
+    /**
+     * The deadlines of the active users, by account ID : null until the idle check is started.
+     */
+    private volatile TimerWheel<Integer> idleUsers = null;
+
+    /**
+     * The idle timeout of the active users, in nanoseconds.
+     */
+    private long idleTimeoutNanos = 0;
+
+    /**
+     * The session tokens of the logged in users, to authenticate the notification socket.
+     */
+    private final SessionTokens sessions = new SessionTokens();
+
+    /**
+     * The number of authenticated connections to the notification socket, by account ID.
+     * The heartbeats of these connections drive the idle deadline of their users instead of the logins.
+     */
+    private final Map<Integer, Integer> socketSessions = new ConcurrentHashMap<>();
+
+    /**
+     * The heartbeats of the authenticated connections.
+     */
+    private HeartbeatConfig heartbeatConfig = HeartbeatConfig.fromSystemProperties();
+
+    /**
+     * The thread applying the presence changes of the authenticated connections, in their order :
+     * a change may wait for the log, which must never block the event loops of the notification socket.
+     * Null until the socket is opened (the changes are then applied by the caller).
+     * Must be shut down on close.
+     */
+    private ExecutorService presenceUpdates = null;
+
+    /**
+     * The kind of threads running the blocking work of this server.
+     */
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    /**
+     * The durable log of the chatrooms and messages, null if they are only kept in memory.
+     */
+    private ChatLog<T> log = null;
+
+    /**
+     * The cold tier of the chatrooms kept in memory, null if every message stays in memory (or with the log).
+     */
+    private ColdTier<T> coldTier = null;
+
+    /**
+     * The size of the hot tail of the chatrooms with a cold tier.
+     */
+    private int hotMessages = 0;
+
+    /**
+     * The hits and misses of the hot tails of the chatrooms.
+     */
+    private final HistoryCounters historyCounters = new HistoryCounters();
+
     public ChatServer(ChatInstance<T> chatInstance,
                       Collection<ClientNotifierInterface<T>> clientNotifiers,
                       Gson json) {
         this.chatInstance = chatInstance;
-        this.clientNotifiers = clientNotifiers;
+        this.clientNotifiers = new ClientRegistry<>(clientNotifiers);
         this.json = json;
     }
 
@@ -71,21 +157,39 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     public static <T> ChatServer<T> initEmptyChat(int socketPort, Gson json) {
 
         // instantiate a new instance of this class with an empty model.
+        // the notifiers are added by the socket threads while the web services iterate them
         final ChatServer<T> server = new ChatServer<>(
                 ChatInstance.initEmptyChat(),
-                new HashSet<>(),
+                ConcurrentHashMap.newKeySet(),
                 json);
+        server.threadMode = ThreadMode.fromSystemProperties();
+
+        final LogConfig logConfig = LogConfig.fromSystemProperties();
+        final HistoryConfig historyConfig = HistoryConfig.fromSystemProperties();
+        if (logConfig.isEnabled()) {
+            // restore the chatrooms and messages of the previous runs
+            server.openLog(logConfig, historyConfig);
+        } else if (historyConfig.isEnabled()) {
+            // only the recent messages in memory
+            server.openHistory(historyConfig);
+        }
 
-        // open a dedicated thread to manage the socket for notifications.
-        server.socketThread = new Thread(() -> {
+        if (Boolean.getBoolean("chat.notifications.blocking")) {
+            // legacy mode : open a dedicated thread to manage a blocking socket for notifications.
+            server.socketThread = server.threadMode.start("notification-accept", () -> {
+                try {
+                    server.openBlockingSocket(socketPort);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to open new socket on port " + socketPort, e);
+                }
+            });
+        } else {
             try {
-                server.openSocket(socketPort);
+                server.openSocket(socketPort, NotificationServerConfig.fromSystemProperties());
             } catch (IOException e) {
                 throw new RuntimeException("Unable to open new socket on port " + socketPort, e);
             }
-        });
-
-        //TODO: I should start the socket thread here
+        }
 
         server.checkIdleClients();
 
@@ -93,11 +197,89 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     }
 
     /**
-     * Opens a socket on the given port to notify clients of new chatrooms and messages.
+     * Opens the durable log of the chat, restores the users and chatrooms it contains
+     * (from the last snapshot and the records after it) and starts the periodic snapshots.
+     * Must be called before any chatroom is added.
+     * @param config the configuration of the log
+     * @return what was restored, and how long it took
+     */
+    public RecoveryStats openLog(LogConfig config) {
+        return openLog(config, HistoryConfig.fromSystemProperties());
+    }
+
+    /**
+     * Opens the durable log of the chat, restores the users and chatrooms it contains
+     * (from the last snapshot and the records after it) and starts the periodic snapshots.
+     * The recent messages of every chatroom are kept in memory, the older ones are read from the log.
+     * Must be called before any chatroom is added.
+     * @param config the configuration of the log
+     * @param history the size of the hot tail of the chatrooms
+     * @return what was restored, and how long it took
+     * @throws IllegalArgumentException if the history is off-heap : the log is already the cold tier
+     */
+    public RecoveryStats openLog(LogConfig config, HistoryConfig history) {
+        if (history.isOffHeap()) {
+            throw new IllegalArgumentException("chat.history.offHeap cannot be used with the log (chat.log.dir) :"
+                    + " the log already keeps the old messages");
+        }
+        try {
+            this.log = ChatLog.open(config, json, history, historyCounters);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open the log in " + config.getDirectory(), e);
+        }
+        final RecoveryStats stats = this.log.recover(chatInstance);
+        System.out.println(stats);
+        this.log.startSnapshots(chatInstance);
+        return stats;
+    }
+
+    /**
+     * Keeps only the recent messages of the new chatrooms on the heap : the older ones move to a cold tier,
+     * on disk or in off-heap arenas.
+     * Only used without the log (the log is the cold tier of its chatrooms).
+     * Must be called before any chatroom is added.
+     * @param config the configuration of the history
+     */
+    public void openHistory(HistoryConfig config) {
+        this.hotMessages = config.getHotMessages();
+        if (config.isOffHeap()) {
+            this.coldTier = new OffHeapArena<>(config.getSegmentBytes());
+            return;
+        }
+        try {
+            this.coldTier = ColdHistory.open(config, json);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open the history in " + config.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Opens a non-blocking socket on the given port to notify clients of new chatrooms and messages.
+     * The clients are handled by the event loops of a {@link NotificationServer} : this method does not block.
+     * The clients authenticated with a session token drive the presence of their users with heartbeats.
      * @param port the port to use
+     * @param config the configuration of the notification server
      * @throws IOException if the socket cannot be opened
      */
-    public void openSocket(int port) throws IOException {
+    public void openSocket(int port, NotificationServerConfig config) throws IOException {
+        this.heartbeatConfig = config.getHeartbeatConfig();
+        this.presenceUpdates = Executors.newSingleThreadExecutor(task -> {
+            final Thread thread = threadMode.newThread("socket-presence", task);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.notificationServer = new NotificationServer<>(config, clientNotifiers, json, this);
+        this.notificationServer.start(port);
+    }
+
+    /**
+     * Opens a blocking socket on the given port to notify clients of new chatrooms and messages.
+     * Uses one blocking {@link ClientNotifier} per client, with a writer thread of the {@link ThreadMode} of this server :
+     * this method loops until the socket is closed.
+     * @param port the port to use
+     * @throws IOException if the socket cannot be opened
+     */
+    public void openBlockingSocket(int port) throws IOException {
 
         // open the socket in a try-with-resources (auto close the socket on exit)
         try (ServerSocket serverSocket = new ServerSocket(port)) {
@@ -110,32 +292,50 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
                 // a new client has been found
                 clientNotifiers.add(
                         // init the notifier to send notifs for this new client
-                        ClientNotifier.init(client, json)
+                        // it removes itself from the connected clients once disconnected
+                        ClientNotifier.init(client, json, OutboundQueueConfig.fromSystemProperties(), threadMode,
+                                clientNotifiers::remove)
                 );
             }
         }
     }
 
     /**
-     * Checks for idle clients (no ping for a long time).
+     * Checks for idle clients (no ping for a long time), with the default configuration.
      * Updates the status of these users accordingly.
      */
     public void checkIdleClients() {
-        this.checkIdleClients = new Thread(() -> {
+        checkIdleClients(IdleConfig.fromSystemProperties());
+    }
+
+    /**
+     * Checks for idle clients (no ping for a long time).
+     * Updates the status of these users accordingly.
+     * <p>
+     * Each ping of an active user moves its deadline in a {@link TimerWheel} :
+     * only the users whose deadline passed are checked at each tick, not all the users.
+     * @param config the idle timeout and the resolution of the check
+     */
+    public void checkIdleClients(IdleConfig config) {
+        final long tickNanos = config.getTick(TimeUnit.NANOSECONDS);
+        this.idleTimeoutNanos = config.getTimeout(TimeUnit.NANOSECONDS);
+        final TimerWheel<Integer> wheel = new TimerWheel<>(tickNanos, System.nanoTime());
+        // the users active before the check (e.g. restored from the log) get a full timeout
+        chatInstance.getPresence().getByStatus(Status.ACTIVE).forEach(presence ->
+                wheel.schedule(presence.getUser().getAccount().getId(), System.nanoTime() + idleTimeoutNanos));
+        this.idleUsers = wheel;
+
+        this.checkIdleClients = threadMode.newThread("check-idle-clients", () -> {
             while(true) {
                 try {
-                    Thread.sleep(100); // check every 100ms
-                    // avoid removing instances during the iteration - store members to update
-                    final Collection<UserInfo> usersToUpdate = new HashSet<>();
-                    chatInstance.getUsers().forEach( (user, time) -> {
-                                if (user.getCurrentStatus() == Status.ACTIVE
-                                        && ChronoUnit.SECONDS.between(time, LocalDateTime.now()) > 2) {
-                                    user.setCurrentStatus(Status.INACTIVE);
-                                    usersToUpdate.add(user);
-                                }
-                            }
-                    );
-                    usersToUpdate.forEach(this::notifyUserChange);
+                    TimeUnit.NANOSECONDS.sleep(tickNanos);
+                    // only the users whose deadline passed
+                    for (Integer accountId : wheel.advance(System.nanoTime())) {
+                        final Presence presence = chatInstance.getPresence().get(accountId);
+                        if (presence != null && presence.getUser().getCurrentStatus() == Status.ACTIVE) {
+                            notifyUserChange(new UserInfo(presence.getUser().getAccount(), Status.INACTIVE));
+                        }
+                    }
                 } catch (InterruptedException e) {
                     // interrupted
                     break;
@@ -156,9 +356,54 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
         // 2. terminate all threads :
 
         // cleanly close the check for idle clients
-        checkIdleClients.interrupt();
+        if (checkIdleClients != null) {
+            checkIdleClients.interrupt();
+        }
         // cleanly close the socket on exit
-        socketThread.interrupt();
+        if (notificationServer != null) {
+            notificationServer.close();
+        }
+        if (presenceUpdates != null) {
+            presenceUpdates.shutdownNow();
+        }
+        if (socketThread != null) {
+            socketThread.interrupt();
+        }
+        if (log != null) {
+            log.close();
+        }
+        if (coldTier != null) {
+            coldTier.close();
+        }
+    }
+
+    /**
+     * Gets the kind of threads running the blocking work of this server.
+     * @return the thread mode selected at startup
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * Gets the counters of the outbound queues of the connected clients.
+     * @return the counters of every client, the most lagging clients first
+     */
+    @SuppressWarnings("unchecked")
+    public List<NotifierStats> getNotifierStats() {
+        return clientNotifiers.getClients().stream()
+                .filter(MonitoredClientNotifier.class::isInstance)
+                .map(notifier -> ((MonitoredClientNotifier<T>) notifier).getStats())
+                .sorted(Comparator.comparingInt(NotifierStats::getQueueDepth).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the counters of the reads of the history of the chatrooms.
+     * @return the hits and misses of the hot tails of the chatrooms
+     */
+    public HistoryStats getHistoryStats() {
+        return historyCounters.getStats();
     }
 
     /* **************************** User part *********************/
@@ -171,13 +416,34 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
         return chatInstance.getUsers().keySet();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PresenceChanges getUserChanges(long sinceVersion) {
+        return chatInstance.getPresence().getChangesSince(sinceVersion);
+    }
+
+    /**
+     * Gets the version of the users, to tell the clients whether their users are still current.
+     * @return the version of the users, changed when a user is added or its status changes
+     */
+    public long getUsersVersion() {
+        return chatInstance.getUsersVersion();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public UserInfo login(String userName) {
+        final UserAccount account;
+        synchronized (chatInstance) {
+            // a new user gets a new account
+            account = chatInstance.getOrCreateAccount(userName);
+        }
         final UserInfo user = new UserInfo(
-                findUser(userName).orElse(new UserAccount(0, "test")),
+                account,
                 Status.ACTIVE // user just logged in - status is active
         );
         notifyUserChange(user);
@@ -185,25 +451,23 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
         return user;
     }
 
+    /**
+     * Gets the session token of a user, to authenticate its connection to the notification socket.
+     * @param account the account of the logged in user
+     * @return the token of the user
+     */
+    public String getSessionToken(UserAccount account) {
+        return sessions.issue(account.getId());
+    }
+
     /**
      * Finds a user in the model given its username (if the user is already registered).
      * @param userName the username to find
      * @return an optional {@link UserAccount} with the user model only if already in the model
      */
     public Optional<UserAccount> findUser(String userName) {
-        // Test code
-       /* if (userName.equals("testUser")) {
-            return Optional.of(new UserAccount(0, userName));
-        } else {
-            return Optional.empty();
-        }*/
-        // Real code
-
-        return chatInstance.getUsers().keySet().stream()
-                .map(UserInfo::getAccount)
-                .filter(account -> account.getUsername().equals(userName))
-                .findAny();
-
+        // the accounts are indexed by username
+        return chatInstance.findAccount(userName);
     }
 
     /**
@@ -212,15 +476,122 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     @Override
     public UserInfo notifyUserChange(UserInfo user) {
         // notify a user change only if the user did change
-        if (chatInstance.addUser(user)) {
+        final boolean changed;
+        long address = -1;
+        if (log == null) {
+            // the presence table is updated without lock
+            changed = chatInstance.addUser(user);
+        } else {
+            synchronized (chatInstance) {
+                changed = chatInstance.addUser(user);
+                if (changed) {
+                    // logged in the order of the changes, so that the last one wins at recovery
+                    address = log.writeUser(user, chatInstance.getPresence().get(user.getAccount().getId()).getLastSeen());
+                }
+            }
+            if (address >= 0) {
+                log.awaitDurable(address);
+            }
+        }
+        final TimerWheel<Integer> wheel = idleUsers;
+        if (wheel != null) {
+            // a ping of an active user moves its deadline - unless its heartbeats do
+            if (user.getCurrentStatus() == Status.ACTIVE) {
+                if (!socketSessions.containsKey(user.getAccount().getId())) {
+                    wheel.schedule(user.getAccount().getId(), System.nanoTime() + idleTimeoutNanos);
+                }
+            } else {
+                wheel.cancel(user.getAccount().getId());
+            }
+        }
+        if (changed) {
             // notify all clients
-            clientNotifiers.forEach(
-                    client -> client.notifyUserChange(user)
-            );
+            broadcast(NotificationFrame.userChange(json, user));
         }
         return user;
     }
 
+    /**
+     * {@inheritDoc}
+     * The user becomes active, and must send its first heartbeat within the shortest interval.
+     */
+    @Override
+    public int authenticate(String token) {
+        final int accountId = sessions.find(token);
+        final Presence presence = chatInstance.getPresence().get(accountId);
+        if (presence == null) {
+            return NO_ACCOUNT;
+        }
+        socketSessions.merge(accountId, 1, Integer::sum);
+        heartbeat(accountId, heartbeatConfig.getMinIntervalMillis());
+        return accountId;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Refreshes the last time the user was seen, and moves its idle deadline after the announced interval :
+     * a user change is only broadcast if the user was inactive.
+     */
+    @Override
+    public void heartbeat(int accountId, long nextIntervalMillis) {
+        updatePresence(() -> keepActive(accountId, nextIntervalMillis));
+    }
+
+    /**
+     * Marks a user active until the next heartbeat of its connection is due.
+     * @param accountId the account ID of the connection
+     * @param nextIntervalMillis the delay before the next heartbeat announced by the client
+     */
+    private void keepActive(int accountId, long nextIntervalMillis) {
+        final Presence presence = chatInstance.getPresence().get(accountId);
+        if (presence == null) {
+            return;
+        }
+        notifyUserChange(new UserInfo(presence.getUser().getAccount(), Status.ACTIVE));
+        final TimerWheel<Integer> wheel = idleUsers;
+        if (wheel != null) {
+            wheel.schedule(accountId,
+                    System.nanoTime() + heartbeatConfig.getTimeout(nextIntervalMillis, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The user becomes inactive once its last connection is closed, without waiting for its idle deadline.
+     */
+    @Override
+    public void disconnected(int accountId) {
+        if (socketSessions.computeIfPresent(accountId, (id, count) -> count > 1 ? count - 1 : null) != null) {
+            // still connected from another client
+            return;
+        }
+        updatePresence(() -> {
+            final Presence presence = chatInstance.getPresence().get(accountId);
+            // unless connected again meanwhile
+            if (presence != null && presence.getUser().getCurrentStatus() == Status.ACTIVE
+                    && !socketSessions.containsKey(accountId)) {
+                notifyUserChange(new UserInfo(presence.getUser().getAccount(), Status.INACTIVE));
+            }
+        });
+    }
+
+    /**
+     * Applies a presence change of an authenticated connection on the presence thread, never on the event loop.
+     * @param update the change to apply
+     */
+    private void updatePresence(Runnable update) {
+        final ExecutorService executor = presenceUpdates;
+        if (executor == null) {
+            update.run();
+            return;
+        }
+        try {
+            executor.execute(update);
+        } catch (RejectedExecutionException e) {
+            // the server is closed
+        }
+    }
+
     /* **************************** Chatroom part *********************/
 
     /**
@@ -228,13 +599,16 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public List<String> getCurrentChatroomNames() {
-        return chatInstance
-                // retrieve all chatrooms
-                .getCurentChatrooms()
-                .stream()
-                // get the chatroom name(s) from the model(s) instance(s)
-                .map(Chatroom::getName)
-                .collect(Collectors.toList());
+        // cached by the model : only rebuilt when a chatroom is added
+        return chatInstance.getChatroomNames();
+    }
+
+    /**
+     * Gets the version of the chatrooms, to tell the clients whether their list is still current.
+     * @return the version of the chatrooms, changed when a chatroom is added
+     */
+    public long getChatroomsVersion() {
+        return chatInstance.getChatroomsVersion();
     }
 
     /**
@@ -242,7 +616,7 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public Chatroom<T> getChatroom(int chatroomId) {
-        return chatInstance.getCurentChatrooms().get(0);
+        return chatInstance.getChatroom(chatroomId);
     }
 
     /**
@@ -251,14 +625,24 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     @Override
     public int addChatroom(String chatroomName, UserInfo owner) {
 
-        // instantiate the chatroom
-        final Chatroom<T> newChatroom = new Chatroom<>(chatroomName, owner, new ArrayList<>());
+        if (log != null) {
+            // the chatroom and its messages are written through to the log
+            // (written once the name is known to be free)
+            synchronized (chatInstance) {
+                return chatInstance.addChatroom(chatroomName,
+                        chatroomId -> log.newChatroom(chatroomId, chatroomName, owner));
+            }
+        }
 
-        // add it in the model
+        // instantiate the chatroom and add it in the model (if the name is free)
 
         /* maybe I should notify clients about the new chatroom ?? */
 
-        return chatInstance.addChatroom(newChatroom);
+        return chatInstance.addChatroom(chatroomName,
+                chatroomId -> new Chatroom<>(chatroomName, owner,
+                        (coldTier == null)
+                                ? new MessageList<>()
+                                : new TieredMessages<>(coldTier, chatroomId, new HotTail<>(hotMessages, historyCounters))));
     }
 
     /**
@@ -266,11 +650,7 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public Chatroom<T> notifyNewChatroom(Chatroom<T> newChatroom) {
-        if (clientNotifiers != null) {
-            clientNotifiers.forEach(
-                    client -> client.notifyNewChatroom(newChatroom)
-            );
-        }
+        broadcast(NotificationFrame.newChatroom(json, newChatroom));
         return newChatroom;
     }
 
@@ -281,9 +661,31 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
      */
     @Override
     public List<Message<T>> getChatroomMessages(int chatroomId) {
-        return Optional.ofNullable(getChatroom(chatroomId))
-                .get()
-                .getCurrentMessages();
+        // with the log, a view decoding each message from the mapped segments when it is read
+        return getExistingChatroom(chatroomId).getCurrentMessages();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Message<T>> getChatroomMessages(int chatroomId, Long afterId, Long beforeId, int limit) {
+        // only the messages of the page are read (and decoded from the log, if any)
+        return getExistingChatroom(chatroomId).getMessagesPage(afterId, beforeId, limit);
+    }
+
+    /**
+     * Gets a chatroom that must exist.
+     * @param chatroomId the ID of the chatroom
+     * @return the chatroom
+     * @throws IllegalArgumentException if the chatroom does not exist
+     */
+    private Chatroom<T> getExistingChatroom(int chatroomId) {
+        final Chatroom<T> chatroom = getChatroom(chatroomId);
+        if (chatroom == null) {
+            throw new IllegalArgumentException("No chatroom " + chatroomId);
+        }
+        return chatroom;
     }
 
     /**
@@ -292,8 +694,77 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     @Override
     public Message<T> addMessage(int chatroomId, UserInfo user, T content) {
 
-        // return new created message
-        return getChatroom(chatroomId).addMessage(user, content);
+        // return new created message (written through to the log, if any)
+        return getChatroom(chatroomId).addMessage(internSender(user), content);
+    }
+
+    /**
+     * Adds many messages at once, possibly in many chatrooms.
+     * The messages of a chatroom are appended in one ordering step, in the order of the forms :
+     * no other message is appended between them.
+     * @param forms the messages to add
+     * @return the new messages created, in the order of the forms
+     * @throws IllegalArgumentException if a chatroom does not exist : no message is added
+     */
+    public List<Message<T>> addMessages(List<AddMessageForm<T>> forms) {
+        // the forms of each chatroom, in order
+        final Map<Integer, List<Integer>> indexesByChatroom = new LinkedHashMap<>();
+        for (int i = 0; i < forms.size(); i++) {
+            final int chatroomId = forms.get(i).getChatroomId();
+            if (getChatroom(chatroomId) == null) {
+                throw new IllegalArgumentException("No chatroom " + chatroomId);
+            }
+            indexesByChatroom.computeIfAbsent(chatroomId, id -> new ArrayList<>()).add(i);
+        }
+
+        final List<Message<T>> added = new ArrayList<>(Collections.nCopies(forms.size(), null));
+        indexesByChatroom.forEach((chatroomId, indexes) -> {
+            final List<UserInfo> senders = new ArrayList<>(indexes.size());
+            final List<T> contents = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                senders.add(internSender(forms.get(index).getUser()));
+                contents.add(forms.get(index).getContent());
+            }
+            final List<Message<T>> messages = getChatroom(chatroomId).addMessages(senders, contents);
+            for (int i = 0; i < indexes.size(); i++) {
+                added.set(indexes.get(i), messages.get(i));
+            }
+        });
+        return added;
+    }
+
+    /**
+     * Finds the shared instance of a sender in the users of the chat, so that the messages do not keep
+     * a copy of their sender each.
+     * @param user the sender of a message
+     * @return the registered user with the same account, the given user if it is not registered
+     */
+    private UserInfo internSender(UserInfo user) {
+        if (user == null || user.getAccount() == null) {
+            return user;
+        }
+        final UserInfo registered = chatInstance.getUser(user.getAccount().getId());
+        return (registered != null
+                && Objects.equals(registered.getAccount().getUsername(), user.getAccount().getUsername()))
+                ? registered
+                : user;
+    }
+
+    /**
+     * Adds the table of the senders to messages : each sender once, with its current status.
+     * @param messages the messages to send
+     * @return the messages and the registered users who sent them
+     */
+    public MessagePage<T> withSenders(List<Message<T>> messages) {
+        final Map<Integer, UserInfo> senders = new LinkedHashMap<>();
+        for (Message<T> message : messages) {
+            final int senderId = message.getSenderId();
+            if (senderId != Message.NO_SENDER && !senders.containsKey(senderId)) {
+                senders.put(senderId, chatInstance.getUser(senderId));
+            }
+        }
+        senders.values().removeIf(Objects::isNull);
+        return new MessagePage<>(messages, new ArrayList<>(senders.values()));
     }
 
     /**
@@ -302,10 +773,39 @@ public class ChatServer<T> implements UserAlgo, ChatroomAlgo<T>, MessageAlgo<T>,
     @Override
     public Message<T> notifyNewMessage(int chatroomId, Message<T> newMessage) {
 
-        clientNotifiers.forEach(
-                client -> client.notifyNewMessage(chatroomId, newMessage)
+        // only the clients interested in this chatroom
+        final NotificationFrame<T> frame = NotificationFrame.newMessage(json, chatroomId, newMessage);
+        clientNotifiers.forEachSubscriber(chatroomId,
+                client -> client.send(frame)
         );
         return newMessage;
     }
 
+    /**
+     * Notifies the clients of messages sent together : each client gets one notification with the messages of
+     * the chatrooms it is interested in.
+     * The clients interested in the same chatrooms share the same encoded frame.
+     * @param batch the new messages, by chatroom
+     * @return the batch
+     */
+    public MessageBatch<T> notifyNewMessages(MessageBatch<T> batch) {
+        final Map<Set<Integer>, NotificationFrame<T>> frames = new HashMap<>();
+        clientNotifiers.forEachRecipient(batch.getChatroomIds(), (client, chatroomIds) ->
+                client.send(frames.computeIfAbsent(chatroomIds,
+                        ids -> NotificationFrame.newMessages(json, batch.only(ids))))
+        );
+        return batch;
+    }
+
+    /**
+     * Sends an event to all the connected clients.
+     * The frame is encoded at most once and its bytes are shared by all the clients.
+     * @param frame the event to send
+     */
+    private void broadcast(NotificationFrame<T> frame) {
+        clientNotifiers.forEachClient(
+                client -> client.send(frame)
+        );
+    }
+
 }
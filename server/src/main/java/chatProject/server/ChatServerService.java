@@ -1,8 +1,27 @@
 package chatProject.server;
 
 import chatProject.AddMessageForm;
+import chatProject.model.messages.Chatroom;
+import chatProject.model.messages.Message;
+import chatProject.model.messages.MessageBatch;
 import chatProject.model.user.UserInfo;
+import chatProject.protocol.NotificationProtocol;
+import chatProject.threads.ThreadMode;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import spark.Request;
+import spark.Response;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import static spark.Spark.*;
 
@@ -23,49 +42,115 @@ public class ChatServerService<T> {
      */
     private final Gson json;
 
+    /**
+     * The number of messages in a page of history if the client does not set a limit.
+     */
+    static final int DEFAULT_PAGE_SIZE = 50;
+    /**
+     * The maximum number of messages in a page of history.
+     */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Identifies this run of the server in the ETags : the versions of the model start again after a restart.
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * The type of the body of a batch of messages.
+     */
+    private static final Type FORMS_TYPE = new TypeToken<List<AddMessageForm<?>>>() {}.getType();
+
+    /**
+     * When to compress the responses.
+     */
+    private final CompressionConfig compression;
+
     public ChatServerService(ChatServer<T> server, Gson json) {
+        this(server, json, CompressionConfig.fromSystemProperties());
+    }
+
+    public ChatServerService(ChatServer<T> server, Gson json, CompressionConfig compression) {
         this.server = server;
         this.json = json;
+        this.compression = compression;
     }
 
     @SuppressWarnings("unchecked")
     public void serve(int webServerPort) {
 
+        if (server.getThreadMode() == ThreadMode.VIRTUAL) {
+            // one virtual thread per request instead of the bounded pool of Jetty
+            EmbeddedServers.add(EmbeddedServers.defaultIdentifier(),
+                    new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool("web-")));
+        }
+
         port(webServerPort);
 
-        get("/chatrooms", (request, response) ->
-                json.toJson(
-                        server.getCurrentChatroomNames()
-                )
+        get("/chatrooms", (request, response) -> {
+                    if (notModified(request, response, server.getChatroomsVersion())) {
+                        return "";
+                    }
+                    return stream(request, response,
+                            server.getCurrentChatroomNames()
+                    );
+                }
         );
 
-        get("/chatroom/:chatroomId", (request, response) ->
-                json.toJson(
-                        server.getChatroom(Integer.parseInt(request.params("chatroomId")))
-                )
+        get("/chatroom/:chatroomId", (request, response) -> {
+                    final Chatroom<T> chatroom = server.getChatroom(Integer.parseInt(request.params("chatroomId")));
+                    if (chatroom == null) {
+                        throw halt(404, "No chatroom " + request.params("chatroomId"));
+                    }
+                    if (notModified(request, response, chatroom.getVersion())) {
+                        return "";
+                    }
+                    return stream(request, response, chatroom);
+                }
         );
 
-        put("/chatroom/:chatroomName", (request, response) ->
-            json.toJson(
-                    server.addChatroom(
-                            request.params("chatroomName"),
-                            json.fromJson(request.body(), UserInfo.class)
-                    )
-            )
-        );
+        put("/chatroom/:chatroomName", (request, response) -> {
+            try {
+                return json.toJson(
+                        server.addChatroom(
+                                request.params("chatroomName"),
+                                json.fromJson(request.body(), UserInfo.class)
+                        )
+                );
+            } catch (IllegalArgumentException e) {
+                // the names are unique
+                throw halt(409, e.getMessage());
+            }
+        });
 
         get("/messages/:chatroomId", (request, response) -> {
-                    return json.toJson(
-                            server.getChatroomMessages(Integer.parseInt(request.params("chatroomId")))
+                    final int chatroomId = Integer.parseInt(request.params("chatroomId"));
+                    if (server.getChatroom(chatroomId) == null) {
+                        throw halt(404, "No chatroom " + chatroomId);
+                    }
+                    final Long after = longQueryParam(request, "after");
+                    final Long before = longQueryParam(request, "before");
+                    final Long limit = longQueryParam(request, "limit");
+                    final List<Message<T>> messages = (after == null && before == null && limit == null)
+                            // no cursor : the whole history
+                            ? server.getChatroomMessages(chatroomId)
+                            : server.getChatroomMessages(chatroomId, after, before,
+                                    (limit == null) ? DEFAULT_PAGE_SIZE : (int) Math.min(limit, MAX_PAGE_SIZE));
+                    // the messages only have the ID of their sender : the table of the senders on demand
+                    return stream(request, response,
+                            Boolean.parseBoolean(request.queryParams("users"))
+                                    ? server.withSenders(messages)
+                                    : messages
                     );
                 }
         );
 
-        post("/login", (request, response) ->
-                json.toJson(
-                        server.login(request.body())
-                )
-        );
+        post("/login", (request, response) -> {
+            final UserInfo user = server.login(request.body());
+            // the token to authenticate the notification socket of the client
+            response.header(NotificationProtocol.SESSION_HEADER, server.getSessionToken(user.getAccount()));
+            return json.toJson(user);
+        });
 
         put("/message", (request, response) -> {
             final AddMessageForm<T> form = json.fromJson(request.body(), AddMessageForm.class);
@@ -74,11 +159,126 @@ public class ChatServerService<T> {
             );
         });
 
-        get("/users", (request, response) ->
-                json.toJson(
-                        server.getUsers()
+        put("/messages/batch", (request, response) -> {
+            final List<AddMessageForm<T>> forms = json.fromJson(request.body(), FORMS_TYPE);
+            if (forms == null) {
+                throw halt(400, "No messages");
+            }
+            final List<Message<T>> added;
+            try {
+                added = server.addMessages(forms);
+            } catch (IllegalArgumentException e) {
+                // an unknown chatroom : nothing added
+                throw halt(404, e.getMessage());
+            }
+            final MessageBatch<T> batch = new MessageBatch<>();
+            final List<Long> ids = new ArrayList<>(added.size());
+            for (int i = 0; i < added.size(); i++) {
+                batch.add(forms.get(i).getChatroomId(), added.get(i));
+                ids.add(added.get(i).getId());
+            }
+            // one notification per client for the whole batch
+            server.notifyNewMessages(batch);
+            return json.toJson(ids);
+        });
+
+        get("/users", (request, response) -> {
+                    final Long sinceVersion = longQueryParam(request, "sinceVersion");
+                    if (notModified(request, response, server.getUsersVersion())) {
+                        return "";
+                    }
+                    if (sinceVersion == null) {
+                        return stream(request, response,
+                                server.getUsers()
+                        );
+                    }
+                    // only the presence changes
+                    return stream(request, response,
+                            server.getUserChanges(sinceVersion)
+                    );
+                }
+        );
+
+        get("/notifiers", (request, response) ->
+                stream(request, response,
+                        server.getNotifierStats()
+                )
+        );
+
+        get("/history", (request, response) ->
+                stream(request, response,
+                        server.getHistoryStats()
                 )
         );
     }
 
-}
\ No newline at end of file
+    /**
+     * Sets the ETag of a response from the version of the model it is built from, and answers 304 (Not Modified)
+     * if the client already has this version.
+     * Read before the model : a response may be newer than its ETag, never older.
+     * @param request the request, with the ETags known by the client in If-None-Match (if any)
+     * @param response the response
+     * @param version the current version of the model read by the route
+     * @return true if the response is a 304 without body, false if the route should write the body
+     */
+    private boolean notModified(Request request, Response response, long version) {
+        // weak : the same version is sent compressed or not
+        final String etag = "W/\"" + epoch + "-" + version + "\"";
+        response.header("ETag", etag);
+        final String known = request.headers("If-None-Match");
+        if (known == null) {
+            return false;
+        }
+        for (String candidate : known.split(",")) {
+            final String trimmed = candidate.trim();
+            // weak comparison, as for a GET
+            if (trimmed.equals("*") || trimmed.equals(etag) || ("W/" + trimmed).equals(etag)) {
+                response.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a value as JSON straight to the output stream of the response, instead of building the whole JSON
+     * in memory : the collections (e.g. the messages of a chatroom, read from the history) are written
+     * one element at a time as they are iterated.
+     * The response is compressed with the encoding accepted by the client, if it is larger than the threshold.
+     * @param request the request, with the encodings accepted by the client in Accept-Encoding (if any)
+     * @param response the response to write to, not committed yet
+     * @param value the value to write
+     * @return an empty body, the response is already written
+     * @throws IOException if the response cannot be written (e.g. the client is gone)
+     */
+    private String stream(Request request, Response response, Object value) throws IOException {
+        response.type("application/json; charset=utf-8");
+        response.header("Vary", "Accept-Encoding");
+        final ContentEncoding encoding = ContentEncoding.negotiate(request.headers("Accept-Encoding"));
+        final OutputStream out = new CompressingOutputStream(response.raw().getOutputStream(), encoding, compression,
+                used -> response.header("Content-Encoding", used.getToken()));
+        try (JsonWriter writer = json.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            json.toJson(value, value.getClass(), writer);
+        }
+        return "";
+    }
+
+    /**
+     * Reads an optional number parameter of the query, stopping the request with a 400 error if it is not a number.
+     * @param request the request
+     * @param name the name of the parameter
+     * @return the value of the parameter, null if not set
+     */
+    private static Long longQueryParam(Request request, String name) {
+        final String value = request.queryParams(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw halt(400, "The parameter " + name + " is not a number : " + value);
+        }
+    }
+
+}
@@ -3,29 +3,62 @@ package chatProject.server;
 import chatProject.model.messages.Chatroom;
 import chatProject.model.messages.Message;
 import chatProject.model.user.UserInfo;
+import chatProject.threads.ThreadMode;
 import com.google.gson.Gson;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * A class to ease sending notifications to connected clients of this server.
+ * The notifications are queued in a bounded {@link OutboundQueue} and written on the socket by a dedicated writer thread,
+ * so a slow client never blocks the thread notifying it (unless the {@link SlowConsumerPolicy#BLOCK} policy is used).
  * Have a look to the {@code SocketReader} class in the {@code ChatClient} class for the socket readers.
  * @param <T> the type of messages to use
  */
-public class ClientNotifier<T> implements ClientNotifierInterface<T> {
+public class ClientNotifier<T> implements MonitoredClientNotifier<T> {
 
-    private final PrintWriter writer;
+    private final OutputStream output;
     private final BufferedReader reader;
     private final Gson json;
 
-    public ClientNotifier(PrintWriter writer, BufferedReader reader, Gson json) {
-        this.writer = writer;
+    /**
+     * The encoded lines waiting to be written by the writer thread.
+     * The arrays are shared with the other clients : they must not be modified.
+     */
+    private final OutboundQueue<byte[]> outbound;
+
+    /**
+     * Called once when the client is disconnected.
+     */
+    private final Consumer<ClientNotifier<T>> onClose;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * The thread writing the queued lines on the socket.
+     * Must be interrupted on close.
+     */
+    private Thread writerThread = null;
+
+    public ClientNotifier(OutputStream output, BufferedReader reader, Gson json) {
+        this(output, reader, json, OutboundQueueConfig.fromSystemProperties(), notifier -> {});
+    }
+
+    public ClientNotifier(OutputStream output, BufferedReader reader, Gson json,
+                          OutboundQueueConfig queueConfig, Consumer<ClientNotifier<T>> onClose) {
+        this.output = output;
         this.reader = reader;
         this.json = json;
+        this.outbound = new OutboundQueue<>(queueConfig);
+        this.onClose = onClose;
     }
 
     /**
@@ -37,12 +70,38 @@ public class ClientNotifier<T> implements ClientNotifierInterface<T> {
      * @throws IOException if the socket is closed
      */
     public static <T> ClientNotifier<T> init(Socket socket, Gson json) throws IOException {
+        return init(socket, json, OutboundQueueConfig.fromSystemProperties(), ThreadMode.PLATFORM, notifier -> {});
+    }
 
-        return new ClientNotifier<>(
-                new PrintWriter(socket.getOutputStream(), true),
-                new BufferedReader(new InputStreamReader(socket.getInputStream())),
-                json
+    /**
+     * The entry point to instantiate a new instance of this class to send notifs on the given socket.
+     * Starts the writer thread of the client.
+     * @param socket the socket to use between this server and the connected client.
+     * @param json the Json (de)serializer to use
+     * @param queueConfig the configuration of the outbound queue
+     * @param threadMode the kind of thread to use as writer thread
+     * @param onClose called once when the client is disconnected
+     * @param <T> the type of messages to use
+     * @return a new instance of this class
+     * @throws IOException if the socket is closed
+     */
+    public static <T> ClientNotifier<T> init(Socket socket, Gson json,
+                                             OutboundQueueConfig queueConfig,
+                                             ThreadMode threadMode,
+                                             Consumer<ClientNotifier<T>> onClose) throws IOException {
+
+        final ClientNotifier<T> notifier = new ClientNotifier<>(
+                // no auto-flush : the writer thread flushes once the queue is empty
+                new BufferedOutputStream(socket.getOutputStream()),
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+                json,
+                queueConfig,
+                onClose
         );
+        notifier.writerThread = threadMode.newThread("notifier-" + socket.getRemoteSocketAddress(), notifier::writeLoop);
+        notifier.writerThread.setDaemon(true);
+        notifier.writerThread.start();
+        return notifier;
     }
 
 
@@ -51,10 +110,7 @@ public class ClientNotifier<T> implements ClientNotifierInterface<T> {
      */
     @Override
     public void notifyNewChatroom(Chatroom<T> chatroom) {
-        writer.println(
-                0
-                        + json.toJson(chatroom)
-        );
+        send(NotificationFrame.newChatroom(json, chatroom));
     }
 
 
@@ -63,11 +119,7 @@ public class ClientNotifier<T> implements ClientNotifierInterface<T> {
      */
     @Override
     public void notifyNewMessage(int chatroomId, Message<T> message) {
-        writer.println(
-                Integer.toString(1)
-                        + chatroomId
-                        + json.toJson(message)
-        );
+        send(NotificationFrame.newMessage(json, chatroomId, message));
     }
 
     /**
@@ -75,10 +127,79 @@ public class ClientNotifier<T> implements ClientNotifierInterface<T> {
      */
     @Override
     public void notifyUserChange(UserInfo user) {
-        writer.println(
-                2
-                        + json.toJson(user)
-        );
+        send(NotificationFrame.userChange(json, user));
+    }
+
+    /**
+     * Queues the shared bytes of the frame for the writer thread.
+     * Disconnects the client if it is too slow to read its notifications.
+     * @param frame the event to send
+     */
+    @Override
+    public void send(NotificationFrame<T> frame) {
+        if (closed.get()) {
+            return;
+        }
+        if (writerThread == null) {
+            // no writer thread (built without init) - write synchronously
+            try {
+                synchronized (output) {
+                    output.write(frame.getLine());
+                    output.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        } else if (!outbound.offer(frame.getLine())) {
+            close();
+        }
+    }
+
+    /**
+     * The loop of the writer thread : writes the queued lines and flushes the socket when there is nothing left to write.
+     */
+    private void writeLoop() {
+        try {
+            while (!closed.get()) {
+                byte[] line = outbound.take();
+                do {
+                    output.write(line);
+                } while ((line = outbound.poll()) != null);
+                output.flush();
+            }
+        } catch (InterruptedException | IOException e) {
+            // interrupted on close or the socket is closed
+        }
+        close();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NotifierStats getStats() {
+        return outbound.getStats(writerThread == null ? toString() : writerThread.getName());
+    }
+
+    /**
+     * Disconnects the client and stops the writer thread.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        outbound.clear();
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        // closing the streams closes the socket
+        try {
+            output.close();
+            reader.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        onClose.accept(this);
     }
 
     /**
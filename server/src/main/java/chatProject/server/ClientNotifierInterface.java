@@ -27,4 +27,30 @@ public interface ClientNotifierInterface<T> {
      * @param user the new user to use
      */
     void notifyUserChange(UserInfo user);
+
+    /**
+     * Sends an event already encoded once for all the clients.
+     * Implementations writing on a socket should send the shared bytes of the frame as is.
+     * @param frame the event to send
+     */
+    default void send(NotificationFrame<T> frame) {
+        switch (frame.getType()) {
+            case NEW_CHATROOM:
+                notifyNewChatroom(frame.getChatroom());
+                break;
+            case NEW_MESSAGE:
+                notifyNewMessage(frame.getChatroomId(), frame.getMessage());
+                break;
+            case NEW_MESSAGES:
+                frame.getBatch().getMessages().forEach((chatroomId, messages) ->
+                        messages.forEach(message -> notifyNewMessage(chatroomId, message))
+                );
+                break;
+            case USER_CHANGE:
+                notifyUserChange(frame.getUser());
+                break;
+            default:
+                break;
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package chatProject.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The connected clients of the server, with an index of their chatroom subscriptions.
+ * A client that never subscribed to a chatroom receives the messages of all chatrooms (legacy clients).
+ * Once a client subscribes to a chatroom, it only receives the messages of the chatrooms it subscribed to.
+ * Chatroom and user events are always sent to all the clients.
+ * <p>
+ * The sets of clients are copy-on-write : the clients connect and subscribe rarely, but are iterated for
+ * every notification. A notification iterates a snapshot of the clients, without lock, while other threads
+ * add or remove clients.
+ * @param <T> the type of messages to use
+ */
+public class ClientRegistry<T> {
+
+    /**
+     * All the connected clients.
+     */
+    private final Set<ClientNotifierInterface<T>> clients = new CopyOnWriteArraySet<>();
+
+    /**
+     * The collection given by the owner of the registry, kept up to date with the connected clients.
+     * May not be thread-safe : only written while holding its lock.
+     */
+    private final Collection<ClientNotifierInterface<T>> mirror;
+
+    /**
+     * The clients that never subscribed to a chatroom : they receive all the messages.
+     */
+    private final Set<ClientNotifierInterface<T>> unfiltered = new CopyOnWriteArraySet<>();
+
+    /**
+     * The index chatroom ID -> subscribed clients.
+     */
+    private final Map<Integer, Set<ClientNotifierInterface<T>>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * The index client -> subscribed chatroom IDs, to clean the subscriptions of a disconnected client.
+     */
+    private final Map<ClientNotifierInterface<T>, Set<Integer>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry around a collection of clients.
+     * The clients already in the collection receive all the messages.
+     * @param clients the collection to keep up to date with the connected clients (null if there is no client)
+     */
+    public ClientRegistry(Collection<ClientNotifierInterface<T>> clients) {
+        this.mirror = clients;
+        if (clients != null) {
+            synchronized (clients) {
+                this.clients.addAll(clients);
+            }
+        }
+        this.unfiltered.addAll(this.clients);
+    }
+
+    /**
+     * Adds a newly connected client.
+     * @param client the new client
+     */
+    public void add(ClientNotifierInterface<T> client) {
+        unfiltered.add(client);
+        clients.add(client);
+        if (mirror != null) {
+            synchronized (mirror) {
+                mirror.add(client);
+            }
+        }
+    }
+
+    /**
+     * Removes a disconnected client and all its subscriptions.
+     * @param client the disconnected client
+     */
+    public void remove(ClientNotifierInterface<T> client) {
+        clients.remove(client);
+        if (mirror != null) {
+            synchronized (mirror) {
+                mirror.remove(client);
+            }
+        }
+        unfiltered.remove(client);
+        final Set<Integer> chatrooms = subscriptions.remove(client);
+        if (chatrooms != null) {
+            chatrooms.forEach(chatroomId -> removeSubscriber(chatroomId, client));
+        }
+    }
+
+    /**
+     * Subscribes a client to the messages of a chatroom.
+     * From now on, the client only receives the messages of its subscribed chatrooms.
+     * @param client the client
+     * @param chatroomId the chatroom to subscribe to
+     */
+    public void subscribe(ClientNotifierInterface<T> client, int chatroomId) {
+        subscriptions.computeIfAbsent(client, c -> ConcurrentHashMap.newKeySet()).add(chatroomId);
+        // added in the lock of the index : not lost if the last subscriber of the chatroom leaves meanwhile
+        subscribers.compute(chatroomId, (id, clientsOfRoom) -> {
+            final Set<ClientNotifierInterface<T>> updated =
+                    (clientsOfRoom == null) ? new CopyOnWriteArraySet<>() : clientsOfRoom;
+            updated.add(client);
+            return updated;
+        });
+        unfiltered.remove(client);
+    }
+
+    /**
+     * Unsubscribes a client from the messages of a chatroom.
+     * @param client the client
+     * @param chatroomId the chatroom to unsubscribe from
+     */
+    public void unsubscribe(ClientNotifierInterface<T> client, int chatroomId) {
+        // the client does not receive all the messages anymore, even without subscription
+        subscriptions.computeIfAbsent(client, c -> ConcurrentHashMap.newKeySet()).remove(chatroomId);
+        unfiltered.remove(client);
+        removeSubscriber(chatroomId, client);
+    }
+
+    private void removeSubscriber(int chatroomId, ClientNotifierInterface<T> client) {
+        subscribers.computeIfPresent(chatroomId, (id, clientsOfRoom) -> {
+            clientsOfRoom.remove(client);
+            return clientsOfRoom.isEmpty() ? null : clientsOfRoom;
+        });
+    }
+
+    /**
+     * Applies an action on all the connected clients.
+     * @param action the action to apply
+     */
+    public void forEachClient(Consumer<ClientNotifierInterface<T>> action) {
+        clients.forEach(action);
+    }
+
+    /**
+     * Applies an action on the clients interested in the messages of a chatroom :
+     * the subscribers of the chatroom and the clients that never subscribed to any chatroom.
+     * @param chatroomId the chatroom of the message
+     * @param action the action to apply
+     */
+    public void forEachSubscriber(int chatroomId, Consumer<ClientNotifierInterface<T>> action) {
+        subscribers.getOrDefault(chatroomId, Collections.emptySet()).forEach(action);
+        unfiltered.forEach(action);
+    }
+
+    /**
+     * Applies an action once on each client interested in the messages of some chatrooms,
+     * with the chatrooms it is interested in (see {@link #forEachSubscriber(int, Consumer)}).
+     * @param chatroomIds the chatrooms of the messages
+     * @param action the action to apply, given the client and its chatrooms among the given ones
+     */
+    public void forEachRecipient(Collection<Integer> chatroomIds,
+                                 BiConsumer<ClientNotifierInterface<T>, Set<Integer>> action) {
+        final Map<ClientNotifierInterface<T>, Set<Integer>> recipients = new LinkedHashMap<>();
+        for (Integer chatroomId : chatroomIds) {
+            forEachSubscriber(chatroomId,
+                    client -> recipients.computeIfAbsent(client, c -> new TreeSet<>()).add(chatroomId));
+        }
+        recipients.forEach(action);
+    }
+
+    /**
+     * Gets all the connected clients.
+     * @return a read-only view of the clients
+     */
+    public Collection<ClientNotifierInterface<T>> getClients() {
+        return Collections.unmodifiableCollection(clients);
+    }
+}
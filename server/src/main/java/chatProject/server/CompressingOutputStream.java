@@ -0,0 +1,131 @@
+package chatProject.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * A stream compressing what is written to it, only once it is larger than a threshold.
+ * <p>
+ * The first bytes are kept in a buffer : a response closed before the threshold is sent as it is,
+ * a larger one is compressed from its first byte. The size of a streamed response is not known in advance.
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    /**
+     * The stream of the response.
+     */
+    private final OutputStream out;
+    /**
+     * The encoding to use once the threshold is reached.
+     */
+    private final ContentEncoding encoding;
+    /**
+     * The level of compression.
+     */
+    private final int level;
+    /**
+     * Called before the first compressed byte, to set the headers of the response.
+     */
+    private final Consumer<ContentEncoding> beforeCompression;
+
+    /**
+     * The first bytes, until the threshold is reached.
+     */
+    private final byte[] buffer;
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int count = 0;
+
+    /**
+     * The stream to write to once the threshold is reached, null before.
+     */
+    private OutputStream target = null;
+
+    private boolean closed = false;
+
+    /**
+     * @param out the stream of the response
+     * @param encoding the encoding accepted by the client
+     * @param config the threshold and the level of the compression
+     * @param beforeCompression called once, only if the response is compressed, before anything is written to it
+     */
+    public CompressingOutputStream(OutputStream out, ContentEncoding encoding, CompressionConfig config,
+                                   Consumer<ContentEncoding> beforeCompression) {
+        this.out = out;
+        this.encoding = encoding;
+        this.level = config.getLevel();
+        this.beforeCompression = beforeCompression;
+        this.buffer = new byte[(encoding == ContentEncoding.IDENTITY) ? 0 : config.getThresholdBytes()];
+        if (encoding == ContentEncoding.IDENTITY) {
+            target = out;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (target == null && count == buffer.length) {
+            startCompression();
+        }
+        if (target == null) {
+            buffer[count++] = (byte) b;
+        } else {
+            target.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (target == null && count + length > buffer.length) {
+            startCompression();
+        }
+        if (target == null) {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        } else {
+            target.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Compresses the bytes kept and the next ones.
+     */
+    private void startCompression() throws IOException {
+        beforeCompression.accept(encoding);
+        target = encoding.wrap(out, level);
+        target.write(buffer, 0, count);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // below the threshold : keep buffering
+        if (target != null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (target == null) {
+            // small enough : sent as it is
+            out.write(buffer, 0, count);
+            out.close();
+        } else {
+            // writes the end of the compressed stream
+            target.close();
+        }
+    }
+
+    /**
+     * Tells whether the bytes written so far are compressed.
+     * @return true once the threshold is reached with a compressing encoding
+     */
+    public boolean isCompressed() {
+        return target != null && target != out;
+    }
+}
@@ -0,0 +1,57 @@
+package chatProject.server;
+
+import java.util.zip.Deflater;
+
+/**
+ * The configuration of the compression of the responses of the Web services.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.compression.thresholdBytes=4096}).
+ */
+public class CompressionConfig {
+
+    /**
+     * The size of a response under which it is sent uncompressed : compressing it would cost more than it saves.
+     */
+    private final int thresholdBytes;
+    /**
+     * The level of compression, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    private final int level;
+
+    public CompressionConfig(int thresholdBytes, int level) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("The compression threshold must not be negative, got " + thresholdBytes);
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The compression level must be between 1 and 9, got " + level);
+        }
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static CompressionConfig fromSystemProperties() {
+        return new CompressionConfig(
+                Integer.getInteger("chat.compression.thresholdBytes", 1024),
+                Integer.getInteger("chat.compression.level", 6)
+        );
+    }
+
+    /**
+     * Gets the size of a response under which it is sent uncompressed.
+     * @return the threshold, in bytes
+     */
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Gets the level of compression.
+     * @return the level, from 1 (fastest) to 9 (smallest)
+     */
+    public int getLevel() {
+        return level;
+    }
+}
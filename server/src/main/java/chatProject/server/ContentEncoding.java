@@ -0,0 +1,129 @@
+package chatProject.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The encodings of the responses of the Web services, negotiated with the Accept-Encoding header of the requests.
+ */
+public enum ContentEncoding {
+
+    /**
+     * No compression.
+     */
+    IDENTITY("identity"),
+    /**
+     * The gzip format.
+     */
+    GZIP("gzip"),
+    /**
+     * The zlib format (the "deflate" of HTTP).
+     */
+    DEFLATE("deflate");
+
+    /**
+     * The name of the encoding in the HTTP headers.
+     */
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the name of the encoding in the HTTP headers.
+     * @return the value of the Content-Encoding header
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Wraps a stream to compress what is written to it.
+     * @param out the stream receiving the encoded bytes
+     * @param level the level of compression
+     * @return the stream to write the raw bytes to
+     * @throws IOException if the stream cannot be written
+     */
+    public OutputStream wrap(OutputStream out, int level) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, 8192) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            case DEFLATE:
+                final Deflater deflater = new Deflater(level);
+                return new DeflaterOutputStream(out, deflater, 8192) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            // a deflater given to the stream is not released by it
+                            deflater.end();
+                        }
+                    }
+                };
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Chooses the encoding of a response : the accepted coding with the highest quality, gzip first on a tie.
+     * A coding refused explicitly (e.g. "gzip;q=0") is not accepted again by "*".
+     * @param acceptEncoding the Accept-Encoding header of the request, null if not set
+     * @return the preferred encoding accepted by the client, identity if none
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+        // the qualities given to each coding, null if not listed
+        Double gzip = null;
+        Double deflate = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parts = coding.split(";");
+            final String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            final double quality = quality(parts);
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("deflate")) {
+                deflate = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        final double gzipQuality = gzip != null ? gzip : (any != null ? any : 0);
+        final double deflateQuality = deflate != null ? deflate : (any != null ? any : 0);
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return GZIP;
+        }
+        return deflateQuality > 0 ? DEFLATE : IDENTITY;
+    }
+
+    /**
+     * Reads the quality of a coding of Accept-Encoding (e.g. 0.5 for "gzip;q=0.5"), 1 if not set, 0 if invalid.
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    final double quality = Double.parseDouble(parameter.substring(2));
+                    return Double.isNaN(quality) ? 0 : quality;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,242 @@
+package chatProject.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A single thread multiplexing many client channels with its own {@link Selector}.
+ * Other threads never touch the channels directly : they post registrations and flush requests
+ * that are processed by the loop on its next wake up.
+ */
+class EventLoop implements Runnable {
+
+    /**
+     * The selector of this loop (only used by the loop thread).
+     */
+    private final Selector selector;
+
+    /**
+     * The clients waiting to be registered on the selector.
+     */
+    private final Queue<NioClientNotifier<?>> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The clients that have new data to write.
+     */
+    private final Queue<NioClientNotifier<?>> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The clients to disconnect (too slow).
+     */
+    private final Queue<NioClientNotifier<?>> pendingCloses = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True if the selector has already been woken up and the pending queues are not processed yet.
+     * Avoids a system call for every notification in a burst.
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * The number of clients currently handled by this loop.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * The buffer used to read from the clients (only used by the loop thread).
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(4096);
+
+    /**
+     * Called when a client disconnects, to remove it from the server.
+     */
+    private final Consumer<NioClientNotifier<?>> onDisconnect;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    EventLoop(String name, Consumer<NioClientNotifier<?>> onDisconnect) throws IOException {
+        this.selector = Selector.open();
+        this.onDisconnect = onDisconnect;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the thread of this loop.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Gets the number of clients handled by this loop.
+     * @return the number of connected clients
+     */
+    int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Adds a new client in this loop.
+     * May be called from any thread.
+     * @param client the client to add
+     */
+    void register(NioClientNotifier<?> client) {
+        connections.incrementAndGet();
+        pendingRegistrations.add(client);
+        wakeup();
+    }
+
+    /**
+     * Asks the loop to write the pending data of a client.
+     * May be called from any thread.
+     * @param client the client with data to write
+     */
+    void requestFlush(NioClientNotifier<?> client) {
+        pendingFlushes.add(client);
+        wakeup();
+    }
+
+    /**
+     * Asks the loop to disconnect a client.
+     * May be called from any thread.
+     * @param client the client to disconnect
+     */
+    void requestClose(NioClientNotifier<?> client) {
+        pendingCloses.add(client);
+        wakeup();
+    }
+
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+
+                processRegistrations();
+                processFlushes();
+                processCloses();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    processKey(key);
+                }
+            } catch (IOException e) {
+                System.err.println("Error in the notification event loop " + thread.getName() + " : " + e);
+            }
+        }
+        closeAll();
+    }
+
+    private void processRegistrations() {
+        NioClientNotifier<?> client;
+        while ((client = pendingRegistrations.poll()) != null) {
+            try {
+                client.setKey(client.getChannel().register(selector, SelectionKey.OP_READ, client));
+                // some notifications may have been queued before the registration
+                flush(client);
+            } catch (ClosedChannelException e) {
+                disconnect(client);
+            }
+        }
+    }
+
+    private void processFlushes() {
+        NioClientNotifier<?> client;
+        while ((client = pendingFlushes.poll()) != null) {
+            if (client.getKey() != null) {
+                flush(client);
+            }
+        }
+    }
+
+    private void processCloses() {
+        NioClientNotifier<?> client;
+        while ((client = pendingCloses.poll()) != null) {
+            disconnect(client);
+        }
+    }
+
+    private void processKey(SelectionKey key) {
+        final NioClientNotifier<?> client = (NioClientNotifier<?>) key.attachment();
+        try {
+            if (key.isReadable()) {
+                readBuffer.clear();
+                if (client.getChannel().read(readBuffer) < 0) {
+                    // end of stream : the client closed the socket
+                    disconnect(client);
+                    return;
+                }
+                readBuffer.flip();
+                client.onRead(readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(client);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            disconnect(client);
+        }
+    }
+
+    /**
+     * Writes as much data as possible for the client without blocking.
+     * Listens for the channel to be writable again if some data remains.
+     */
+    private void flush(NioClientNotifier<?> client) {
+        final SelectionKey key = client.getKey();
+        try {
+            if (client.flush()) {
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(NioClientNotifier<?> client) {
+        if (client.close()) {
+            connections.decrementAndGet();
+            onDisconnect.accept(client);
+        }
+    }
+
+    private void closeAll() {
+        selector.keys().forEach(key -> disconnect((NioClientNotifier<?>) key.attachment()));
+        pendingRegistrations.forEach(this::disconnect);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Stops this loop and closes all its clients.
+     */
+    void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
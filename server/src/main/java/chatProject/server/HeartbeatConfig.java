@@ -0,0 +1,79 @@
+package chatProject.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of the heartbeats of the clients authenticated on the notification socket.
+ * The clients choose their interval between the bounds : the shortest while the user is active, longer while idle.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.heartbeat.maxIntervalMillis=30000}).
+ */
+public class HeartbeatConfig {
+
+    /**
+     * The shortest interval between two heartbeats of a client.
+     */
+    private final long minIntervalMillis;
+    /**
+     * The longest interval between two heartbeats of a client.
+     */
+    private final long maxIntervalMillis;
+    /**
+     * The number of heartbeats a client may miss before its user becomes inactive.
+     */
+    private final int missedHeartbeats;
+
+    public HeartbeatConfig(long minIntervalMillis, long maxIntervalMillis, int missedHeartbeats) {
+        if (minIntervalMillis < 1) {
+            throw new IllegalArgumentException("The heartbeat interval must be at least 1 ms, got " + minIntervalMillis);
+        }
+        if (maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("The maximum heartbeat interval must be at least the minimum, got "
+                    + maxIntervalMillis);
+        }
+        if (missedHeartbeats < 0) {
+            throw new IllegalArgumentException("The missed heartbeats cannot be negative, got " + missedHeartbeats);
+        }
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.missedHeartbeats = missedHeartbeats;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static HeartbeatConfig fromSystemProperties() {
+        return new HeartbeatConfig(
+                Long.getLong("chat.heartbeat.minIntervalMillis", 1000),
+                Long.getLong("chat.heartbeat.maxIntervalMillis", 16000),
+                Integer.getInteger("chat.heartbeat.missedHeartbeats", 2)
+        );
+    }
+
+    /**
+     * Gets the shortest interval between two heartbeats of a client.
+     * @return the minimum interval in milliseconds
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    /**
+     * Gets the longest interval between two heartbeats of a client.
+     * @return the maximum interval in milliseconds
+     */
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    /**
+     * Gets the time without heartbeat after which the user of a client becomes inactive.
+     * @param nextIntervalMillis the interval announced by the last heartbeat of the client, kept within the bounds
+     * @param unit the unit of the result
+     * @return the timeout of the client
+     */
+    public long getTimeout(long nextIntervalMillis, TimeUnit unit) {
+        final long interval = Math.max(minIntervalMillis, Math.min(maxIntervalMillis, nextIntervalMillis));
+        return unit.convert(interval * (1 + missedHeartbeats), TimeUnit.MILLISECONDS);
+    }
+}
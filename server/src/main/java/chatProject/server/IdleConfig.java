@@ -0,0 +1,59 @@
+package chatProject.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of the detection of idle users.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.idle.timeoutMillis=10000}).
+ */
+public class IdleConfig {
+
+    /**
+     * The time without ping after which an active user becomes inactive.
+     */
+    private final long timeoutMillis;
+    /**
+     * The resolution of the {@link TimerWheel} : a user becomes inactive at most one tick after its timeout.
+     */
+    private final long tickMillis;
+
+    public IdleConfig(long timeoutMillis, long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("The tick must be at least 1 ms, got " + tickMillis);
+        }
+        if (timeoutMillis < tickMillis) {
+            throw new IllegalArgumentException("The idle timeout must be at least one tick, got " + timeoutMillis);
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static IdleConfig fromSystemProperties() {
+        return new IdleConfig(
+                Long.getLong("chat.idle.timeoutMillis", 3000),
+                Long.getLong("chat.idle.tickMillis", 100)
+        );
+    }
+
+    /**
+     * Gets the time without ping after which an active user becomes inactive.
+     * @param unit the unit of the result
+     * @return the idle timeout
+     */
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the resolution of the idle detection.
+     * @param unit the unit of the result
+     * @return the duration of a tick
+     */
+    public long getTick(TimeUnit unit) {
+        return unit.convert(tickMillis, TimeUnit.MILLISECONDS);
+    }
+}
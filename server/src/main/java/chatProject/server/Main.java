@@ -25,6 +25,8 @@ public class Main {
         final Gson json = new Gson();
         // start the server implementation
         final ChatServer<String> server = ChatServer.initEmptyChat(socketPort, json);
+        // close the log and delete the temporary files on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "chat-server-shutdown"));
 
         /*
         new ChatServer<>(FakeInstances.DUMMY_CHAT_INSTANCE, new HashSet<>(), json);
@@ -0,0 +1,14 @@
+package chatProject.server;
+
+/**
+ * A {@link ClientNotifierInterface} sending its notifications through an {@link OutboundQueue}.
+ * @param <T> the type of messages to use
+ */
+public interface MonitoredClientNotifier<T> extends ClientNotifierInterface<T> {
+
+    /**
+     * Gets the counters of the outbound queue of this client.
+     * @return a snapshot of the counters
+     */
+    NotifierStats getStats();
+}
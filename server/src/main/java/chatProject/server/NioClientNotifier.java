@@ -0,0 +1,448 @@
+package chatProject.server;
+
+import chatProject.model.messages.Chatroom;
+import chatProject.model.messages.Message;
+import chatProject.model.user.UserInfo;
+import chatProject.protocol.BinaryFrame;
+import chatProject.protocol.FrameType;
+import chatProject.protocol.NotificationProtocol;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non-blocking {@link ClientNotifierInterface} for a client handled by an {@link EventLoop}.
+ * Notifications are only queued by the caller : the event loop of the client writes them on the socket.
+ * <p>
+ * The connection starts with the text protocol of {@link ClientNotifier} and offers the binary protocol
+ * to the client (see {@link NotificationProtocol}). The frames are encoded when they are taken out of the queue,
+ * so the switch to the binary protocol happens exactly after the acknowledgment.
+ * The protocol frames of the connection never go through the bounded queue of the notifications :
+ * they are never dropped by the {@link SlowConsumerPolicy}, and the event loop never waits for room to send them.
+ * <p>
+ * The client may send control frames to choose the chatrooms it receives the messages of.
+ * In the text protocol : {@code S<chatroom ID>} to subscribe to a chatroom and {@code U<chatroom ID>} to unsubscribe.
+ * <p>
+ * The client may also authenticate the connection with the session token of its user, then send heartbeats :
+ * the {@link SocketPresence} of the server keeps the user active while they arrive.
+ * @param <T> the type of messages to use
+ */
+public class NioClientNotifier<T> implements MonitoredClientNotifier<T> {
+
+    /**
+     * The maximum length of a control line sent by the client.
+     */
+    private static final int MAX_CONTROL_LINE = 32;
+
+    /**
+     * The maximum length of a binary control frame sent by the client.
+     */
+    private static final int MAX_CONTROL_FRAME = 256;
+
+    private final SocketChannel channel;
+    private final String remoteHost;
+    private final EventLoop eventLoop;
+    private final Gson json;
+    private final ClientRegistry<T> registry;
+
+    /**
+     * The presence of the users of the authenticated connections, null if the client cannot authenticate.
+     */
+    private final SocketPresence presence;
+
+    /**
+     * The account ID of the user of the connection, {@link SocketPresence#NO_ACCOUNT} until authenticated.
+     * Only written by the event loop thread.
+     */
+    private volatile int accountId = SocketPresence.NO_ACCOUNT;
+
+    /**
+     * The notifications not written on the socket yet.
+     */
+    private final OutboundQueue<NotificationFrame<T>> outbound;
+
+    /**
+     * The protocol frames not written on the socket yet, written before the notifications.
+     * A few frames per connection at most : never bounded, never dropped.
+     */
+    private final Queue<NotificationFrame<T>> protocolFrames = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The notification being written on the socket, taken out of the queue
+     * so that the {@link SlowConsumerPolicy#DROP_OLDEST} policy never drops a partially written one.
+     * Only used by the event loop thread.
+     */
+    private ByteBuffer writing = null;
+
+    /**
+     * The acknowledgment of the upgrade to the binary protocol, once requested by the client.
+     * The frames taken out of the queue after it are sent in binary.
+     * Only used by the event loop thread.
+     */
+    private NotificationFrame<T> upgradeAck = null;
+
+    /**
+     * The version of the protocol of the frames sent to the client.
+     * Only used by the event loop thread.
+     */
+    private int outputVersion = NotificationProtocol.TEXT_VERSION;
+
+    /**
+     * The version of the protocol of the frames received from the client.
+     * Only used by the event loop thread.
+     */
+    private int inputVersion = NotificationProtocol.TEXT_VERSION;
+
+    /**
+     * The control line being read in the text protocol (only used by the event loop thread).
+     */
+    private final StringBuilder controlLine = new StringBuilder(MAX_CONTROL_LINE);
+
+    /**
+     * The control frame being read in the binary protocol (only used by the event loop thread).
+     */
+    private final ByteBuffer controlFrame = ByteBuffer.allocate(4 + MAX_CONTROL_FRAME);
+
+    /**
+     * True if a flush is already requested to the event loop and not processed yet.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * The registration of the channel in the selector of the event loop.
+     * Only set by the event loop thread.
+     */
+    private volatile SelectionKey key;
+
+    public NioClientNotifier(SocketChannel channel, String remoteHost, EventLoop eventLoop, Gson json,
+                             OutboundQueueConfig queueConfig, ClientRegistry<T> registry) {
+        this(channel, remoteHost, eventLoop, json, queueConfig, registry, null, null);
+    }
+
+    public NioClientNotifier(SocketChannel channel, String remoteHost, EventLoop eventLoop, Gson json,
+                             OutboundQueueConfig queueConfig, ClientRegistry<T> registry,
+                             SocketPresence presence, HeartbeatConfig heartbeatConfig) {
+        this.channel = channel;
+        this.remoteHost = remoteHost;
+        this.eventLoop = eventLoop;
+        this.json = json;
+        this.outbound = new OutboundQueue<>(queueConfig);
+        this.registry = registry;
+        this.presence = presence;
+
+        // offer the binary protocol - ignored by legacy clients
+        protocolFrames.add(NotificationFrame.protocol(NotificationProtocol.HELLO + NotificationProtocol.BINARY_VERSION));
+        if (presence != null) {
+            // offer the heartbeats - legacy clients keep pinging the login
+            protocolFrames.add(NotificationFrame.protocol(NotificationProtocol.HEARTBEAT_INTERVALS
+                    + heartbeatConfig.getMinIntervalMillis() + ' ' + heartbeatConfig.getMaxIntervalMillis()));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyNewChatroom(Chatroom<T> chatroom) {
+        send(NotificationFrame.newChatroom(json, chatroom));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyNewMessage(int chatroomId, Message<T> message) {
+        send(NotificationFrame.newMessage(json, chatroomId, message));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyUserChange(UserInfo user) {
+        send(NotificationFrame.userChange(json, user));
+    }
+
+    /**
+     * Queues the frame and wakes up the event loop.
+     * Disconnects the client if it is too slow to read its notifications.
+     * @param frame the event to send
+     */
+    @Override
+    public void send(NotificationFrame<T> frame) {
+        if (closed.get()) {
+            return;
+        }
+        if (!outbound.offer(frame)) {
+            eventLoop.requestClose(this);
+        } else if (flushRequested.compareAndSet(false, true)) {
+            eventLoop.requestFlush(this);
+        }
+    }
+
+    /**
+     * Queues a protocol frame of the connection and wakes up the event loop.
+     * @param frame the protocol frame to send
+     */
+    private void sendProtocol(NotificationFrame<T> frame) {
+        if (closed.get()) {
+            return;
+        }
+        protocolFrames.add(frame);
+        if (flushRequested.compareAndSet(false, true)) {
+            eventLoop.requestFlush(this);
+        }
+    }
+
+    /**
+     * Writes the queued notifications on the socket without blocking.
+     * Only called by the event loop thread.
+     * @return true if all the queued notifications were written
+     * @throws IOException if the socket is closed
+     */
+    boolean flush() throws IOException {
+        flushRequested.set(false);
+        while (true) {
+            if (writing == null) {
+                NotificationFrame<T> frame = protocolFrames.poll();
+                if (frame == null) {
+                    frame = outbound.poll();
+                }
+                if (frame == null) {
+                    return true;
+                }
+                // the shared bytes of the frame, in the protocol of the client
+                writing = frame.getBuffer(outputVersion);
+                if (frame == upgradeAck) {
+                    outputVersion = NotificationProtocol.BINARY_VERSION;
+                }
+            }
+            channel.write(writing);
+            if (writing.hasRemaining()) {
+                // the socket buffer is full - wait for the channel to be writable again
+                return false;
+            }
+            writing = null;
+        }
+    }
+
+    /**
+     * Handles the data sent by the client.
+     * Only called by the event loop thread.
+     * @param data the data read on the socket
+     */
+    void onRead(ByteBuffer data) {
+        while (data.hasRemaining() && inputVersion == NotificationProtocol.TEXT_VERSION) {
+            final char c = (char) data.get();
+            if (c == '\n') {
+                onControlLine();
+                controlLine.setLength(0);
+            } else if (controlLine.length() < MAX_CONTROL_LINE) {
+                controlLine.append(c);
+            }
+        }
+        if (data.hasRemaining()) {
+            onBinaryData(data);
+        }
+    }
+
+    /**
+     * Handles a complete control line sent by the client.
+     * Unknown or invalid lines are ignored.
+     */
+    private void onControlLine() {
+        if (controlLine.length() < 2) {
+            return;
+        }
+        if (controlLine.charAt(0) == NotificationProtocol.AUTHENTICATE) {
+            authenticate(controlLine.substring(1).trim());
+            return;
+        }
+        final int value;
+        try {
+            value = Integer.parseInt(controlLine.substring(1).trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        switch (controlLine.charAt(0)) {
+            case 'S':
+                registry.subscribe(this, value);
+                break;
+            case 'U':
+                registry.unsubscribe(this, value);
+                break;
+            case NotificationProtocol.HEARTBEAT:
+                heartbeat(value);
+                break;
+            case NotificationProtocol.UPGRADE:
+                if (value == NotificationProtocol.BINARY_VERSION) {
+                    upgrade();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Authenticates the connection with the session token of a user, and acknowledges it.
+     * Unknown tokens are ignored : the client keeps pinging the login.
+     * @param token the token sent by the client
+     */
+    private void authenticate(String token) {
+        if (presence == null || accountId != SocketPresence.NO_ACCOUNT) {
+            return;
+        }
+        final int account = presence.authenticate(token);
+        if (account != SocketPresence.NO_ACCOUNT) {
+            accountId = account;
+            sendProtocol(NotificationFrame.protocol(NotificationProtocol.AUTHENTICATED + account));
+        }
+    }
+
+    /**
+     * Handles a heartbeat of the client, ignored until the connection is authenticated.
+     * @param nextIntervalMillis the delay before the next heartbeat announced by the client
+     */
+    private void heartbeat(long nextIntervalMillis) {
+        if (accountId != SocketPresence.NO_ACCOUNT) {
+            presence.heartbeat(accountId, nextIntervalMillis);
+        }
+    }
+
+    /**
+     * Switches to the binary protocol, as requested by the client.
+     * The client sends binary frames right after its request,
+     * the server after the acknowledgment : the pending notifications are encoded in binary when written after it.
+     */
+    private void upgrade() {
+        inputVersion = NotificationProtocol.BINARY_VERSION;
+        upgradeAck = NotificationFrame.protocol(
+                Character.toString(NotificationProtocol.UPGRADE) + NotificationProtocol.BINARY_VERSION);
+        sendProtocol(upgradeAck);
+    }
+
+    /**
+     * Handles data sent by the client in the binary protocol : accumulates it until complete frames are received.
+     * @param data the data read on the socket
+     */
+    private void onBinaryData(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            final int chunk = Math.min(data.remaining(), controlFrame.remaining());
+            final ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + chunk);
+            controlFrame.put(slice);
+            data.position(data.position() + chunk);
+
+            controlFrame.flip();
+            while (controlFrame.remaining() >= 4) {
+                final int length = controlFrame.getInt(controlFrame.position());
+                if (length <= 0 || length > MAX_CONTROL_FRAME) {
+                    // not a control frame
+                    eventLoop.requestClose(this);
+                    return;
+                }
+                if (controlFrame.remaining() < 4 + length) {
+                    break;
+                }
+                final ByteBuffer body = controlFrame.duplicate();
+                body.limit(controlFrame.position() + 4 + length).position(controlFrame.position() + 4);
+                controlFrame.position(controlFrame.position() + 4 + length);
+                try {
+                    onControlFrame(BinaryFrame.decode(body));
+                } catch (IllegalArgumentException e) {
+                    eventLoop.requestClose(this);
+                    return;
+                }
+            }
+            controlFrame.compact();
+        }
+    }
+
+    /**
+     * Handles a control frame sent by the client in the binary protocol.
+     * @param frame the decoded frame
+     */
+    private void onControlFrame(BinaryFrame frame) {
+        if (frame.getType() == FrameType.SUBSCRIBE) {
+            registry.subscribe(this, frame.getChatroomId());
+        } else if (frame.getType() == FrameType.UNSUBSCRIBE) {
+            registry.unsubscribe(this, frame.getChatroomId());
+        } else if (frame.getType() == FrameType.AUTHENTICATE) {
+            authenticate(payload(frame));
+        } else if (frame.getType() == FrameType.HEARTBEAT) {
+            try {
+                heartbeat(Long.parseLong(payload(frame)));
+            } catch (NumberFormatException e) {
+                // invalid heartbeats are ignored, as invalid control lines
+            }
+        }
+    }
+
+    private static String payload(BinaryFrame frame) {
+        return StandardCharsets.UTF_8.decode(frame.getPayload()).toString().trim();
+    }
+
+    /**
+     * Closes the connection with the client.
+     * @return true if the connection was open before this call
+     */
+    boolean close() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        outbound.clear();
+        protocolFrames.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NotifierStats getStats() {
+        return outbound.getStats(remoteHost + ':' + channel.socket().getPort());
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Gets the account ID of the user of the connection.
+     * @return the account ID, {@link SocketPresence#NO_ACCOUNT} if the connection is not authenticated
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Gets the remote host of the client.
+     * @return the IP address of the client
+     */
+    public String getRemoteHost() {
+        return remoteHost;
+    }
+}
@@ -0,0 +1,228 @@
+package chatProject.server;
+
+import chatProject.model.messages.Chatroom;
+import chatProject.model.messages.Message;
+import chatProject.model.messages.MessageBatch;
+import chatProject.model.user.UserInfo;
+import chatProject.protocol.FrameType;
+import chatProject.protocol.NotificationProtocol;
+import com.google.gson.Gson;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An event to send to the connected clients, encoded only once for all of them.
+ * The encodings are lazy (done by the first notifier that needs them) and the bytes are never modified afterwards,
+ * so every client connection shares the same arrays : the fan-out only copies the bytes to the sockets.
+ * See {@link NotificationProtocol} for the text (version 1) and binary (version 2) encodings.
+ * @param <T> the type of messages to use
+ */
+public final class NotificationFrame<T> {
+
+    /**
+     * The sequence of the events sent by this server.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final FrameType type;
+    /**
+     * The ID of the chatroom of a new message (-1 for other events).
+     */
+    private final int chatroomId;
+    /**
+     * The sequence number of the event (0 for protocol frames).
+     */
+    private final long sequence;
+    /**
+     * The event itself : a {@link Chatroom}, a {@link Message}, a {@link MessageBatch}, a {@link UserInfo}
+     * or the text of a protocol frame.
+     */
+    private final Object event;
+    private final Gson json;
+
+    /**
+     * The payload (UTF-8 Json of the event), shared by both encodings.
+     * Lazily computed once, never modified.
+     */
+    private volatile byte[] payload = null;
+    /**
+     * The encoded line (version 1). Lazily computed once, never modified.
+     */
+    private volatile byte[] line = null;
+    /**
+     * The encoded binary frame (version 2). Lazily computed once, never modified.
+     */
+    private volatile byte[] binary = null;
+
+    private NotificationFrame(FrameType type, int chatroomId, long sequence, Object event, Gson json) {
+        this.type = type;
+        this.chatroomId = chatroomId;
+        this.sequence = sequence;
+        this.event = event;
+        this.json = json;
+    }
+
+    /**
+     * Creates the frame of a new chatroom.
+     * @param json the Json serializer to use
+     * @param chatroom the new chatroom
+     * @param <T> the type of messages to use
+     * @return the new frame
+     */
+    public static <T> NotificationFrame<T> newChatroom(Gson json, Chatroom<T> chatroom) {
+        return new NotificationFrame<>(FrameType.NEW_CHATROOM, -1, SEQUENCE.incrementAndGet(), chatroom, json);
+    }
+
+    /**
+     * Creates the frame of a new message.
+     * @param json the Json serializer to use
+     * @param chatroomId the ID of the chatroom of the message
+     * @param message the new message
+     * @param <T> the type of messages to use
+     * @return the new frame
+     */
+    public static <T> NotificationFrame<T> newMessage(Gson json, int chatroomId, Message<T> message) {
+        return new NotificationFrame<>(FrameType.NEW_MESSAGE, chatroomId, SEQUENCE.incrementAndGet(), message, json);
+    }
+
+    /**
+     * Creates the frame of messages sent together : a client gets them in one frame.
+     * @param json the Json serializer to use
+     * @param batch the new messages, by chatroom
+     * @param <T> the type of messages to use
+     * @return the new frame
+     */
+    public static <T> NotificationFrame<T> newMessages(Gson json, MessageBatch<T> batch) {
+        return new NotificationFrame<>(FrameType.NEW_MESSAGES, -1, SEQUENCE.incrementAndGet(), batch, json);
+    }
+
+    /**
+     * Creates the frame of a user change.
+     * @param json the Json serializer to use
+     * @param user the changed user
+     * @param <T> the type of messages to use
+     * @return the new frame
+     */
+    public static <T> NotificationFrame<T> userChange(Gson json, UserInfo user) {
+        return new NotificationFrame<>(FrameType.USER_CHANGE, -1, SEQUENCE.incrementAndGet(), user, json);
+    }
+
+    /**
+     * Creates a protocol frame, for a single client.
+     * @param text the text of the frame (e.g. {@code HELLO 2})
+     * @param <T> the type of messages to use
+     * @return the new frame
+     */
+    public static <T> NotificationFrame<T> protocol(String text) {
+        return new NotificationFrame<>(FrameType.PROTOCOL, -1, 0, text, null);
+    }
+
+    public FrameType getType() {
+        return type;
+    }
+
+    public int getChatroomId() {
+        return chatroomId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Chatroom<T> getChatroom() {
+        return (Chatroom<T>) event;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Message<T> getMessage() {
+        return (Message<T>) event;
+    }
+
+    @SuppressWarnings("unchecked")
+    public MessageBatch<T> getBatch() {
+        return (MessageBatch<T>) event;
+    }
+
+    public UserInfo getUser() {
+        return (UserInfo) event;
+    }
+
+    /**
+     * Gets the payload of this frame, encoding it on the first call.
+     * @return the UTF-8 Json of the event (or the text of a protocol frame)
+     */
+    private byte[] getPayload() {
+        byte[] encoded = payload;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = payload;
+                if (encoded == null) {
+                    encoded = (type == FrameType.PROTOCOL)
+                            ? ((String) event).getBytes(StandardCharsets.UTF_8)
+                            : json.toJson(event).getBytes(StandardCharsets.UTF_8);
+                    payload = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Gets the encoded line of this frame (version 1), encoding it on the first call.
+     * The returned array is shared : it must not be modified.
+     * @return the UTF-8 bytes of the line to send
+     */
+    public byte[] getLine() {
+        byte[] encoded = line;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = line;
+                if (encoded == null) {
+                    final byte[] prefix = (type == FrameType.NEW_MESSAGE)
+                            ? (Integer.toString(type.getCode()) + chatroomId).getBytes(StandardCharsets.UTF_8)
+                            : Integer.toString(type.getCode()).getBytes(StandardCharsets.UTF_8);
+                    final byte[] body = getPayload();
+                    encoded = new byte[prefix.length + body.length + 1];
+                    System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+                    System.arraycopy(body, 0, encoded, prefix.length, body.length);
+                    encoded[encoded.length - 1] = '\n';
+                    line = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Gets the encoded binary frame (version 2), encoding it on the first call.
+     * The returned array is shared : it must not be modified.
+     * @return the bytes of the frame, length prefix included
+     */
+    public byte[] getBinary() {
+        byte[] encoded = binary;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = binary;
+                if (encoded == null) {
+                    encoded = NotificationProtocol.encode(type, chatroomId, sequence, getPayload());
+                    binary = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Gets a read-only view of the encoded frame, with its own position to be written on one connection.
+     * No bytes are copied.
+     * @param version the version of the protocol used by the connection
+     * @return a new buffer over the shared bytes
+     */
+    public ByteBuffer getBuffer(int version) {
+        final byte[] encoded = (version == NotificationProtocol.BINARY_VERSION) ? getBinary() : getLine();
+        return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,227 @@
+package chatProject.server;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The non-blocking server of the notification socket.
+ * A dedicated thread accepts the new clients, checks the admission limits
+ * and hands them to the least loaded of a fixed number of {@link EventLoop}s.
+ * The notifiers of the connected clients are added to (and removed from) the {@link ClientRegistry} of the {@link ChatServer}.
+ * The authenticated clients drive the presence of their users (see {@link SocketPresence}).
+ * @param <T> the type of messages to use
+ */
+public class NotificationServer<T> implements AutoCloseable {
+
+    private final NotificationServerConfig config;
+
+    /**
+     * The notifiers of the connected clients, shared with the {@link ChatServer}.
+     */
+    private final ClientRegistry<T> clientNotifiers;
+
+    private final Gson json;
+
+    /**
+     * The presence of the users of the authenticated clients, null if the clients cannot authenticate.
+     */
+    private final SocketPresence presence;
+
+    private final List<EventLoop> eventLoops = new ArrayList<>();
+
+    /**
+     * The number of clients connected, per remote host.
+     */
+    private final Map<String, AtomicInteger> clientsPerHost = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connectedClients = new AtomicInteger();
+
+    private ServerSocketChannel serverChannel = null;
+
+    private Thread acceptThread = null;
+
+    public NotificationServer(NotificationServerConfig config,
+                              ClientRegistry<T> clientNotifiers,
+                              Gson json) {
+        this(config, clientNotifiers, json, null);
+    }
+
+    public NotificationServer(NotificationServerConfig config,
+                              ClientRegistry<T> clientNotifiers,
+                              Gson json,
+                              SocketPresence presence) {
+        this.config = config;
+        this.clientNotifiers = clientNotifiers;
+        this.json = json;
+        this.presence = presence;
+    }
+
+    /**
+     * Opens the socket on the given port and starts the accept thread and the event loops.
+     * @param port the port to use
+     * @throws IOException if the socket cannot be opened
+     */
+    public void start(int port) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+
+        for (int i = 0; i < config.getEventLoops(); i++) {
+            final EventLoop eventLoop = new EventLoop("notification-loop-" + i, this::onDisconnect);
+            eventLoops.add(eventLoop);
+            eventLoop.start();
+        }
+
+        acceptThread = new Thread(this::acceptClients, "notification-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Gets the port really used by the socket (useful when started on port 0).
+     * @return the local port of the socket
+     * @throws IOException if the socket is closed
+     */
+    public int getLocalPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Gets the number of clients currently connected.
+     * @return the number of connected clients
+     */
+    public int getConnectedClients() {
+        return connectedClients.get();
+    }
+
+    private void acceptClients() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel = null;
+            String host = null;
+            boolean admitted = false;
+            NioClientNotifier<T> notifier = null;
+            try {
+                // blocking accept - only this thread waits for new clients
+                channel = serverChannel.accept();
+                host = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+
+                if (!admit(host)) {
+                    channel.close();
+                    continue;
+                }
+                admitted = true;
+
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                final EventLoop eventLoop = leastLoadedEventLoop();
+                notifier = new NioClientNotifier<>(
+                        channel, host, eventLoop, json, config.getQueueConfig(), clientNotifiers,
+                        presence, config.getHeartbeatConfig());
+                clientNotifiers.add(notifier);
+                eventLoop.register(notifier);
+            } catch (IOException | RuntimeException e) {
+                if (!serverChannel.isOpen()) {
+                    // the server is closed
+                    return;
+                }
+                System.err.println("Unable to accept a new client on the notification socket : " + e);
+                abortAccept(channel, admitted ? host : null, notifier);
+            }
+        }
+    }
+
+    /**
+     * Gives up a client whose connection failed before it was handed to its event loop.
+     * @param channel the accepted channel, null if none
+     * @param admittedHost the host whose admission slot was reserved, null if none
+     * @param notifier the notifier added to the clients, null if none
+     */
+    private void abortAccept(SocketChannel channel, String admittedHost, NioClientNotifier<T> notifier) {
+        if (notifier != null) {
+            clientNotifiers.remove(notifier);
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        if (admittedHost != null) {
+            release(admittedHost);
+        }
+    }
+
+    /**
+     * Checks the admission limits for a new client and reserves its slot.
+     * @param host the remote host of the new client
+     * @return true if the client can connect
+     */
+    private boolean admit(String host) {
+        if (connectedClients.incrementAndGet() > config.getMaxClients()) {
+            connectedClients.decrementAndGet();
+            return false;
+        }
+        if (config.getMaxClientsPerHost() > 0) {
+            final AtomicInteger hostClients = clientsPerHost.computeIfAbsent(host, h -> new AtomicInteger());
+            if (hostClients.incrementAndGet() > config.getMaxClientsPerHost()) {
+                hostClients.decrementAndGet();
+                connectedClients.decrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private EventLoop leastLoadedEventLoop() {
+        EventLoop best = eventLoops.get(0);
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop.getConnections() < best.getConnections()) {
+                best = eventLoop;
+            }
+        }
+        return best;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onDisconnect(NioClientNotifier<?> notifier) {
+        clientNotifiers.remove((NioClientNotifier<T>) notifier);
+        if (notifier.getAccountId() != SocketPresence.NO_ACCOUNT) {
+            presence.disconnected(notifier.getAccountId());
+        }
+        release(notifier.getRemoteHost());
+    }
+
+    /**
+     * Frees the admission slot of a client that was admitted.
+     * @param host the remote host of the client
+     */
+    private void release(String host) {
+        connectedClients.decrementAndGet();
+        if (config.getMaxClientsPerHost() > 0) {
+            clientsPerHost.computeIfPresent(host, (h, count) -> count.decrementAndGet() <= 0 ? null : count);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        eventLoops.forEach(EventLoop::close);
+    }
+}
@@ -0,0 +1,106 @@
+package chatProject.server;
+
+/**
+ * The configuration of the {@link NotificationServer}.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.notifications.eventLoops=8}).
+ */
+public class NotificationServerConfig {
+
+    /**
+     * The number of event loops (threads) sharing the connected clients.
+     */
+    private final int eventLoops;
+    /**
+     * The maximum number of clients connected at the same time.
+     * New clients are rejected at accept time above this limit.
+     */
+    private final int maxClients;
+    /**
+     * The maximum number of clients connected at the same time from the same remote host.
+     * 0 means no limit.
+     */
+    private final int maxClientsPerHost;
+    /**
+     * The configuration of the outbound queue of every client.
+     */
+    private final OutboundQueueConfig queueConfig;
+    /**
+     * The configuration of the heartbeats of the authenticated clients.
+     */
+    private final HeartbeatConfig heartbeatConfig;
+
+    public NotificationServerConfig(int eventLoops, int maxClients, int maxClientsPerHost) {
+        this(eventLoops, maxClients, maxClientsPerHost, OutboundQueueConfig.fromSystemProperties());
+    }
+
+    public NotificationServerConfig(int eventLoops, int maxClients, int maxClientsPerHost,
+                                    OutboundQueueConfig queueConfig) {
+        this(eventLoops, maxClients, maxClientsPerHost, queueConfig, HeartbeatConfig.fromSystemProperties());
+    }
+
+    public NotificationServerConfig(int eventLoops, int maxClients, int maxClientsPerHost,
+                                    OutboundQueueConfig queueConfig, HeartbeatConfig heartbeatConfig) {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("At least 1 event loop is required, got " + eventLoops);
+        }
+        this.eventLoops = eventLoops;
+        this.maxClients = maxClients;
+        this.maxClientsPerHost = maxClientsPerHost;
+        this.queueConfig = queueConfig;
+        this.heartbeatConfig = heartbeatConfig;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static NotificationServerConfig fromSystemProperties() {
+        return new NotificationServerConfig(
+                Integer.getInteger("chat.notifications.eventLoops", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("chat.notifications.maxClients", 10_000),
+                Integer.getInteger("chat.notifications.maxClientsPerHost", 0),
+                OutboundQueueConfig.fromSystemProperties(),
+                HeartbeatConfig.fromSystemProperties()
+        );
+    }
+
+    /**
+     * Gets the number of event loops (threads) sharing the connected clients.
+     * @return the number of event loops
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * Gets the maximum number of clients connected at the same time.
+     * @return the maximum number of clients
+     */
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    /**
+     * Gets the maximum number of clients connected at the same time from the same host.
+     * @return the maximum number of clients per host, 0 if there is no limit
+     */
+    public int getMaxClientsPerHost() {
+        return maxClientsPerHost;
+    }
+
+    /**
+     * Gets the configuration of the outbound queue of every client.
+     * @return the queue configuration
+     */
+    public OutboundQueueConfig getQueueConfig() {
+        return queueConfig;
+    }
+
+    /**
+     * Gets the configuration of the heartbeats of the authenticated clients.
+     * @return the heartbeat configuration
+     */
+    public HeartbeatConfig getHeartbeatConfig() {
+        return heartbeatConfig;
+    }
+}
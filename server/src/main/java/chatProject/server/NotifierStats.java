@@ -0,0 +1,72 @@
+package chatProject.server;
+
+/**
+ * The counters of the {@link OutboundQueue} of a client, to find the clients lagging behind.
+ * Serialized as is by the {@code /notifiers} web service.
+ */
+public class NotifierStats {
+
+    private final String client;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final int queueCapacity;
+    private final long sent;
+    private final long dropped;
+
+    public NotifierStats(String client, int queueDepth, int maxQueueDepth, int queueCapacity, long sent, long dropped) {
+        this.client = client;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueCapacity = queueCapacity;
+        this.sent = sent;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Gets a printable name of the client.
+     * @return the client name
+     */
+    public String getClient() {
+        return client;
+    }
+
+    /**
+     * Gets the number of notifications waiting to be sent to the client.
+     * @return the current depth of the queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the highest number of notifications that waited to be sent to the client.
+     * @return the maximum depth of the queue so far
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Gets the maximum number of notifications that can wait to be sent to the client.
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the number of notifications sent to the client.
+     * @return the number of sent notifications
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Gets the number of notifications dropped because the client was too slow.
+     * @return the number of dropped notifications
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,123 @@
+package chatProject.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of notifications waiting to be sent to a client.
+ * Filled by the threads notifying the clients and drained by the single thread writing on the socket of the client.
+ * The {@link SlowConsumerPolicy} decides what happens when the client does not read fast enough.
+ * @param <E> the type of the queued notifications
+ */
+public class OutboundQueue<E> {
+
+    private final BlockingQueue<E> queue;
+    private final OutboundQueueConfig config;
+
+    /**
+     * The number of notifications taken from the queue to be written on the socket.
+     */
+    private final AtomicLong sent = new AtomicLong();
+    /**
+     * The number of notifications dropped because the queue was full.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * The highest number of notifications waiting in the queue so far.
+     */
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public OutboundQueue(OutboundQueueConfig config) {
+        this.queue = new ArrayBlockingQueue<>(config.getCapacity());
+        this.config = config;
+    }
+
+    /**
+     * Adds a notification in the queue, applying the {@link SlowConsumerPolicy} if the queue is full.
+     * @param notification the notification to send
+     * @return false if the client is too slow and must be disconnected
+     */
+    public boolean offer(E notification) {
+        if (!queue.offer(notification)) {
+            switch (config.getPolicy()) {
+                case DROP_OLDEST:
+                    // other threads may fill the queue at the same time - loop until there is room
+                    while (!queue.offer(notification)) {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                    break;
+                case BLOCK:
+                    try {
+                        if (!queue.offer(notification, config.getBlockTimeout(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) {
+                            dropped.incrementAndGet();
+                            return false;
+                        }
+                    } catch (InterruptedException e) {
+                        // the notifying thread is stopping - give up this notification only
+                        Thread.currentThread().interrupt();
+                        dropped.incrementAndGet();
+                        return true;
+                    }
+                    break;
+                case DISCONNECT:
+                default:
+                    dropped.incrementAndGet();
+                    return false;
+            }
+        }
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    /**
+     * Takes the next notification to send, if any.
+     * @return the next notification, or null if the queue is empty
+     */
+    public E poll() {
+        final E notification = queue.poll();
+        if (notification != null) {
+            sent.incrementAndGet();
+        }
+        return notification;
+    }
+
+    /**
+     * Takes the next notification to send, waiting for one if the queue is empty.
+     * @return the next notification
+     * @throws InterruptedException if the writing thread is interrupted
+     */
+    public E take() throws InterruptedException {
+        final E notification = queue.take();
+        sent.incrementAndGet();
+        return notification;
+    }
+
+    /**
+     * Removes all the queued notifications.
+     */
+    public void clear() {
+        queue.clear();
+    }
+
+    /**
+     * Gets the number of notifications waiting in the queue.
+     * @return the current depth of the queue
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the counters of this queue.
+     * @param client a printable name for the client of this queue
+     * @return a snapshot of the counters
+     */
+    public NotifierStats getStats(String client) {
+        return new NotifierStats(client, queue.size(), maxDepth.get(), config.getCapacity(), sent.get(), dropped.get());
+    }
+}
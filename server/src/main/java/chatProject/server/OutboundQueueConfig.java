@@ -0,0 +1,70 @@
+package chatProject.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of the {@link OutboundQueue} of every client.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.notifications.queueCapacity=512}).
+ */
+public class OutboundQueueConfig {
+
+    /**
+     * The maximum number of notifications waiting to be sent to a client.
+     */
+    private final int capacity;
+    /**
+     * What to do when the queue is full.
+     */
+    private final SlowConsumerPolicy policy;
+    /**
+     * How long to wait for room in the queue with the {@link SlowConsumerPolicy#BLOCK} policy.
+     */
+    private final long blockTimeoutMillis;
+
+    public OutboundQueueConfig(int capacity, SlowConsumerPolicy policy, long blockTimeoutMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static OutboundQueueConfig fromSystemProperties() {
+        return new OutboundQueueConfig(
+                Integer.getInteger("chat.notifications.queueCapacity", 1024),
+                SlowConsumerPolicy.valueOf(
+                        System.getProperty("chat.notifications.slowConsumerPolicy", SlowConsumerPolicy.DROP_OLDEST.name())),
+                Long.getLong("chat.notifications.blockTimeoutMillis", 100)
+        );
+    }
+
+    /**
+     * Gets the maximum number of notifications waiting to be sent to a client.
+     * @return the capacity of the queue
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets what to do when the queue is full.
+     * @return the policy for slow consumers
+     */
+    public SlowConsumerPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Gets how long to wait for room in the queue with the {@link SlowConsumerPolicy#BLOCK} policy.
+     * @param unit the unit of the result
+     * @return the timeout
+     */
+    public long getBlockTimeout(TimeUnit unit) {
+        return unit.convert(blockTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,54 @@
+package chatProject.server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The session tokens of the logged in users, to authenticate their connections to the notification socket.
+ * A user keeps the same token until the server stops, whatever the number of logins : the tokens are not persisted.
+ */
+public class SessionTokens {
+
+    /**
+     * The number of random bytes of a token.
+     */
+    private static final int TOKEN_BYTES = 16;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * The token of each account, by account ID.
+     */
+    private final Map<Integer, String> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * The account ID of each token.
+     */
+    private final Map<String, Integer> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the token of an account, issuing it on the first call.
+     * @param accountId the account ID of the user
+     * @return the token of the user
+     */
+    public String issue(int accountId) {
+        return tokens.computeIfAbsent(accountId, id -> {
+            final byte[] bytes = new byte[TOKEN_BYTES];
+            random.nextBytes(bytes);
+            final String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            accounts.put(token, id);
+            return token;
+        });
+    }
+
+    /**
+     * Finds the account of a token.
+     * @param token the token sent by a client
+     * @return the account ID of the token, or {@link SocketPresence#NO_ACCOUNT} if the token is unknown
+     */
+    public int find(String token) {
+        return (token == null) ? SocketPresence.NO_ACCOUNT : accounts.getOrDefault(token, SocketPresence.NO_ACCOUNT);
+    }
+}
@@ -0,0 +1,11 @@
+package chatProject.server;
+
+/**
+ * What to do when the outbound queue of a client is full (the client does not read its notifications fast enough).
+ */
+public enum SlowConsumerPolicy {
+
+    DROP_OLDEST, // drop the oldest queued notification to make room for the new one
+    DISCONNECT, // disconnect the client
+    BLOCK // block the notifying thread until there is room, disconnect the client after a timeout
+}
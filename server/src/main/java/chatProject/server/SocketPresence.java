@@ -0,0 +1,34 @@
+package chatProject.server;
+
+/**
+ * The presence of the users driven by their connections to the notification socket.
+ * A connection authenticated with the session token of a user keeps the user active while it sends heartbeats.
+ * Called by the event loops of the {@link NotificationServer} : the implementations must not block.
+ */
+public interface SocketPresence {
+
+    /**
+     * The account ID of a connection not authenticated.
+     */
+    int NO_ACCOUNT = -1;
+
+    /**
+     * Authenticates a connection with a session token, and marks its user active.
+     * @param token the token sent by the client
+     * @return the account ID of the user of the token, or {@link #NO_ACCOUNT} if the token is unknown
+     */
+    int authenticate(String token);
+
+    /**
+     * Handles a heartbeat of an authenticated connection.
+     * @param accountId the account ID of the connection
+     * @param nextIntervalMillis the delay before the next heartbeat announced by the client
+     */
+    void heartbeat(int accountId, long nextIntervalMillis);
+
+    /**
+     * Handles the end of an authenticated connection.
+     * @param accountId the account ID of the connection
+     */
+    void disconnected(int accountId);
+}
@@ -0,0 +1,190 @@
+package chatProject.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A hierarchical timer wheel : deadlines on {@link System#nanoTime()} for many keys, with O(1) rescheduling.
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #SLOTS} slots : a slot of level 0 lasts one tick,
+ * a slot of level n lasts {@code SLOTS^n} ticks. A timer is stored in the slot of its deadline at the lowest level
+ * that covers it, and moves down a level each time the level below has done a full turn.
+ * <p>
+ * Rescheduling a timer only changes its deadline : the timer stays in its slot and is moved to the slot of
+ * its new deadline when its old slot is reached. The deadlines are changed under the lock of the wheel, so that
+ * {@link #advance(long)} never expires a timer moved later while it reaches its slot. A key pinged much more often than its timeout is thus moved
+ * about once per timeout, and {@link #advance(long)} only works on the slots reached and the timers in them.
+ * @param <K> the type of the keys
+ */
+public class TimerWheel<K> {
+
+    static final int SLOTS = 64;
+    static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+
+    /**
+     * A timer of a key.
+     */
+    private static final class Timer<K> {
+        private final K key;
+        /**
+         * The deadline of the timer, in nanoseconds. Guarded by the wheel.
+         */
+        private long deadline;
+
+        private Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickNanos;
+
+    /**
+     * The timers by key.
+     */
+    private final ConcurrentHashMap<K, Timer<K>> timers = new ConcurrentHashMap<>();
+
+    /**
+     * The slots of every level, guarded by this wheel.
+     */
+    private final List<List<Timer<K>>> slots = new ArrayList<>(LEVELS * SLOTS);
+
+    /**
+     * The time of the tick 0.
+     */
+    private final long origin;
+    /**
+     * The next tick to process.
+     */
+    private long currentTick = 0;
+
+    public TimerWheel(long tickNanos, long nowNanos) {
+        this.tickNanos = tickNanos;
+        this.origin = nowNanos;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Sets the deadline of a key.
+     * O(1) : an existing timer is only updated, a new timer is added to its slot.
+     * @param key the key
+     * @param deadlineNanos the deadline, in {@link System#nanoTime()} nanoseconds
+     */
+    public synchronized void schedule(K key, long deadlineNanos) {
+        final Timer<K> timer = timers.get(key);
+        if (timer != null && deadlineNanos - timer.deadline >= 0) {
+            // moved later : moved to its new slot once its current slot is reached
+            timer.deadline = deadlineNanos;
+            return;
+        }
+        final Timer<K> newTimer = new Timer<>(key, deadlineNanos);
+        timers.put(key, newTimer);
+        insert(newTimer);
+    }
+
+    /**
+     * Removes the timer of a key.
+     * @param key the key
+     */
+    public void cancel(K key) {
+        // the timer is dropped from its slot when the slot is reached
+        timers.remove(key);
+    }
+
+    /**
+     * Checks if a key has a timer.
+     * @param key the key
+     * @return true if a timer is scheduled for the key
+     */
+    public boolean isScheduled(K key) {
+        return timers.containsKey(key);
+    }
+
+    /**
+     * Processes the ticks up to a time.
+     * @param nowNanos the current time, in {@link System#nanoTime()} nanoseconds
+     * @return the keys whose deadline passed, removed from the wheel
+     */
+    public synchronized List<K> advance(long nowNanos) {
+        final List<K> expired = new ArrayList<>();
+        final long lastTick = (nowNanos - origin) / tickNanos;
+        while (currentTick <= lastTick) {
+            // move down the timers of the levels above that reached their slot
+            for (int level = 1; level < LEVELS && (currentTick & mask(level)) == 0; level++) {
+                final List<Timer<K>> cascaded = takeSlot(level, slotIndex(currentTick, level));
+                cascaded.forEach(this::insertIfLive);
+            }
+            for (Timer<K> timer : takeSlot(0, slotIndex(currentTick, 0))) {
+                if (timers.get(timer.key) != timer) {
+                    // cancelled or replaced
+                    continue;
+                }
+                if (tickOf(timer.deadline) > currentTick) {
+                    // rescheduled meanwhile
+                    insert(timer);
+                } else if (timers.remove(timer.key, timer)) {
+                    expired.add(timer.key);
+                }
+            }
+            currentTick++;
+        }
+        return expired;
+    }
+
+    /**
+     * Gets the number of keys with a timer.
+     * @return the number of timers
+     */
+    public int size() {
+        return timers.size();
+    }
+
+    private void insertIfLive(Timer<K> timer) {
+        if (timers.get(timer.key) == timer) {
+            insert(timer);
+        }
+    }
+
+    /**
+     * Adds a timer in the slot of its deadline, at the lowest level covering it.
+     */
+    private void insert(Timer<K> timer) {
+        // a passed deadline expires at the next tick processed
+        final long tick = Math.max(tickOf(timer.deadline), currentTick);
+        final long delay = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        // beyond the last level : waits in the last slot reached, then is moved again
+        final long slotTick = Math.min(tick, currentTick + (1L << (SLOT_BITS * LEVELS)) - 1);
+        slots.get(level * SLOTS + slotIndex(slotTick, level)).add(timer);
+    }
+
+    private List<Timer<K>> takeSlot(int level, int index) {
+        final List<Timer<K>> slot = slots.get(level * SLOTS + index);
+        if (slot.isEmpty()) {
+            return slot;
+        }
+        slots.set(level * SLOTS + index, new ArrayList<>());
+        return slot;
+    }
+
+    private long tickOf(long nanos) {
+        // the first tick at or after the deadline
+        final long elapsed = nanos - origin;
+        return (elapsed <= 0) ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    private static long mask(int level) {
+        return (1L << (SLOT_BITS * level)) - 1;
+    }
+}
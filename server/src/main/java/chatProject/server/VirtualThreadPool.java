@@ -0,0 +1,80 @@
+package chatProject.server;
+
+import chatProject.threads.ThreadMode;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Jetty {@link ThreadPool} running every task in a new virtual thread, for the web services of Spark.
+ * Virtual threads are cheap : they are never pooled nor limited, every request handler gets its own thread.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private final String prefix;
+
+    /**
+     * The counter to name the threads.
+     */
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * The number of tasks being run.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Released when the pool is stopped.
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    public VirtualThreadPool(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!isRunning() && !isStarting()) {
+            throw new RejectedExecutionException("The thread pool " + prefix + " is stopped");
+        }
+        ThreadMode.VIRTUAL.start(prefix + counter.incrementAndGet(), () -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        stopped.countDown();
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        // no thread waits for a task
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
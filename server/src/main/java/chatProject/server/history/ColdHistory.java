@@ -0,0 +1,121 @@
+package chatProject.server.history;
+
+import chatProject.model.messages.Message;
+import chatProject.server.log.ByteBufferInputStream;
+import chatProject.server.log.LogConfig;
+import chatProject.server.log.RecordType;
+import chatProject.server.log.SegmentedLog;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A cold tier on disk : the messages that left their {@link HotTail}, serialized in the segment files
+ * of a {@link SegmentedLog} and read back on demand.
+ * <p>
+ * The cold tier is only a cache of the memory : nothing is forced on the disk, and the files are deleted when
+ * the server starts (and when it is closed, for a temporary directory).
+ * In a directory given by the configuration, the segments are kept in their own {@link #SUBDIRECTORY} :
+ * the other files of the directory (e.g. the chat log) are never deleted.
+ * @param <T> the type of messages in the chat
+ */
+public class ColdHistory<T> implements ColdTier<T> {
+
+    /**
+     * The subdirectory of the segments in a directory given by the configuration.
+     */
+    public static final String SUBDIRECTORY = "cold-history";
+
+    private final SegmentedLog log;
+    private final File directory;
+    private final boolean temporary;
+    private final Gson json;
+
+    // we need a Type token to deserialize a parametrized type
+    private final Type messageT = new TypeToken<Message<T>>() {}.getType();
+
+    private ColdHistory(SegmentedLog log, File directory, boolean temporary, Gson json) {
+        this.log = log;
+        this.directory = directory;
+        this.temporary = temporary;
+        this.json = json;
+    }
+
+    /**
+     * Opens an empty cold tier in the directory of the configuration, or in a temporary directory.
+     * @param config the configuration of the history
+     * @param json the Json (de)serializer to use
+     * @param <T> the type of messages to use
+     * @return the opened cold tier
+     * @throws IOException if the files cannot be created
+     */
+    public static <T> ColdHistory<T> open(HistoryConfig config, Gson json) throws IOException {
+        final boolean temporary = config.getDirectory() == null;
+        final File directory = temporary
+                ? Files.createTempDirectory("chat-history").toFile()
+                : new File(config.getDirectory(), SUBDIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the history directory " + directory);
+        }
+        // the messages of a previous run are not in memory anymore
+        deleteSegments(directory);
+        final SegmentedLog log = SegmentedLog.open(new LogConfig(directory, config.getSegmentBytes(), 0, false));
+        return new ColdHistory<>(log, directory, temporary, json);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long write(int chatroomId, Message<T> message) {
+        try {
+            return log.write(RecordType.MESSAGE, chatroomId, json.toJson(message, messageT).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to move a message of the chatroom " + chatroomId + " to the disk", e);
+        }
+    }
+
+    /**
+     * Decodes a message from the mapped segment.
+     * @param address the address of the message
+     * @return the message
+     */
+    @Override
+    public Message<T> read(long address) {
+        return json.fromJson(
+                new InputStreamReader(new ByteBufferInputStream(log.read(address)), StandardCharsets.UTF_8),
+                messageT);
+    }
+
+    /**
+     * Closes the segments, and deletes them if they are in a temporary directory.
+     */
+    @Override
+    public void close() {
+        log.close();
+        if (temporary) {
+            deleteSegments(directory);
+            if (!directory.delete()) {
+                System.err.println("Unable to delete the history directory " + directory);
+            }
+        }
+    }
+
+    private static void deleteSegments(File directory) {
+        final File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        if (segments == null) {
+            return;
+        }
+        for (File segment : segments) {
+            if (!segment.delete()) {
+                System.err.println("Unable to delete the history segment " + segment);
+            }
+        }
+    }
+}
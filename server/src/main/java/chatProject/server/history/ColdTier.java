@@ -0,0 +1,32 @@
+package chatProject.server.history;
+
+import chatProject.model.messages.Message;
+
+/**
+ * Where the messages leaving their {@link HotTail} are kept : read back on demand, off the Java heap.
+ * @param <T> the type of messages in the chat
+ */
+public interface ColdTier<T> extends AutoCloseable {
+
+    /**
+     * Stores a message that leaves its hot tail.
+     * Called by the single writer of the chatroom.
+     * @param chatroomId the chatroom of the message
+     * @param message the message
+     * @return the address of the message in this tier
+     */
+    long write(int chatroomId, Message<T> message);
+
+    /**
+     * Reads a message back. May be called by many threads at once.
+     * @param address the address of the message
+     * @return the message
+     */
+    Message<T> read(long address);
+
+    /**
+     * Releases the storage of the messages.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,81 @@
+package chatProject.server.history;
+
+import java.io.File;
+
+/**
+ * The configuration of the history of the chatrooms : the hot tail of recent messages kept in memory,
+ * and the cold tier holding the older messages (on disk, or in off-heap arenas).
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.history.hotMessages=5000}).
+ */
+public class HistoryConfig {
+
+    /**
+     * The number of recent messages kept in memory for each chatroom, 0 to keep every message in memory.
+     */
+    private final int hotMessages;
+    /**
+     * The directory of the cold tier, null for a temporary directory deleted when the server is closed.
+     * Without the log, the files of the cold tier are only a cache : they are deleted at startup.
+     */
+    private final File directory;
+    /**
+     * The size of every file of the cold tier (or of every arena, off-heap).
+     */
+    private final int segmentBytes;
+    /**
+     * True to keep the cold tier in direct buffers, outside of the heap, instead of on disk.
+     */
+    private final boolean offHeap;
+
+    public HistoryConfig(int hotMessages, File directory, int segmentBytes) {
+        this(hotMessages, directory, segmentBytes, false);
+    }
+
+    public HistoryConfig(int hotMessages, File directory, int segmentBytes, boolean offHeap) {
+        if (hotMessages < 0) {
+            throw new IllegalArgumentException("The hot tail cannot be negative, got " + hotMessages);
+        }
+        this.hotMessages = hotMessages;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static HistoryConfig fromSystemProperties() {
+        final String directory = System.getProperty("chat.history.dir");
+        return new HistoryConfig(
+                Integer.getInteger("chat.history.hotMessages", 1000),
+                (directory == null) ? null : new File(directory),
+                Integer.getInteger("chat.history.segmentBytes", 16 * 1024 * 1024),
+                Boolean.getBoolean("chat.history.offHeap")
+        );
+    }
+
+    /**
+     * Checks if the old messages should leave the memory.
+     * @return true if the hot tail is bounded
+     */
+    public boolean isEnabled() {
+        return hotMessages > 0;
+    }
+
+    public int getHotMessages() {
+        return hotMessages;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+}
@@ -0,0 +1,35 @@
+package chatProject.server.history;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the reads of the {@link HotTail}s of a server.
+ * Shared by all the chatrooms, updated without lock by the readers.
+ */
+public class HistoryCounters {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Counts a message found in a hot tail.
+     */
+    void hit() {
+        hits.increment();
+    }
+
+    /**
+     * Counts a message read from the cold tier.
+     */
+    void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Gets the current values of the counters.
+     * @return the counters, at the time of the call
+     */
+    public HistoryStats getStats() {
+        return new HistoryStats(hits.sum(), misses.sum());
+    }
+}
@@ -0,0 +1,47 @@
+package chatProject.server.history;
+
+/**
+ * The counters of the reads of the history of the chatrooms.
+ * Serialized as is by the {@code /history} web service.
+ */
+public class HistoryStats {
+
+    private final long hits;
+    private final long misses;
+    private final double hitRatio;
+
+    public HistoryStats(long hits, long misses) {
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRatio = (hits + misses == 0) ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Gets the number of messages read from memory.
+     * @return the hits of the hot tails
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of messages read from the cold tier.
+     * @return the misses of the hot tails
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the part of the messages read from memory.
+     * @return the hits divided by all the reads, 0 if nothing was read
+     */
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    @Override
+    public String toString() {
+        return "History : " + hits + " hits, " + misses + " misses";
+    }
+}
@@ -0,0 +1,82 @@
+package chatProject.server.history;
+
+import chatProject.model.messages.Message;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The recent messages of a chatroom, in a ring buffer of fixed size.
+ * The message at a position is stored in the slot {@code position % capacity} : a new message replaces the oldest one.
+ * <p>
+ * Written by the single writer of the chatroom, read without lock : a reader checks that the slot still holds
+ * the position it asked for, and misses otherwise.
+ * @param <T> the type of messages in the chat
+ */
+public class HotTail<T> {
+
+    /**
+     * A message with its position in the chatroom.
+     */
+    private static final class Entry<T> {
+        private final int position;
+        private final Message<T> message;
+
+        private Entry(int position, Message<T> message) {
+            this.position = position;
+            this.message = message;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry<T>> slots;
+    private final HistoryCounters counters;
+
+    public HotTail(int capacity, HistoryCounters counters) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The hot tail must hold at least 1 message, got " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.counters = counters;
+    }
+
+    /**
+     * Stores a message, replacing the message {@link #getCapacity()} positions before it.
+     * @param position the position of the message in the chatroom
+     * @param message the message
+     */
+    public void put(int position, Message<T> message) {
+        slots.set(position % slots.length(), new Entry<>(position, message));
+    }
+
+    /**
+     * Gets a message if it is still in the hot tail, counting a hit or a miss.
+     * @param position the position of the message in the chatroom
+     * @return the message, null if it was replaced (or never stored)
+     */
+    public Message<T> get(int position) {
+        final Message<T> message = peek(position);
+        if (message == null) {
+            counters.miss();
+        } else {
+            counters.hit();
+        }
+        return message;
+    }
+
+    /**
+     * Gets a message if it is still in the hot tail, without counting the read.
+     * @param position the position of the message in the chatroom
+     * @return the message, null if it was replaced (or never stored)
+     */
+    public Message<T> peek(int position) {
+        final Entry<T> entry = slots.get(position % slots.length());
+        return (entry != null && entry.position == position) ? entry.message : null;
+    }
+
+    /**
+     * Gets the number of messages kept.
+     * @return the size of the ring
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,122 @@
+package chatProject.server.history;
+
+import chatProject.model.messages.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A cold tier keeping the messages in direct {@link ByteBuffer}s (arenas of fixed size), outside of the Java heap.
+ * <p>
+ * A message is stored as one record : its ID, its time, the ID of its sender and its content in UTF-8.
+ * Only the text chats are supported : the content must be a {@link String} (or null), it is decoded as is.
+ * The sender is resolved by the readers from its ID.
+ * The garbage collector never scans the records : only the address of each message stays on the heap, and
+ * a {@link Message} is decoded only when it is read (e.g. to serialize it for a client).
+ * <p>
+ * The address of a record is the index of its arena (high 32 bits) and its position in the arena (low 32 bits).
+ * @param <T> the type of messages in the chat
+ */
+public class OffHeapArena<T> implements ColdTier<T> {
+
+    /**
+     * The size of a record without its content : ID, time, sender ID, kind of content, length.
+     */
+    static final int HEADER_BYTES = 8 + 8 + 4 + 1 + 4;
+
+    private static final byte STRING_CONTENT = 0;
+    private static final byte NULL_CONTENT = 1;
+
+    private final int arenaBytes;
+
+    /**
+     * All the arenas, by index. Replaced (never modified) when an arena is added.
+     */
+    private volatile ByteBuffer[] arenas;
+
+    /**
+     * The arena receiving the new records, and its position. Guarded by this.
+     */
+    private ByteBuffer active;
+
+    public OffHeapArena(int arenaBytes) {
+        if (arenaBytes < 1024) {
+            throw new IllegalArgumentException("The arenas must be at least 1 KB, got " + arenaBytes);
+        }
+        this.arenaBytes = arenaBytes;
+        this.active = ByteBuffer.allocateDirect(arenaBytes);
+        this.arenas = new ByteBuffer[]{active};
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the content of the message is not a {@link String}
+     */
+    @Override
+    public synchronized long write(int chatroomId, Message<T> message) {
+        final Object content = message.getMessage();
+        if (content != null && !(content instanceof String)) {
+            throw new IllegalArgumentException("The off-heap history only keeps text messages, got "
+                    + content.getClass().getName());
+        }
+        final byte[] bytes = (content == null) ? new byte[0] : ((String) content).getBytes(StandardCharsets.UTF_8);
+        final int length = HEADER_BYTES + bytes.length;
+        if (length > arenaBytes) {
+            throw new IllegalArgumentException("A message of " + bytes.length + " bytes cannot fit in an arena");
+        }
+        if (active.remaining() < length) {
+            active = ByteBuffer.allocateDirect(arenaBytes);
+            final ByteBuffer[] extended = Arrays.copyOf(arenas, arenas.length + 1);
+            extended[extended.length - 1] = active;
+            arenas = extended;
+        }
+
+        final long address = ((long) (arenas.length - 1) << 32) | active.position();
+        active.putLong(message.getId())
+                .putLong(message.getTimestamp())
+                .putInt(message.getSenderId())
+                .put(content == null ? NULL_CONTENT : STRING_CONTENT)
+                .putInt(bytes.length)
+                .put(bytes);
+        return address;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Message<T> read(long address) {
+        // a view of its own : the position of the arena is only moved by the writer
+        final ByteBuffer record = arenas[(int) (address >>> 32)].duplicate();
+        record.position((int) address);
+        final long id = record.getLong();
+        final long timestamp = record.getLong();
+        final int senderId = record.getInt();
+        final byte kind = record.get();
+        final byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+
+        // only text chats : T is String
+        final T content = (kind == NULL_CONTENT) ? null : (T) new String(bytes, StandardCharsets.UTF_8);
+        return new Message<>(id, senderId, content, timestamp);
+    }
+
+    /**
+     * Gets the memory used outside of the heap.
+     * @return the size of all the arenas, in bytes
+     */
+    public long getReservedBytes() {
+        return (long) arenas.length * arenaBytes;
+    }
+
+    /**
+     * Drops the arenas : their memory is released once they are garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        active = ByteBuffer.allocate(0);
+        arenas = new ByteBuffer[0];
+    }
+}
@@ -0,0 +1,98 @@
+package chatProject.server.history;
+
+import chatProject.model.messages.Message;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The messages of a chatroom, in 2 tiers : the recent messages in a {@link HotTail} of fixed size,
+ * the older ones in a {@link ColdTier} (on disk, or off-heap).
+ * Only the addresses of the cold messages are kept on heap : the memory of a chatroom stays bounded
+ * whatever the traffic, and reading the whole list spans both tiers.
+ * <p>
+ * A message moves to the cold tier when it leaves the hot tail, before its slot is reused : a reader missing
+ * a message in the hot tail always finds it in the cold tier.
+ * @param <T> the type of messages in the chat
+ */
+public class TieredMessages<T> extends AbstractList<Message<T>> implements RandomAccess {
+
+    private final ColdTier<T> cold;
+    private final int chatroomId;
+    private final HotTail<T> hot;
+
+    /**
+     * The addresses of the cold messages, in the order of the chatroom.
+     * Replaced when it grows : always read after {@link #coldSize}.
+     */
+    private long[] addresses = new long[16];
+
+    /**
+     * The number of messages in the cold tier, written after their addresses.
+     */
+    private volatile int coldSize = 0;
+
+    /**
+     * The number of messages, written after the message is in the hot tail.
+     */
+    private volatile int size = 0;
+
+    public TieredMessages(ColdTier<T> cold, int chatroomId, HotTail<T> hot) {
+        this.cold = cold;
+        this.chatroomId = chatroomId;
+        this.hot = hot;
+    }
+
+    @Override
+    public Message<T> get(int index) {
+        final int currentSize = size;
+        if (index < 0 || index >= currentSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + currentSize);
+        }
+        final Message<T> recent = hot.get(index);
+        if (recent != null) {
+            return recent;
+        }
+        // replaced in the hot tail : moved to the cold tier before
+        if (index >= coldSize) {
+            throw new IllegalStateException("The message " + index + " of the chatroom " + chatroomId + " is lost");
+        }
+        return cold.read(addresses[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a message in the hot tail, moving the oldest message of the hot tail to the cold tier if it is full.
+     * @param message the new message
+     * @return true
+     */
+    @Override
+    public synchronized boolean add(Message<T> message) {
+        final int position = size;
+        final int leaving = position - hot.getCapacity();
+        if (leaving >= 0) {
+            final long address = cold.write(chatroomId, hot.peek(leaving));
+            if (leaving == addresses.length) {
+                addresses = Arrays.copyOf(addresses, addresses.length * 2);
+            }
+            addresses[leaving] = address;
+            coldSize = leaving + 1;
+        }
+        hot.put(position, message);
+        size = position + 1;
+        return true;
+    }
+
+    /**
+     * Gets the number of messages moved to the cold tier.
+     * @return the number of messages on disk
+     */
+    public int getColdSize() {
+        return coldSize;
+    }
+}
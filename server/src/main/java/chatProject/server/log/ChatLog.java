@@ -0,0 +1,445 @@
+package chatProject.server.log;
+
+import chatProject.model.messages.ChatInstance;
+import chatProject.model.messages.Chatroom;
+import chatProject.model.messages.Message;
+import chatProject.model.user.UserInfo;
+import chatProject.server.history.HistoryConfig;
+import chatProject.server.history.HistoryCounters;
+import chatProject.server.history.HotTail;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The chat of the server, persisted in a {@link SegmentedLog} and in periodic snapshots.
+ * <p>
+ * The records of the log are the Json of the chatrooms (without their messages), of the messages,
+ * and of the user changes. The chatrooms created by this class store their messages in the log
+ * (see {@link LoggedMessages}).
+ * <p>
+ * A {@link ChatSnapshot} holds the users, the chatrooms and the addresses of their messages up to an address of the log :
+ * the records after it are the write-ahead log replayed on top of the snapshot at startup.
+ * @param <T> the type of messages to use
+ */
+public class ChatLog<T> implements AutoCloseable {
+
+    private final LogConfig config;
+    private final SegmentedLog log;
+    private final Gson json;
+
+    // we need a Type token to deserialize a parametrized type
+    private final Type messageT = new TypeToken<Message<T>>() {}.getType();
+    private final Type chatroomT = new TypeToken<Chatroom<T>>() {}.getType();
+
+    /**
+     * The messages of the chatrooms, by chatroom ID.
+     * Added with the chatrooms of the {@link ChatInstance}, under its lock.
+     */
+    private final List<LoggedMessages<T>> chatrooms = new CopyOnWriteArrayList<>();
+
+    /**
+     * The model to take snapshots of, once started.
+     */
+    private volatile ChatInstance<T> snapshotSource = null;
+
+    private ScheduledExecutorService snapshotThread = null;
+
+    /**
+     * The number of recent messages of each chatroom kept decoded in memory, 0 for none.
+     */
+    private final int hotMessages;
+    private final HistoryCounters counters;
+
+    /**
+     * The record of a user change.
+     */
+    private static final class UserRecord {
+        private final UserInfo user;
+        /**
+         * The last-seen time of the user, in nanoseconds of the day.
+         */
+        private final long lastSeen;
+
+        private UserRecord(UserInfo user, long lastSeen) {
+            this.user = user;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    public ChatLog(LogConfig config, SegmentedLog log, Gson json) {
+        this(config, log, json, 0, null);
+    }
+
+    public ChatLog(LogConfig config, SegmentedLog log, Gson json, int hotMessages, HistoryCounters counters) {
+        this.config = config;
+        this.log = log;
+        this.json = json;
+        this.hotMessages = hotMessages;
+        this.counters = counters;
+    }
+
+    /**
+     * Opens the log of the chat.
+     * @param config the configuration of the log
+     * @param json the Json (de)serializer to use
+     * @param <T> the type of messages to use
+     * @return the opened log
+     * @throws IOException if the log cannot be opened
+     */
+    public static <T> ChatLog<T> open(LogConfig config, Gson json) throws IOException {
+        return new ChatLog<>(config, SegmentedLog.open(config), json);
+    }
+
+    /**
+     * Opens the log of the chat, keeping the recent messages of every chatroom in memory.
+     * @param config the configuration of the log
+     * @param json the Json (de)serializer to use
+     * @param history the size of the hot tail of the chatrooms (0 to decode every message read)
+     * @param counters the counters of the hot tails
+     * @param <T> the type of messages to use
+     * @return the opened log
+     * @throws IOException if the log cannot be opened
+     */
+    public static <T> ChatLog<T> open(LogConfig config, Gson json, HistoryConfig history, HistoryCounters counters)
+            throws IOException {
+        return new ChatLog<>(config, SegmentedLog.open(config), json, history.getHotMessages(), counters);
+    }
+
+    /* **************************** Recovery *********************/
+
+    /**
+     * Restores the chat into an empty model : loads the last snapshot, then replays the records of the log after it.
+     * The segments of the log are read in parallel, then applied in order.
+     * The messages stay in the log : only their addresses are loaded.
+     * @param chatInstance the model to fill
+     * @return what was restored and how long it took
+     */
+    public RecoveryStats recover(ChatInstance<T> chatInstance) {
+        final long start = System.nanoTime();
+
+        ChatSnapshot snapshot = null;
+        try {
+            snapshot = ChatSnapshot.read(config.getDirectory());
+        } catch (IOException e) {
+            System.err.println("Unable to read the snapshot, the whole log is replayed : " + e.getMessage());
+        }
+        long from = 0;
+        if (snapshot != null) {
+            from = snapshot.coveredAddress;
+            snapshot.users.forEach(chatInstance::restoreUser);
+            for (ChatSnapshot.ChatroomEntry entry : snapshot.chatrooms) {
+                final int chatroomId = chatrooms.size();
+                final LoggedMessages<T> messages = new LoggedMessages<>(this, chatroomId);
+                messages.addAddresses(entry.addresses);
+                chatrooms.add(messages);
+                restoreChatroom(chatInstance, chatroomId, new Chatroom<>(entry.name, entry.owner, messages));
+            }
+        }
+
+        // read (and check) the segments of the write-ahead log in parallel
+        final long fromAddress = from;
+        final List<SegmentRecords> segments = IntStream.range(0, log.getSegmentCount())
+                .parallel()
+                .mapToObj(index -> readSegment(index, fromAddress))
+                .collect(Collectors.toList());
+        // then apply their records in the order of the log
+        long replayed = 0;
+        for (SegmentRecords records : segments) {
+            records.applyTo(chatInstance);
+            replayed += records.count;
+        }
+
+        final long messages = chatrooms.stream().mapToLong(LoggedMessages::size).sum();
+        return new RecoveryStats(snapshot != null, chatrooms.size(), chatInstance.getUsers().size(), messages,
+                replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Reads the records of a segment after an address of the log, decoding the chatrooms and user changes.
+     * @param index the index of the segment
+     * @param from the address of the first record to read
+     * @return the records read
+     */
+    private SegmentRecords readSegment(int index, long from) {
+        final SegmentRecords records = new SegmentRecords();
+        log.scanSegment(index, from, (address, type, chatroomId, payload) -> {
+            switch (type) {
+                case CHATROOM:
+                    records.add(address, type, chatroomId, json.fromJson(reader(payload), chatroomT));
+                    break;
+                case USER:
+                    records.add(address, type, chatroomId, json.fromJson(reader(payload), UserRecord.class));
+                    break;
+                default:
+                    records.add(address, type, chatroomId, null);
+                    break;
+            }
+        });
+        return records;
+    }
+
+    /**
+     * Restores a chatroom of the log, reporting a name already used by another chatroom.
+     * @param chatInstance the chat to restore the chatroom in
+     * @param chatroomId the ID of the chatroom, as before the restart
+     * @param chatroom the chatroom to restore
+     */
+    private static <T> void restoreChatroom(ChatInstance<T> chatInstance, int chatroomId, Chatroom<T> chatroom) {
+        final Integer other = chatInstance.restoreChatroom(chatroomId, chatroom);
+        if (other != null) {
+            System.err.println("The chatroom " + chatroomId + " has the name of the chatroom " + other + " : "
+                    + chatroom.getName() + ", it is only found by its ID");
+        }
+    }
+
+    /**
+     * The records of a segment, in the order of the log.
+     * Compact : the messages are only an address and a chatroom ID.
+     */
+    private final class SegmentRecords {
+        private long[] addresses = new long[1024];
+        private int[] chatroomIds = new int[1024];
+        private byte[] types = new byte[1024];
+        /**
+         * The decoded chatrooms and user changes, in order.
+         */
+        private final List<Object> events = new ArrayList<>();
+        private int count = 0;
+
+        private void add(long address, RecordType type, int chatroomId, Object event) {
+            if (count == addresses.length) {
+                addresses = Arrays.copyOf(addresses, count * 2);
+                chatroomIds = Arrays.copyOf(chatroomIds, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+            }
+            addresses[count] = address;
+            chatroomIds[count] = chatroomId;
+            types[count] = type.getCode();
+            count++;
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void applyTo(ChatInstance<T> chatInstance) {
+            int event = 0;
+            for (int i = 0; i < count; i++) {
+                final int chatroomId = chatroomIds[i];
+                switch (RecordType.fromCode(types[i])) {
+                    case CHATROOM:
+                        final Chatroom<T> stored = (Chatroom<T>) events.get(event++);
+                        if (chatroomId < chatrooms.size()) {
+                            // already in the snapshot
+                            break;
+                        }
+                        final LoggedMessages<T> messages = new LoggedMessages<>(ChatLog.this, chatroomId);
+                        // the same ID as before the restart
+                        restoreChatroom(chatInstance, chatroomId,
+                                new Chatroom<>(stored.getName(), stored.getOwner(), messages));
+                        chatrooms.add(messages);
+                        break;
+                    case MESSAGE:
+                        if (chatroomId >= 0 && chatroomId < chatrooms.size()) {
+                            chatrooms.get(chatroomId).addAddress(addresses[i]);
+                        }
+                        break;
+                    case USER:
+                        final UserRecord record = (UserRecord) events.get(event++);
+                        chatInstance.restoreUser(record.user, LocalTime.ofNanoOfDay(record.lastSeen));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /* **************************** Snapshots *********************/
+
+    /**
+     * Starts taking periodic snapshots of the model, if configured.
+     * A last snapshot is taken when this log is closed, so that the next startup has few records to replay.
+     * @param chatInstance the model to take snapshots of
+     */
+    public synchronized void startSnapshots(ChatInstance<T> chatInstance) {
+        this.snapshotSource = chatInstance;
+        final long interval = config.getSnapshotIntervalSeconds();
+        if (interval > 0 && snapshotThread == null) {
+            snapshotThread = Executors.newSingleThreadScheduledExecutor(task -> {
+                final Thread thread = new Thread(task, "log-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotThread.scheduleWithFixedDelay(this::trySnapshot, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private void trySnapshot() {
+        try {
+            snapshot(snapshotSource);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unable to take a snapshot of the chat : " + e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the model, covering the records of the log appended so far.
+     * The model is only locked to copy the users and the list of chatrooms :
+     * the messages keep being added while their addresses are copied and written.
+     * @param chatInstance the model to take a snapshot of
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void snapshot(ChatInstance<T> chatInstance) throws IOException {
+        // the records before this address are done : their changes are in the model
+        final long end = log.getEndAddress();
+
+        final Map<UserInfo, LocalTime> users = new LinkedHashMap<>();
+        final List<Chatroom<T>> currentChatrooms;
+        synchronized (chatInstance) {
+            chatInstance.getUsers().forEach((user, lastSeen) ->
+                    // copy : the status of a user may change
+                    users.put(new UserInfo(user.getAccount(), user.getCurrentStatus()), lastSeen));
+            currentChatrooms = new ArrayList<>(chatInstance.getCurentChatrooms());
+        }
+
+        final List<ChatSnapshot.ChatroomEntry> entries = new ArrayList<>(currentChatrooms.size());
+        for (int id = 0; id < currentChatrooms.size() && id < chatrooms.size(); id++) {
+            final Chatroom<T> chatroom = currentChatrooms.get(id);
+            entries.add(new ChatSnapshot.ChatroomEntry(
+                    chatroom.getName(), chatroom.getOwner(), chatrooms.get(id).getAddressesBefore(end)));
+        }
+        new ChatSnapshot(end, users, entries).write(config.getDirectory());
+    }
+
+    /* **************************** Writes *********************/
+
+    /**
+     * Creates a new chatroom and appends it to the log.
+     * Its messages are written through to the log.
+     * Must be called under the lock of the {@link ChatInstance}, the chatroom being added to it right after.
+     * @param chatroomId the ID of the new chatroom
+     * @param name the name of the chatroom
+     * @param owner the owner of the chatroom
+     * @return the new chatroom
+     */
+    public Chatroom<T> newChatroom(int chatroomId, String name, UserInfo owner) {
+        final byte[] payload = json.toJson(new Chatroom<T>(name, owner, Collections.emptyList()), chatroomT)
+                .getBytes(StandardCharsets.UTF_8);
+        try {
+            log.append(RecordType.CHATROOM, chatroomId, payload);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store the chatroom " + name, e);
+        }
+        final LoggedMessages<T> messages = new LoggedMessages<>(this, chatroomId);
+        chatrooms.add(messages);
+        return new Chatroom<>(name, owner, messages);
+    }
+
+    /**
+     * Appends a user change to the log, without waiting for it to be durable (see {@link #awaitDurable(long)}).
+     * Must be called under the lock of the {@link ChatInstance}, right after the change.
+     * @param user the changed user
+     * @param lastSeen the last-seen time of the user
+     * @return the address of the record
+     */
+    public long writeUser(UserInfo user, LocalTime lastSeen) {
+        try {
+            return log.write(RecordType.USER, -1,
+                    json.toJson(new UserRecord(user, lastSeen.toNanoOfDay())).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store the user " + user, e);
+        }
+    }
+
+    /**
+     * Appends a message to the log, without waiting for it to be durable.
+     * @param chatroomId the chatroom of the message
+     * @param message the message to store
+     * @return the address of the message
+     */
+    long writeMessage(int chatroomId, Message<T> message) {
+        try {
+            return log.write(RecordType.MESSAGE, chatroomId, json.toJson(message, messageT).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store a message of the chatroom " + chatroomId, e);
+        }
+    }
+
+    /**
+     * Waits for a record to be durable.
+     * @param address the address of the record
+     */
+    public void awaitDurable(long address) {
+        try {
+            log.awaitDurable(address);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store a record on the disk", e);
+        }
+    }
+
+    /**
+     * Creates the hot tail of a chatroom : its recent messages, read without decoding them.
+     * @return the hot tail, null if the messages are always decoded
+     */
+    HotTail<T> newHotTail() {
+        return (hotMessages > 0) ? new HotTail<>(hotMessages, counters) : null;
+    }
+
+    /**
+     * Decodes a message from the mapped segment of the log.
+     * @param address the address of the message
+     * @return the message
+     */
+    Message<T> readMessage(long address) {
+        return json.fromJson(reader(log.read(address)), messageT);
+    }
+
+    private static Reader reader(ByteBuffer payload) {
+        return new InputStreamReader(new ByteBufferInputStream(payload), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the log of the records.
+     * @return the underlying segmented log
+     */
+    public SegmentedLog getLog() {
+        return log;
+    }
+
+    /**
+     * Stops the periodic snapshots, takes a last one and closes the log.
+     */
+    @Override
+    public synchronized void close() {
+        if (snapshotThread != null) {
+            snapshotThread.shutdownNow();
+            snapshotThread = null;
+        }
+        if (snapshotSource != null) {
+            trySnapshot();
+            snapshotSource = null;
+        }
+        log.close();
+    }
+}
@@ -0,0 +1,211 @@
+package chatProject.server.log;
+
+import chatProject.model.user.Status;
+import chatProject.model.user.UserAccount;
+import chatProject.model.user.UserInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary image of the chat, up to an address of the {@link SegmentedLog}.
+ * The records after this address are the write-ahead log to replay on top of it.
+ * <p>
+ * The messages are not copied : only their addresses in the log, delta-encoded as varints.
+ * The file ends with a CRC32 checksum, and is written in a temporary file renamed once complete.
+ */
+final class ChatSnapshot {
+
+    private static final int MAGIC = 0x43485331; // "CHS1"
+
+    /**
+     * The name of the snapshot file in the log directory.
+     */
+    static final String FILE_NAME = "snapshot.bin";
+
+    /**
+     * A chatroom of the snapshot.
+     */
+    static final class ChatroomEntry {
+        final String name;
+        final UserInfo owner;
+        final long[] addresses;
+
+        ChatroomEntry(String name, UserInfo owner, long[] addresses) {
+            this.name = name;
+            this.owner = owner;
+            this.addresses = addresses;
+        }
+    }
+
+    /**
+     * The address of the log covered by this snapshot : the records before it are all included.
+     */
+    final long coveredAddress;
+    /**
+     * The users and their last-seen times.
+     */
+    final Map<UserInfo, LocalTime> users;
+    /**
+     * The chatrooms, by ID.
+     */
+    final List<ChatroomEntry> chatrooms;
+
+    ChatSnapshot(long coveredAddress, Map<UserInfo, LocalTime> users, List<ChatroomEntry> chatrooms) {
+        this.coveredAddress = coveredAddress;
+        this.users = users;
+        this.chatrooms = chatrooms;
+    }
+
+    /**
+     * Writes this snapshot, replacing the previous one only once complete and on the disk.
+     * @param directory the directory of the log
+     * @throws IOException if the file cannot be written
+     */
+    void write(File directory) throws IOException {
+        final File temporary = new File(directory, FILE_NAME + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary)) {
+            final DataOutputStream output = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc));
+            output.writeInt(MAGIC);
+            output.writeLong(coveredAddress);
+
+            output.writeInt(users.size());
+            for (Map.Entry<UserInfo, LocalTime> user : users.entrySet()) {
+                writeUser(output, user.getKey());
+                output.writeLong(user.getValue().toNanoOfDay());
+            }
+
+            output.writeInt(chatrooms.size());
+            for (ChatroomEntry chatroom : chatrooms) {
+                writeNullableString(output, chatroom.name);
+                output.writeBoolean(chatroom.owner != null);
+                if (chatroom.owner != null) {
+                    writeUser(output, chatroom.owner);
+                }
+                output.writeInt(chatroom.addresses.length);
+                long previous = 0;
+                for (long address : chatroom.addresses) {
+                    writeVarLong(output, address - previous);
+                    previous = address;
+                }
+            }
+            // the checksum of everything before it
+            output.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temporary.toPath(), new File(directory, FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot of a log directory.
+     * @param directory the directory of the log
+     * @return the snapshot, null if there is none
+     * @throws IOException if the snapshot cannot be read or is corrupted
+     */
+    static ChatSnapshot read(File directory) throws IOException {
+        final File file = new File(directory, FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        final CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024), crc))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot : " + file);
+            }
+            final long coveredAddress = input.readLong();
+
+            final int userCount = input.readInt();
+            final Map<UserInfo, LocalTime> users = new LinkedHashMap<>();
+            for (int i = 0; i < userCount; i++) {
+                final UserInfo user = readUser(input);
+                users.put(user, LocalTime.ofNanoOfDay(input.readLong()));
+            }
+
+            final int chatroomCount = input.readInt();
+            final List<ChatroomEntry> chatrooms = new ArrayList<>(chatroomCount);
+            for (int i = 0; i < chatroomCount; i++) {
+                final String name = readNullableString(input);
+                final UserInfo owner = input.readBoolean() ? readUser(input) : null;
+                final long[] addresses = new long[input.readInt()];
+                long previous = 0;
+                for (int m = 0; m < addresses.length; m++) {
+                    previous += readVarLong(input);
+                    addresses[m] = previous;
+                }
+                chatrooms.add(new ChatroomEntry(name, owner, addresses));
+            }
+
+            final long expected = crc.getValue();
+            if (new DataInputStream(input).readLong() != expected) {
+                throw new IOException("Corrupted snapshot : " + file);
+            }
+            return new ChatSnapshot(coveredAddress, users, chatrooms);
+        } catch (EOFException e) {
+            throw new IOException("Truncated snapshot : " + file, e);
+        }
+    }
+
+    private static void writeUser(DataOutputStream output, UserInfo user) throws IOException {
+        output.writeInt(user.getAccount().getId());
+        writeNullableString(output, user.getAccount().getUsername());
+        output.writeByte(user.getCurrentStatus().ordinal());
+    }
+
+    private static UserInfo readUser(DataInputStream input) throws IOException {
+        final UserAccount account = new UserAccount(input.readInt(), readNullableString(input));
+        return new UserInfo(account, Status.values()[input.readByte()]);
+    }
+
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in the snapshot");
+    }
+}
@@ -0,0 +1,96 @@
+package chatProject.server.log;
+
+import java.io.File;
+
+/**
+ * The configuration of the {@link SegmentedLog} of the server.
+ * Every value can be overridden at startup with a system property (e.g. {@code -Dchat.log.dir=data/log}).
+ * The log is disabled (nothing is persisted) if no directory is set.
+ */
+public class LogConfig {
+
+    /**
+     * The directory of the segment files, null to disable the log.
+     */
+    private final File directory;
+    /**
+     * The size of every segment file.
+     */
+    private final int segmentBytes;
+    /**
+     * The durability window : the maximum time between 2 fsyncs, shared by all the appends done meanwhile.
+     * 0 to fsync every append.
+     */
+    private final long fsyncIntervalMillis;
+    /**
+     * True if an append waits for its record to be on disk.
+     * If false, a crash may lose the records of the last durability window.
+     */
+    private final boolean syncWrites;
+    /**
+     * The time between 2 snapshots of the chat, 0 to only take one when the server is closed.
+     */
+    private final long snapshotIntervalSeconds;
+
+    public LogConfig(File directory, int segmentBytes, long fsyncIntervalMillis, boolean syncWrites) {
+        this(directory, segmentBytes, fsyncIntervalMillis, syncWrites, 0);
+    }
+
+    public LogConfig(File directory, int segmentBytes, long fsyncIntervalMillis, boolean syncWrites,
+                     long snapshotIntervalSeconds) {
+        if (segmentBytes < 1024) {
+            throw new IllegalArgumentException("The segments must be at least 1 KB, got " + segmentBytes);
+        }
+        if (fsyncIntervalMillis < 0) {
+            throw new IllegalArgumentException("The fsync interval cannot be negative, got " + fsyncIntervalMillis);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.syncWrites = syncWrites;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * Gets the default configuration, overridden by the system properties if any.
+     * @return the configuration to use
+     */
+    public static LogConfig fromSystemProperties() {
+        final String directory = System.getProperty("chat.log.dir");
+        return new LogConfig(
+                (directory == null) ? null : new File(directory),
+                Integer.getInteger("chat.log.segmentBytes", 64 * 1024 * 1024),
+                Long.getLong("chat.log.fsyncIntervalMillis", 5),
+                Boolean.parseBoolean(System.getProperty("chat.log.syncWrites", "true")),
+                Long.getLong("chat.log.snapshotIntervalSeconds", 300)
+        );
+    }
+
+    /**
+     * Checks if the messages should be persisted.
+     * @return true if a directory is set
+     */
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+}
@@ -0,0 +1,148 @@
+package chatProject.server.log;
+
+import chatProject.model.messages.DurableMessageList;
+import chatProject.model.messages.Message;
+import chatProject.server.history.HotTail;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The messages of a chatroom stored in the {@link ChatLog}.
+ * Only the addresses of the records and a bounded {@link HotTail} of the recent messages are kept on heap :
+ * an older {@link Message} is decoded from the mapped segment each time it is read, and can be garbage collected
+ * right after (e.g. once serialized for a client).
+ * Adding a message writes it through to the log.
+ * @param <T> the type of messages to use
+ */
+class LoggedMessages<T> extends AbstractList<Message<T>> implements DurableMessageList<T>, RandomAccess {
+
+    private final ChatLog<T> log;
+    private final int chatroomId;
+
+    /**
+     * The recent messages, read without decoding them. Null if every message is decoded.
+     */
+    private final HotTail<T> hot;
+
+    /**
+     * The addresses of the messages in the log, in the order of the chatroom.
+     * Replaced when it grows : always read after {@link #size}.
+     */
+    private long[] addresses = new long[16];
+
+    /**
+     * The number of messages, written after the addresses so that the readers see them.
+     */
+    private volatile int size = 0;
+
+    LoggedMessages(ChatLog<T> log, int chatroomId) {
+        this.log = log;
+        this.chatroomId = chatroomId;
+        this.hot = log.newHotTail();
+    }
+
+    @Override
+    public Message<T> get(int index) {
+        final int currentSize = size;
+        if (index < 0 || index >= currentSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + currentSize);
+        }
+        if (hot != null) {
+            final Message<T> recent = hot.get(index);
+            if (recent != null) {
+                return recent;
+            }
+        }
+        return log.readMessage(addresses[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a message to the log, then waits for it to be durable.
+     * The messages of the chatroom are written in order, but the wait for the disk is shared with the other writers.
+     * @param message the new message
+     * @return true
+     */
+    @Override
+    public boolean add(Message<T> message) {
+        awaitDurable(append(message));
+        return true;
+    }
+
+    /**
+     * Appends a message to the log, without waiting for it to be durable.
+     * @param message the new message
+     * @return the address of the message in the log
+     */
+    @Override
+    public synchronized long append(Message<T> message) {
+        final long address = log.writeMessage(chatroomId, message);
+        if (hot != null) {
+            // before the size : the readers of the new message find it in memory
+            hot.put(size, message);
+        }
+        addAddress(address);
+        return address;
+    }
+
+    /**
+     * Waits for a message to be durable.
+     * @param address the address of the message in the log
+     */
+    @Override
+    public void awaitDurable(long address) {
+        log.awaitDurable(address);
+    }
+
+    /**
+     * Gets the addresses of the messages before an address of the log (for a snapshot).
+     * Only holds the lock of the chatroom to read its size : the writers are not blocked by the copy.
+     * @param end the address of the log to stop at
+     * @return the addresses of the messages before the end address
+     */
+    long[] getAddressesBefore(long end) {
+        final long[] current;
+        final int currentSize;
+        synchronized (this) {
+            // the messages written before the end are all added
+            current = addresses;
+            currentSize = size;
+        }
+        // the addresses are in the order of the log : the entries before the size never change
+        int count = Arrays.binarySearch(current, 0, currentSize, end);
+        if (count < 0) {
+            count = -count - 1;
+        }
+        return Arrays.copyOf(current, count);
+    }
+
+    /**
+     * Adds the addresses of messages already in the log.
+     * @param restored the addresses of the messages, in the order of the log
+     */
+    synchronized void addAddresses(long[] restored) {
+        if (size + restored.length > addresses.length) {
+            addresses = Arrays.copyOf(addresses, Math.max(size + restored.length, addresses.length * 2));
+        }
+        System.arraycopy(restored, 0, addresses, size, restored.length);
+        size = size + restored.length;
+    }
+
+    /**
+     * Adds the address of a message already in the log.
+     * @param address the address of the message
+     */
+    synchronized void addAddress(long address) {
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, addresses.length * 2);
+        }
+        addresses[size] = address;
+        size = size + 1;
+    }
+}
@@ -0,0 +1,19 @@
+package chatProject.server.log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handles the records read from a {@link SegmentedLog}.
+ */
+@FunctionalInterface
+public interface RecordHandler {
+
+    /**
+     * Handles a record.
+     * @param address the address of the record in the log
+     * @param type the type of the record
+     * @param chatroomId the chatroom of the record
+     * @param payload a read-only view of the payload, only valid while the log is open
+     */
+    void onRecord(long address, RecordType type, int chatroomId, ByteBuffer payload);
+}
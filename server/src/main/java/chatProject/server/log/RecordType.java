@@ -0,0 +1,47 @@
+package chatProject.server.log;
+
+/**
+ * The types of the records stored in the {@link SegmentedLog}.
+ */
+public enum RecordType {
+
+    /**
+     * A new chatroom : its name and its owner.
+     */
+    CHATROOM(1),
+    /**
+     * A new message in a chatroom.
+     */
+    MESSAGE(2),
+    /**
+     * A change of a user : its status and its last-seen time.
+     */
+    USER(3);
+
+    /**
+     * The code of the type in the records.
+     */
+    private final byte code;
+
+    RecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the type of a record from its code.
+     * @param code the code stored in the record
+     * @return the type, null if unknown
+     */
+    public static RecordType fromCode(byte code) {
+        for (RecordType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+package chatProject.server.log;
+
+/**
+ * What was restored from the {@link ChatLog} at startup, and how long it took.
+ */
+public class RecoveryStats {
+
+    private final boolean fromSnapshot;
+    private final int chatrooms;
+    private final int users;
+    private final long messages;
+    private final long replayedRecords;
+    private final long elapsedMillis;
+
+    public RecoveryStats(boolean fromSnapshot, int chatrooms, int users, long messages,
+                         long replayedRecords, long elapsedMillis) {
+        this.fromSnapshot = fromSnapshot;
+        this.chatrooms = chatrooms;
+        this.users = users;
+        this.messages = messages;
+        this.replayedRecords = replayedRecords;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Checks if a snapshot was loaded before replaying the log.
+     * @return true if the recovery started from a snapshot
+     */
+    public boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    public int getChatrooms() {
+        return chatrooms;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * Gets the number of records of the log replayed after the snapshot (all of them without snapshot).
+     * @return the number of replayed records
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Recovered " + chatrooms + " chatrooms, " + users + " users and " + messages + " messages in "
+                + elapsedMillis + " ms (" + (fromSnapshot ? "snapshot + " : "no snapshot, ")
+                + replayedRecords + " records replayed)";
+    }
+}
@@ -0,0 +1,219 @@
+package chatProject.server.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed-size file of the {@link SegmentedLog}.
+ * The records are appended with the file channel and read through a read-only mapping of the whole file,
+ * so the reads are served by the page cache without copies nor system calls.
+ * <p>
+ * A record is : its length (4 bytes, the rest of the record after the checksum), the CRC32 checksum (4 bytes),
+ * the code of the {@link RecordType} (1 byte), the chatroom ID (4 bytes) and the payload.
+ * The file is preallocated with zeros : a length of 0 marks the end of the records.
+ */
+final class Segment implements AutoCloseable {
+
+    /**
+     * The length of the fields before the payload.
+     */
+    static final int HEADER_BYTES = 4 + 4 + 1 + 4;
+
+    private final int index;
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+
+    /**
+     * The end of the records : where the next one is written.
+     * Only changed by the writer of the log.
+     */
+    private volatile int size;
+
+    private Segment(int index, File file, int capacity) throws IOException {
+        this.index = index;
+        this.file = file;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < capacity) {
+            // preallocate the segment : a zero length ends the records
+            channel.write(ByteBuffer.wrap(new byte[1]), capacity - 1);
+        }
+        this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    /**
+     * Opens a segment file, creating it if needed.
+     * The end of the records is only searched in the active segment (the last one) :
+     * the bytes after its last valid record (e.g. a record partially written before a crash) are erased.
+     * The previous segments are full, they are only read.
+     * @param directory the directory of the log
+     * @param index the index of the segment in the log
+     * @param capacity the size of the segment
+     * @param active true to open the segment receiving the new records
+     * @return the opened segment
+     * @throws IOException if the file cannot be opened
+     */
+    static Segment open(File directory, int index, int capacity, boolean active) throws IOException {
+        final Segment segment = new Segment(index, fileName(directory, index), capacity);
+        if (!active) {
+            segment.size = capacity;
+            return segment;
+        }
+        segment.size = segment.scan(0, null);
+        if (segment.size + 4 <= capacity && segment.mapped.getInt(segment.size) != 0) {
+            // a torn record : erase it so that it is not mistaken for a record later
+            segment.channel.write(ByteBuffer.allocate(capacity - segment.size), segment.size);
+            segment.channel.force(false);
+        }
+        return segment;
+    }
+
+    /**
+     * Gets the file of a segment.
+     * @param directory the directory of the log
+     * @param index the index of the segment in the log
+     * @return the segment file
+     */
+    static File fileName(File directory, int index) {
+        return new File(directory, String.format("%010d.log", index));
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Checks if a record fits in the rest of this segment.
+     * @param payloadLength the length of the payload of the record
+     * @return true if it fits
+     */
+    boolean fits(int payloadLength) {
+        return size + HEADER_BYTES + payloadLength <= capacity;
+    }
+
+    /**
+     * Appends a record at the end of this segment. Only called by the writer of the log.
+     * The record is not durable until the segment is forced.
+     * @param type the type of the record
+     * @param chatroomId the chatroom of the record
+     * @param payload the payload of the record
+     * @return the position of the record in the segment
+     * @throws IOException if the file cannot be written
+     */
+    int append(RecordType type, int chatroomId, byte[] payload) throws IOException {
+        final int position = size;
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(HEADER_BYTES - 8 + payload.length);
+        record.putInt(0); // checksum, computed below
+        record.put(type.getCode());
+        record.putInt(chatroomId);
+        record.put(payload);
+
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+
+        record.flip();
+        int offset = position;
+        while (record.hasRemaining()) {
+            offset += channel.write(record, offset);
+        }
+        size = position + record.capacity();
+        return position;
+    }
+
+    /**
+     * Gets the type of a record.
+     * @param position the position of the record
+     * @return the type of the record
+     */
+    RecordType getType(int position) {
+        return RecordType.fromCode(mapped.get(position + 8));
+    }
+
+    /**
+     * Gets the chatroom of a record.
+     * @param position the position of the record
+     * @return the chatroom ID stored in the record
+     */
+    int getChatroomId(int position) {
+        return mapped.getInt(position + 9);
+    }
+
+    /**
+     * Gets the payload of a record, without copying it.
+     * @param position the position of the record
+     * @return a read-only view of the payload in the mapped file
+     */
+    ByteBuffer getPayload(int position) {
+        final int length = mapped.getInt(position) - (HEADER_BYTES - 8);
+        final ByteBuffer payload = mapped.duplicate();
+        payload.limit(position + HEADER_BYTES + length).position(position + HEADER_BYTES);
+        return payload.slice();
+    }
+
+    /**
+     * Reads the valid records of this segment, stopping at the first invalid one.
+     * @param from the position of the first record to read
+     * @param handler called for every record, may be null
+     * @return the end of the valid records
+     */
+    int scan(int from, RecordHandler handler) {
+        final CRC32 crc = new CRC32();
+        byte[] bytes = new byte[256];
+        int position = from;
+        while (position + HEADER_BYTES <= capacity) {
+            final int length = mapped.getInt(position);
+            if (length < HEADER_BYTES - 8 || position + 8 + length > capacity) {
+                break;
+            }
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            final ByteBuffer record = mapped.duplicate();
+            record.position(position + 8);
+            record.get(bytes, 0, length);
+            crc.reset();
+            crc.update(bytes, 0, length);
+            final RecordType type = getType(position);
+            if ((int) crc.getValue() != mapped.getInt(position + 4) || type == null) {
+                break;
+            }
+            if (handler != null) {
+                handler.onRecord(SegmentedLog.address(index, position), type, getChatroomId(position), getPayload(position));
+            }
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    /**
+     * Writes the appended records on the disk.
+     * @throws IOException if the file cannot be written
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.getName() + " (" + size + '/' + capacity + " bytes)";
+    }
+}
@@ -0,0 +1,332 @@
+package chatProject.server.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A durable append-only log of records, stored in fixed-size {@link Segment} files.
+ * <p>
+ * The records are identified by their address : the index of their segment (high 32 bits)
+ * and their position in the segment (low 32 bits). The addresses only grow, in the order of the appends.
+ * <p>
+ * Durability is a group commit : a flusher thread forces the active segment at most once per durability window
+ * for all the records appended meanwhile, and the writers waiting for their records are released together.
+ * With a window of 0, every writer forces the segment itself.
+ */
+public class SegmentedLog implements AutoCloseable {
+
+    private final LogConfig config;
+
+    /**
+     * All the segments, by index. Replaced (never modified) when a segment is added.
+     */
+    private volatile Segment[] segments;
+
+    /**
+     * The segment receiving the new records. Guarded by this.
+     */
+    private Segment active;
+
+    /**
+     * The lock of the durability : the writers waiting for their records wait on it.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * The address after the last record on the disk. Guarded by {@link #syncLock}.
+     */
+    private long durable;
+
+    private final Thread flusher;
+
+    /**
+     * The number of fsyncs done.
+     */
+    private final AtomicLong syncCount = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    private SegmentedLog(LogConfig config, Segment[] segments) {
+        this.config = config;
+        this.segments = segments;
+        this.active = segments[segments.length - 1];
+        this.durable = address(active.getIndex(), active.getSize());
+        if (config.getFsyncIntervalMillis() > 0) {
+            this.flusher = new Thread(this::flushLoop, "log-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens the log in the directory of the configuration, creating it if needed.
+     * The existing segments are checked : the log continues after the last valid record.
+     * @param config the configuration of the log
+     * @return the opened log
+     * @throws IOException if the segments cannot be opened
+     */
+    public static SegmentedLog open(LogConfig config) throws IOException {
+        final File directory = config.getDirectory();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the log directory " + directory);
+        }
+        int count = 0;
+        while (Segment.fileName(directory, count).exists()) {
+            count++;
+        }
+        final Segment[] segments = new Segment[Math.max(count, 1)];
+        for (int index = 0; index < segments.length; index++) {
+            segments[index] = Segment.open(directory, index, config.getSegmentBytes(), index == segments.length - 1);
+        }
+        return new SegmentedLog(config, segments);
+    }
+
+    /**
+     * Computes the address of a record.
+     * @param segmentIndex the index of the segment of the record
+     * @param position the position of the record in the segment
+     * @return the address of the record
+     */
+    static long address(int segmentIndex, int position) {
+        return ((long) segmentIndex << 32) | position;
+    }
+
+    private Segment segment(long address) {
+        return segments[(int) (address >>> 32)];
+    }
+
+    /**
+     * Appends a record and waits for it to be durable, if the configuration requires it.
+     * @param type the type of the record
+     * @param chatroomId the chatroom of the record
+     * @param payload the payload of the record
+     * @return the address of the record
+     * @throws IOException if the record cannot be written
+     */
+    public long append(RecordType type, int chatroomId, byte[] payload) throws IOException {
+        final long address = write(type, chatroomId, payload);
+        awaitDurable(address);
+        return address;
+    }
+
+    /**
+     * Appends a record without waiting for it to be durable : see {@link #awaitDurable(long)}.
+     * Lets a caller keep its own lock to order the records without holding it during the fsync.
+     * @param type the type of the record
+     * @param chatroomId the chatroom of the record
+     * @param payload the payload of the record
+     * @return the address of the record
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized long write(RecordType type, int chatroomId, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("The log is closed");
+        }
+        if (!active.fits(payload.length)) {
+            if (active.getSize() == 0) {
+                throw new IllegalArgumentException("A record of " + payload.length + " bytes cannot fit in a segment");
+            }
+            roll();
+        }
+        return address(active.getIndex(), active.append(type, chatroomId, payload));
+    }
+
+    /**
+     * Starts a new segment. The previous one is forced : all its records are durable.
+     * @throws IOException if the segment cannot be created
+     */
+    private void roll() throws IOException {
+        force(active);
+        markDurable(address(active.getIndex(), active.getSize()));
+
+        final Segment next = Segment.open(config.getDirectory(), active.getIndex() + 1, config.getSegmentBytes(), true);
+        final Segment[] extended = Arrays.copyOf(segments, segments.length + 1);
+        extended[next.getIndex()] = next;
+        segments = extended;
+        active = next;
+    }
+
+    /**
+     * Waits for a record to be on the disk, if the configuration requires it.
+     * @param address the address of the record
+     * @throws IOException if the segment cannot be forced
+     */
+    public void awaitDurable(long address) throws IOException {
+        if (!config.isSyncWrites()) {
+            return;
+        }
+        if (flusher == null) {
+            // no durability window : force the segment now
+            final Segment segment = segment(address);
+            force(segment);
+            markDurable(address(segment.getIndex(), segment.getSize()));
+            return;
+        }
+        synchronized (syncLock) {
+            while (durable <= address && !closed) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void markDurable(long end) {
+        synchronized (syncLock) {
+            if (end > durable) {
+                durable = end;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces the records appended since the last fsync, once per durability window.
+     */
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(config.getFsyncIntervalMillis());
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Unable to flush the log : " + e);
+            }
+        }
+    }
+
+    /**
+     * Forces the records appended so far.
+     * @throws IOException if the segment cannot be forced
+     */
+    public void flush() throws IOException {
+        final Segment segment;
+        final long end;
+        synchronized (this) {
+            segment = active;
+            end = address(segment.getIndex(), segment.getSize());
+        }
+        synchronized (syncLock) {
+            if (end <= durable) {
+                return;
+            }
+        }
+        force(segment);
+        markDurable(end);
+    }
+
+    private void force(Segment segment) throws IOException {
+        segment.force();
+        syncCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of fsyncs done since the log was opened.
+     * Far lower than the number of appends when the group commit shares them.
+     * @return the number of fsyncs
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Gets the type of a record.
+     * @param address the address of the record
+     * @return the type of the record
+     */
+    public RecordType getType(long address) {
+        return segment(address).getType((int) address);
+    }
+
+    /**
+     * Gets the payload of a record, read from the mapped segment without copying it.
+     * @param address the address of the record
+     * @return a read-only view of the payload, only valid while the log is open
+     */
+    public ByteBuffer read(long address) {
+        return segment(address).getPayload((int) address);
+    }
+
+    /**
+     * Reads all the records of the log, in the order of the appends.
+     * @param handler called for every record
+     */
+    public void forEach(RecordHandler handler) {
+        for (int index = 0; index < segments.length; index++) {
+            scanSegment(index, 0, handler);
+        }
+    }
+
+    /**
+     * Reads the records of a segment from an address, in the order of the appends.
+     * The segments are independent : they can be read in parallel.
+     * @param segmentIndex the index of the segment to read
+     * @param from the address of the first record to read : the segments before it are skipped,
+     *             the segments after it are read from their start
+     * @param handler called for every record
+     */
+    public void scanSegment(int segmentIndex, long from, RecordHandler handler) {
+        final int fromSegment = (int) (from >>> 32);
+        if (segmentIndex < fromSegment) {
+            return;
+        }
+        segments[segmentIndex].scan((segmentIndex == fromSegment) ? (int) from : 0, handler);
+    }
+
+    /**
+     * Gets the number of segment files.
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Gets the address after the last record : all the records appended so far are before it.
+     * @return the address of the next record in the active segment
+     */
+    public synchronized long getEndAddress() {
+        return address(active.getIndex(), active.getSize());
+    }
+
+    /**
+     * Forces the last records and closes the segments.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        try {
+            active.force();
+        } catch (IOException e) {
+            System.err.println("Unable to flush the log : " + e);
+        }
+        synchronized (syncLock) {
+            // release the waiting writers
+            syncLock.notifyAll();
+        }
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks
+
+import chatProject.model.messages.Message
+import chatProject.server.CompressingOutputStream
+import chatProject.server.CompressionConfig
+import chatProject.server.ContentEncoding
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.lang.management.ManagementFactory
+import java.nio.charset.StandardCharsets
+
+class CompressionBenchmark extends Specification {
+
+    static final int RESPONSES = 200
+
+    static final def config = CompressionConfig.fromSystemProperties()
+
+    @Unroll
+    def "A page of #messages messages should be sent compressed only if it is larger than the threshold"() {
+        given: "The JSON of a page of messages"
+        def json = new Gson()
+        def page = (0..<messages).collect {
+            new Message<String>(it, it % 20 + 1, "Message number " + it + " of the chatroom", 1_700_000_000_000L + it * 1000L)
+        }
+        def body = json.toJson(page).getBytes(StandardCharsets.UTF_8)
+
+        when: "The page is sent with each encoding, after a warm up"
+        def results = ContentEncoding.values().collectEntries { encoding ->
+            2.times { send(body, encoding) }
+            [(encoding): send(body, encoding)]
+        }
+        def identity = results[ContentEncoding.IDENTITY]
+        results.each { encoding, result ->
+            println String.format("%6d messages (%,9d bytes) : %-8s %,9d bytes on the wire (%5.1f %%), %8.1f us CPU/response",
+                    messages, body.length, encoding.token, result.bytes, 100.0 * result.bytes / body.length, result.cpuNanos / 1000)
+        }
+
+        then: "A page under the threshold should be sent as it is"
+        body.length > config.thresholdBytes || results.values().every { it.bytes == body.length }
+
+        and: "A larger page should be much smaller compressed"
+        body.length <= config.thresholdBytes || results[ContentEncoding.GZIP].bytes * 3 < identity.bytes
+        body.length <= config.thresholdBytes || results[ContentEncoding.DEFLATE].bytes * 3 < identity.bytes
+
+        where:
+        messages << [1, 10, 100, 1000, 10_000]
+    }
+
+    /**
+     * Sends a body in memory, and measures the bytes written and the CPU used per response.
+     */
+    private static Map send(byte[] body, ContentEncoding encoding) {
+        def threads = ManagementFactory.threadMXBean
+        def sink = new ByteArrayOutputStream(body.length + 64)
+        def start = threads.currentThreadCpuTime
+        RESPONSES.times {
+            sink.reset()
+            def out = new CompressingOutputStream(sink, encoding, config, {})
+            // written in chunks, as by the JSON writer of the routes
+            for (int offset = 0; offset < body.length; offset += 8192) {
+                out.write(body, offset, Math.min(8192, body.length - offset))
+            }
+            out.close()
+        }
+        [bytes: sink.size(), cpuNanos: (threads.currentThreadCpuTime - start) / RESPONSES]
+    }
+}
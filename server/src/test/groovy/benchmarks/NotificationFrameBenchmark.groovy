@@ -0,0 +1,61 @@
+package benchmarks
+
+import chatProject.model.messages.Message
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.ClientNotifier
+import chatProject.server.NotificationFrame
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class NotificationFrameBenchmark extends Specification {
+
+    static final int BROADCASTS = 200
+
+    @Unroll
+    def "Broadcasting a frame encoded once to #clients clients should be faster than encoding it for every client"() {
+        given: "Clients writing their notifications in memory"
+        def json = new Gson()
+        def sinks = (1..clients).collect { new ByteArrayOutputStream(1 << 16) }
+        def notifiers = sinks.collect { new ClientNotifier<String>(it, null, json) }
+
+        and: "A message to broadcast"
+        def sender = new UserInfo(new UserAccount(1, "user"), Status.ACTIVE)
+        def message = new Message<String>(42, sender, "Hello everybody, " * 10)
+
+        and: "The 2 ways to broadcast it"
+        def perClient = { notifiers.each { it.notifyNewMessage(1, message) } }
+        def shared = {
+            def frame = NotificationFrame.newMessage(json, 1, message)
+            notifiers.each { it.send(frame) }
+        }
+
+        when: "Both are measured after a warm up"
+        2.times {
+            measure(perClient, sinks)
+            measure(shared, sinks)
+        }
+        def perClientNanos = measure(perClient, sinks)
+        def sharedNanos = measure(shared, sinks)
+        println String.format("%5d clients : per-client encoding %8.1f us/broadcast, shared frame %8.1f us/broadcast (x%.1f)",
+                clients, perClientNanos / 1000 / BROADCASTS, sharedNanos / 1000 / BROADCASTS, perClientNanos / sharedNanos)
+
+        then: "The shared frame should be faster"
+        sharedNanos < perClientNanos
+
+        where:
+        clients << [10, 100, 1000]
+    }
+
+    private static double measure(Closure broadcast, List<ByteArrayOutputStream> sinks) {
+        sinks*.reset()
+        def start = System.nanoTime()
+        BROADCASTS.times {
+            broadcast()
+            sinks*.reset()
+        }
+        System.nanoTime() - start
+    }
+}
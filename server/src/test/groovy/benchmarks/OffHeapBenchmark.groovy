@@ -0,0 +1,82 @@
+package benchmarks
+
+import chatProject.model.messages.Chatroom
+import chatProject.model.messages.Message
+import chatProject.model.messages.MessageList
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.history.HistoryCounters
+import chatProject.server.history.HotTail
+import chatProject.server.history.OffHeapArena
+import chatProject.server.history.TieredMessages
+import spock.lang.Specification
+
+import java.lang.management.GarbageCollectorMXBean
+import java.lang.management.ManagementFactory
+
+class OffHeapBenchmark extends Specification {
+
+    static final int MESSAGES = 1_000_000
+    static final int HOT_MESSAGES = 1000
+    static final int SENDERS = 100
+
+    def "Messages in off-heap arenas should use a fraction of the heap of messages on the heap"() {
+        given: "The heap used without messages"
+        def senders = (0..<SENDERS).collect { new UserInfo(new UserAccount(it, "user" + it), Status.ACTIVE) }
+        def baseline = usedHeap()
+
+        when: "1 000 000 messages are kept on the heap"
+        def gcBefore = oldGenMillis()
+        def onHeap = new Chatroom<String>("heap", null, new MessageList<>())
+        MESSAGES.times { onHeap.addMessage(senders[it % SENDERS], "Message number " + it) }
+        def heapBytes = (usedHeap() - baseline) / MESSAGES
+        def heapGcMillis = oldGenMillis() - gcBefore
+        def heapRead = onHeap.currentMessages.get(MESSAGES / 2 as int).message
+        onHeap = null
+
+        and: "The same messages are kept in off-heap arenas, behind a hot tail"
+        baseline = usedHeap()
+        gcBefore = oldGenMillis()
+        def arena = new OffHeapArena<String>(16 * 1024 * 1024)
+        def offHeap = new Chatroom<String>("off-heap", null,
+                new TieredMessages<>(arena, 0, new HotTail<>(HOT_MESSAGES, new HistoryCounters())))
+        MESSAGES.times { offHeap.addMessage(senders[it % SENDERS], "Message number " + it) }
+        def offHeapBytes = (usedHeap() - baseline) / MESSAGES
+        def offHeapGcMillis = oldGenMillis() - gcBefore
+        def offHeapRead = offHeap.currentMessages.get(MESSAGES / 2 as int).message
+
+        println String.format("%,d messages : on heap %.1f bytes/message (old gen GC %d ms), " +
+                "off-heap %.1f bytes/message + %,d bytes of arenas (old gen GC %d ms)",
+                MESSAGES, heapBytes, heapGcMillis, offHeapBytes, arena.reservedBytes, offHeapGcMillis)
+
+        then: "The messages should be read back the same"
+        heapRead == offHeapRead
+
+        and: "The off-heap messages should use much less heap"
+        offHeapBytes * 4 < heapBytes
+
+        cleanup:
+        arena?.close()
+    }
+
+    /**
+     * Gets the heap used by live objects, after a full collection.
+     */
+    private static long usedHeap() {
+        3.times {
+            System.gc()
+            Thread.sleep(100)
+        }
+        ManagementFactory.memoryMXBean.heapMemoryUsage.used
+    }
+
+    /**
+     * Gets the time spent so far by the collectors of the old generation.
+     */
+    private static long oldGenMillis() {
+        ManagementFactory.garbageCollectorMXBeans
+                .findAll { GarbageCollectorMXBean gc -> gc.name =~ /Old|MarkSweep|Tenured|Major|ZGC/ }
+                .sum(0L) { GarbageCollectorMXBean gc -> gc.collectionTime } as long
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.messages.Message
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.log.ChatLog
+import chatProject.server.log.LogConfig
+import chatProject.server.log.RecordType
+import com.google.gson.Gson
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class RecoveryBenchmark extends Specification {
+
+    /**
+     * The number of messages in the log, e.g. {@code -Dchat.benchmark.recoveryMessages=1000000} for a quicker run.
+     */
+    static final int MESSAGES = Integer.getInteger("chat.benchmark.recoveryMessages", 10_000_000)
+    static final int CHATROOMS = 100
+
+    File directory = Files.createTempDirectory("chat-recovery").toFile()
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def "Recovering from a snapshot should only replay the records after it"() {
+        given: "A log of messages spread over chatrooms"
+        def json = new Gson()
+        def config = new LogConfig(directory, 64 * 1024 * 1024, 5, false)
+        def chatLog = ChatLog.<String> open(config, json)
+        def chat = ChatInstance.<String> initEmptyChat()
+        def owner = new UserInfo(new UserAccount(1, "owner"), Status.ACTIVE)
+        (0..<CHATROOMS).each { chat.addChatroom(chatLog.newChatroom(it, "chatroom " + it, owner)) }
+        def payload = json.toJson(new Message<String>(0, owner, "Hello everybody, this is a benchmark message")).bytes
+        MESSAGES.times { chatLog.log.write(RecordType.MESSAGE, it % CHATROOMS, payload) }
+        chatLog.log.flush()
+
+        when: "The whole log is replayed"
+        def full = recover(config, json)
+
+        and: "A snapshot is taken, 1% more messages are written and the server crashes"
+        def snapshotted = ChatLog.<String> open(config, json)
+        def restored = ChatInstance.<String> initEmptyChat()
+        snapshotted.recover(restored)
+        def snapshotStart = System.nanoTime()
+        snapshotted.snapshot(restored)
+        def snapshotMillis = (System.nanoTime() - snapshotStart) / 1_000_000
+        (MESSAGES / 100).times { snapshotted.log.write(RecordType.MESSAGE, it % CHATROOMS, payload) }
+        snapshotted.log.close()
+
+        and: "The snapshot and the records after it are replayed"
+        def fromSnapshot = recover(config, json)
+
+        then: "Every message should be restored both ways"
+        full.messages == MESSAGES
+        fromSnapshot.messages == MESSAGES + MESSAGES / 100
+        println String.format("%,d messages : full replay %,d ms, snapshot (written in %,d ms) + tail %,d ms",
+                MESSAGES, full.elapsedMillis, snapshotMillis as long, fromSnapshot.elapsedMillis)
+
+        and: "The snapshot should make the recovery faster"
+        fromSnapshot.elapsedMillis <= full.elapsedMillis
+    }
+
+    private static recover(LogConfig config, Gson json) {
+        def chatLog = ChatLog.<String> open(config, json)
+        def stats = chatLog.recover(ChatInstance.<String> initEmptyChat())
+        println stats
+        // no snapshot on close : keep the log as it is for the next run
+        chatLog.log.close()
+        stats
+    }
+}
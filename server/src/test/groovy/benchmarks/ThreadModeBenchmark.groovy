@@ -0,0 +1,103 @@
+package benchmarks
+
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.ChatServer
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
+
+import java.nio.ByteBuffer
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.SocketChannel
+
+/**
+ * Compares the platform and virtual thread modes with the blocking notification socket (one writer thread per client).
+ * Run it once per mode :
+ * {@code gradlew :server:benchmark -Pthreads=platform} and {@code gradlew :server:benchmark -Pthreads=virtual}
+ * (virtual threads need a JDK 21 or later, see {@code -PruntimeJavaHome}).
+ */
+class ThreadModeBenchmark extends Specification {
+
+    static final int ROUNDS = 50
+
+    @Unroll
+    def "Notifying #clients clients of the blocking socket should report the memory per connection and the latency"() {
+        given: "A server with the blocking notification socket, in the thread mode selected at startup"
+        System.setProperty("chat.notifications.blocking", "true")
+        def port = new ServerSocket(0).withCloseable { it.localPort }
+        def server = ChatServer.initEmptyChat(port, new Gson())
+        def memoryBefore = residentMemoryKb()
+
+        and: "Clients read by a single selector, so that the clients do not need threads"
+        def selector = Selector.open()
+        def channels = (1..clients).collect {
+            def channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port))
+            channel.configureBlocking(false)
+            channel.register(selector, SelectionKey.OP_READ)
+            channel
+        }
+        new PollingConditions(timeout: 30).eventually {
+            assert server.notifierStats.size() == clients
+        }
+        def memoryPerClient = (residentMemoryKb() - memoryBefore) / clients
+
+        when: "User changes are broadcast and timed until every client reads them"
+        def latencies = []
+        def buffer = ByteBuffer.allocate(64 * 1024)
+        ROUNDS.times { round ->
+            def start = System.nanoTime()
+            server.notifyUserChange(new UserInfo(new UserAccount(round, "user" + round), Status.ACTIVE))
+            def pending = clients
+            while (pending > 0) {
+                selector.select(1000)
+                def keys = selector.selectedKeys()
+                keys.each { key ->
+                    buffer.clear()
+                    ((SocketChannel) key.channel()).read(buffer)
+                    buffer.flip()
+                    while (buffer.hasRemaining()) {
+                        if (buffer.get() == ('\n' as char)) {
+                            pending--
+                            latencies << System.nanoTime() - start
+                        }
+                    }
+                }
+                keys.clear()
+            }
+        }
+        latencies.sort()
+        println String.format("%-8s %5d clients : %7.1f KB/connection, latency p50 %7.1f us, p99 %7.1f us",
+                server.threadMode, clients, memoryPerClient,
+                latencies[latencies.size() / 2 as int] / 1000, latencies[(latencies.size() * 0.99) as int] / 1000)
+
+        then: "Every client should receive every notification"
+        latencies.size() == clients * ROUNDS
+
+        cleanup:
+        channels*.close()
+        selector?.close()
+        server?.close()
+        System.clearProperty("chat.notifications.blocking")
+
+        where:
+        clients << [100, 1000]
+    }
+
+    /**
+     * Reads the resident memory of the JVM, native thread stacks included.
+     * @return the resident memory in KB, 0 if not available (not Linux)
+     */
+    private static double residentMemoryKb() {
+        System.gc()
+        def status = new File("/proc/self/status")
+        if (!status.exists()) {
+            return 0
+        }
+        def line = status.readLines().find { it.startsWith("VmRSS:") }
+        line.replaceAll(/[^0-9]/, "") as double
+    }
+}
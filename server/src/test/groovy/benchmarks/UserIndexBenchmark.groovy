@@ -0,0 +1,47 @@
+package benchmarks
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.user.Presence
+import chatProject.server.ChatServer
+import spock.lang.Specification
+
+class UserIndexBenchmark extends Specification {
+
+    static final int USERS = 100_000
+    static final int PINGS = 200_000
+
+    def "Logins and lookups should not depend on the number of users"() {
+        given: "A server with 100 000 logged in users"
+        def chat = ChatInstance.initEmptyChat()
+        def server = new ChatServer(chat, [], null)
+        def random = new Random(42)
+        def loginStart = System.nanoTime()
+        USERS.times { server.login("user" + it) }
+        def loginNanos = (System.nanoTime() - loginStart) / USERS
+
+        when: "The users ping the server and are looked up, after a warm up"
+        2.times { measure { server.login("user" + random.nextInt(USERS)) } }
+        def pingNanos = measure { server.login("user" + random.nextInt(USERS)) }
+        def lookupNanos = measure { server.findUser("user" + random.nextInt(USERS)) }
+
+        and: "A lookup scanning the users, as before the indexes"
+        def scanNanos = measure(1000) { ignored ->
+            def name = "user" + random.nextInt(USERS)
+            chat.presence.all.stream().map { Presence presence -> presence.user.account }.filter { account -> account.username == name }.findAny()
+        }
+        println String.format("%,d users : login %,.0f ns, ping %,.0f ns, indexed lookup %,.0f ns, scan %,.0f ns",
+                USERS, loginNanos, pingNanos, lookupNanos, scanNanos)
+
+        then: "Every user should be registered once"
+        chat.users.size() == USERS
+
+        and: "The indexed lookup should be much faster than a scan"
+        lookupNanos * 100 < scanNanos
+    }
+
+    private static double measure(int count = PINGS, Closure operation) {
+        def start = System.nanoTime()
+        count.times { operation() }
+        (System.nanoTime() - start) / count
+    }
+}
@@ -0,0 +1,183 @@
+package specifications
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.ChatServer
+import chatProject.server.log.LogConfig
+import chatProject.server.log.RecordType
+import chatProject.server.log.SegmentedLog
+import com.google.gson.Gson
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ChatLogSpec extends Specification {
+
+    File directory = Files.createTempDirectory("chat-log").toFile()
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def "The chatrooms and messages of a server with a log should be restored after a restart"() {
+        given: "A server with a log"
+        def config = new LogConfig(directory, 1024, 5, true)
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openLog(config)
+
+        and: "A chatroom with messages, spanning several segments"
+        def owner = new UserInfo(new UserAccount(1, "owner"), Status.ACTIVE)
+        int chatroomId = server.addChatroom("persistent", owner)
+        (1..50).each { server.addMessage(chatroomId, owner, "Message " + it) }
+
+        when: "The server is restarted on the same log"
+        server.close()
+        def restarted = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        restarted.openLog(config)
+
+        then: "The chatroom and its messages should be restored in order"
+        restarted.currentChatroomNames == ["persistent"]
+        restarted.getChatroomMessages(chatroomId).collect { it.message } == (1..50).collect { "Message " + it }
+
+        and: "The messages should be stored in several segments"
+        directory.listFiles().length > 1
+
+        cleanup:
+        restarted?.close()
+    }
+
+    def "Concurrent appends should all be durable with the group commit"() {
+        given: "A log with a durability window"
+        def log = SegmentedLog.open(new LogConfig(directory, 64 * 1024, 20, true))
+
+        when: "8 threads append 100 records each"
+        def pool = Executors.newFixedThreadPool(8)
+        (1..8).each { thread ->
+            pool.submit { (1..100).each { log.append(RecordType.MESSAGE, thread, "record".bytes) } }
+        }
+        pool.shutdown()
+        pool.awaitTermination(30, TimeUnit.SECONDS)
+        def syncs = log.syncCount
+        log.close()
+
+        and: "The log is read again"
+        def count = 0
+        def reopened = SegmentedLog.open(new LogConfig(directory, 64 * 1024, 20, true))
+        reopened.forEach { address, type, chatroomId, payload -> count++ }
+
+        then: "Every record should be read"
+        count == 800
+
+        and: "The fsyncs should be shared by the threads"
+        syncs < 800 / 4
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "A record partially written before a crash should be ignored and overwritten"() {
+        given: "A log with 2 records"
+        def config = new LogConfig(directory, 4096, 0, true)
+        def log = SegmentedLog.open(config)
+        log.append(RecordType.MESSAGE, 1, "first".bytes)
+        def second = log.append(RecordType.MESSAGE, 1, "second".bytes)
+        log.close()
+
+        and: "A torn record after them"
+        def file = directory.listFiles().first()
+        def raf = new RandomAccessFile(file, "rw")
+        raf.seek(second + 13 + "second".length())
+        raf.writeInt(50)
+        raf.writeInt(12345)
+        raf.close()
+
+        when: "The log is reopened and a record appended"
+        def reopened = SegmentedLog.open(config)
+        reopened.append(RecordType.MESSAGE, 1, "third".bytes)
+        def payloads = []
+        reopened.forEach { address, type, chatroomId, payload ->
+            def bytes = new byte[payload.remaining()]
+            payload.get(bytes)
+            payloads << new String(bytes)
+        }
+
+        then: "Only the valid records should be read"
+        payloads == ["first", "second", "third"]
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "The chat should be restored from the last snapshot and the records after it"() {
+        given: "A server with a log"
+        def config = new LogConfig(directory, 1024, 5, true)
+        def chat = ChatInstance.initEmptyChat()
+        def server = new ChatServer(chat, [], new Gson())
+        server.openLog(config)
+
+        and: "A chatroom, messages and a user in a snapshot"
+        def owner = new UserInfo(new UserAccount(1, "owner"), Status.ACTIVE)
+        int first = server.addChatroom("first", owner)
+        (1..20).each { server.addMessage(first, owner, "Message " + it) }
+        def alice = new UserAccount(2, "alice")
+        server.notifyUserChange(new UserInfo(alice, Status.ACTIVE))
+        server.log.snapshot(chat)
+
+        and: "Changes after the snapshot"
+        (21..30).each { server.addMessage(first, owner, "Message " + it) }
+        server.addChatroom("second", owner)
+        server.notifyUserChange(new UserInfo(alice, Status.INACTIVE))
+        server.notifyUserChange(new UserInfo(new UserAccount(3, "bob"), Status.ACTIVE))
+
+        when: "The server crashes (no last snapshot) and is restarted"
+        server.log.log.close()
+        def restarted = new ChatServer(ChatInstance.initEmptyChat(), [], new Gson())
+        def stats = restarted.openLog(config)
+
+        then: "Only the records after the snapshot should be replayed"
+        stats.fromSnapshot
+        stats.replayedRecords == 10 + 1 + 2
+
+        and: "Everything should be restored"
+        restarted.currentChatroomNames == ["first", "second"]
+        restarted.getChatroomMessages(first).collect { it.message } == (1..30).collect { "Message " + it }
+        restarted.chatInstance.users.keySet().collectEntries { [(it.account.username): it.currentStatus] } ==
+                [alice: Status.INACTIVE, bob: Status.ACTIVE]
+
+        cleanup:
+        restarted?.close()
+    }
+
+    def "A corrupted snapshot should be ignored and the whole log replayed"() {
+        given: "A server closed with a snapshot"
+        def config = new LogConfig(directory, 1024, 5, true)
+        def server = new ChatServer(ChatInstance.initEmptyChat(), [], new Gson())
+        server.openLog(config)
+        def owner = new UserInfo(new UserAccount(1, "owner"), Status.ACTIVE)
+        int chatroomId = server.addChatroom("persistent", owner)
+        (1..10).each { server.addMessage(chatroomId, owner, "Message " + it) }
+        server.close()
+
+        and: "A corrupted byte in the snapshot"
+        def snapshot = new RandomAccessFile(new File(directory, "snapshot.bin"), "rw")
+        snapshot.seek(14)
+        snapshot.write(snapshot.read() ^ 0xFF)
+        snapshot.close()
+
+        when: "The server is restarted"
+        def restarted = new ChatServer(ChatInstance.initEmptyChat(), [], new Gson())
+        def stats = restarted.openLog(config)
+
+        then: "The whole log should be replayed"
+        !stats.fromSnapshot
+        stats.replayedRecords == 11
+        restarted.getChatroomMessages(chatroomId).collect { it.message } == (1..10).collect { "Message " + it }
+
+        cleanup:
+        restarted?.close()
+    }
+}
@@ -44,7 +44,35 @@ class ChatServerChatroomSpec extends Specification {
 
         expect: "The chatroom model should be retrieved from its ID"
         // there is only 1 chatroom in the model - get it
-        server.getChatroom(1) == chatroom
+        server.getChatroom(0) == chatroom
+    }
+
+    def "The server should retrieve each Chatroom from its own ID"() {
+        given: "A server with chatrooms"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        def ids = ["first", "second", "third"].collect { name -> server.addChatroom(name, null) }
+
+        expect: "Each chatroom to be found by its ID"
+        ids == [0, 1, 2]
+        ids.collect { id -> server.getChatroom(id).name } == ["first", "second", "third"]
+        server.getChatroom(3) == null
+    }
+
+    def "Adding a Chatroom with the name of another one should be rejected"() {
+        given: "A server with a chatroom"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        server.addChatroom("Test chatroom", null)
+        def names = server.currentChatroomNames
+
+        when: "A chatroom with the same name is created"
+        server.addChatroom("Test chatroom", null)
+
+        then: "The new chatroom should be rejected"
+        thrown(IllegalArgumentException)
+        // the names are not rebuilt
+        server.currentChatroomNames.is(names)
+        server.addChatroom("Other chatroom", null) == 1
+        server.currentChatroomNames == ["Test chatroom", "Other chatroom"]
     }
 
 }
@@ -1,12 +1,17 @@
 package specifications
 
+import chatProject.AddMessageForm
 import chatProject.model.messages.ChatInstance
+import chatProject.model.messages.Chatroom
 import chatProject.model.messages.Message
+import chatProject.model.messages.MessageBatch
 import chatProject.model.user.Status
+import chatProject.protocol.FrameType
 import chatProject.model.user.UserAccount
 import chatProject.model.user.UserInfo
 import chatProject.server.ChatServer
 import chatProject.server.ClientNotifierInterface
+import com.google.gson.Gson
 import spock.lang.Specification
 
 class ChatServerMessageSpec extends Specification {
@@ -52,4 +57,152 @@ class ChatServerMessageSpec extends Specification {
         0 * clientNotifier.notifyNewMessage(chatroomId, _)
     }
 
+    def "A page of messages should be found between message IDs"() {
+        given: "A server with a chatroom of 100 messages"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        int chatroomId = server.addChatroom("test", null)
+        (0..<100).each { server.addMessage(chatroomId, null, "Message " + it) }
+
+        expect: "The pages to contain the messages between the cursors"
+        server.getChatroomMessages(chatroomId, after, before, limit).collect { it.id } == ids
+
+        where:
+        after | before | limit || ids
+        null  | null   | 3     || [97, 98, 99]
+        null  | 50     | 3     || [47, 48, 49]
+        10    | null   | 3     || [11, 12, 13]
+        10    | 13     | 10    || [11, 12]
+        98    | null   | 10    || [99]
+        99    | null   | 10    || []
+        null  | 0      | 10    || []
+    }
+
+    def "A page of messages should only read the messages of the page"() {
+        given: "A chatroom of 100 000 messages counting the messages read"
+        def reads = 0
+        def stored = (0..<100_000).collect { new Message<String>(it, null, "Message " + it) }
+        def messages = new AbstractList<Message<String>>() {
+            Message<String> get(int index) { reads++; stored[index] }
+            int size() { stored.size() }
+        }
+        def server = new ChatServer(new ChatInstance([new Chatroom("test", null, messages)], null), null, null)
+
+        when: "A page is read in the middle of the chatroom"
+        def page = server.getChatroomMessages(0, 50_000, null, 10)
+
+        then: "The page should be found with a binary search"
+        page.collect { it.id } == (50_001..50_010).toList()
+        reads <= 17 + 10
+    }
+
+    def "Messages should refer to the shared user of their sender, and be sent with its ID only"() {
+        given: "A server with a chatroom and two logged users"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        int chatroomId = server.addChatroom("test", null)
+        def alice = server.login("alice")
+        def bob = server.login("bob")
+
+        when: "They send messages with copies of their user"
+        (0..<10).each {
+            def sender = (it % 2 == 0) ? alice : bob
+            server.addMessage(chatroomId, new UserInfo(sender.account, sender.currentStatus), "Message " + it)
+        }
+        def messages = server.getChatroomMessages(chatroomId)
+
+        then: "The messages should keep the users of the server, not the copies"
+        messages.every { it.sender.is(server.chatInstance.getUser(it.senderId)) }
+
+        and: "The JSON of a message should only have the ID of its sender"
+        def json = new Gson().toJson(messages[0])
+        json.contains('"senderId":' + alice.account.id)
+        !json.contains("alice")
+
+        and: "A page should list each sender once"
+        server.withSenders(messages).users.collect { it.account.username } == ["alice", "bob"]
+    }
+
+    def "A batch of messages should be appended in order in each chatroom, and return their IDs"() {
+        given: "A server with two chatrooms"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        int first = server.addChatroom("first", null)
+        int second = server.addChatroom("second", null)
+        server.addMessage(first, null, "Before")
+
+        when: "A batch of messages across both chatrooms is added"
+        def added = server.addMessages([
+                new AddMessageForm(first, null, "A1"),
+                new AddMessageForm(second, null, "B1"),
+                new AddMessageForm(first, null, "A2"),
+                new AddMessageForm(second, null, "B2")
+        ])
+
+        then: "The messages should be returned in the order of the batch, with their IDs"
+        added.collect { it.message } == ["A1", "B1", "A2", "B2"]
+        added.collect { it.id } == [1L, 0L, 2L, 1L]
+
+        and: "Each chatroom should have its messages in order"
+        server.getChatroomMessages(first).collect { it.message } == ["Before", "A1", "A2"]
+        server.getChatroomMessages(second).collect { it.message } == ["B1", "B2"]
+    }
+
+    def "The messages of an unknown chatroom should be rejected"() {
+        given: "A server without chatroom"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+
+        when: "The messages of an unknown chatroom are read"
+        read(server)
+
+        then: "The chatroom should be reported as unknown"
+        def e = thrown(IllegalArgumentException)
+        e.message == "No chatroom 42"
+
+        where:
+        read << [{ it.getChatroomMessages(42) }, { it.getChatroomMessages(42, null, null, 10) }]
+    }
+
+    def "A batch with an unknown chatroom should not add any message"() {
+        given: "A server with a chatroom"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, null)
+        int chatroomId = server.addChatroom("test", null)
+
+        when: "A batch also sends a message to an unknown chatroom"
+        server.addMessages([new AddMessageForm(chatroomId, null, "A"), new AddMessageForm(42, null, "B")])
+
+        then: "The batch should be rejected"
+        thrown(IllegalArgumentException)
+        server.getChatroomMessages(chatroomId).isEmpty()
+    }
+
+    def "A batch of messages should be notified once per client, with the chatrooms of the client"() {
+        given: "A server with two chatrooms"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), new HashSet<ClientNotifierInterface<String>>(), new Gson())
+        int first = server.addChatroom("first", null)
+        int second = server.addChatroom("second", null)
+
+        and: "A client of all the chatrooms, and a client of the first chatroom"
+        def everything = Mock(ClientNotifierInterface)
+        def firstOnly = Mock(ClientNotifierInterface)
+        server.clientNotifiers.add(everything)
+        server.clientNotifiers.add(firstOnly)
+        server.clientNotifiers.subscribe(firstOnly, first)
+
+        and: "A batch of messages across both chatrooms"
+        def batch = new MessageBatch<String>()
+        server.addMessages([
+                new AddMessageForm(first, null, "A1"),
+                new AddMessageForm(second, null, "B1"),
+                new AddMessageForm(first, null, "A2")
+        ]).eachWithIndex { message, i -> batch.add(i == 1 ? second : first, message) }
+
+        when: "The batch is notified"
+        server.notifyNewMessages(batch)
+
+        then: "Each client should get one frame with the messages of its chatrooms"
+        1 * everything.send({ it.type == FrameType.NEW_MESSAGES && it.batch.chatroomIds as List == [first, second] })
+        1 * firstOnly.send({
+            it.type == FrameType.NEW_MESSAGES && it.batch.chatroomIds as List == [first] &&
+                    it.batch.messages[first]*.message == ["A1", "A2"]
+        })
+        0 * _.notifyNewMessage(*_)
+    }
 }
@@ -0,0 +1,50 @@
+package specifications
+
+import chatProject.server.ClientNotifierInterface
+import chatProject.server.ClientRegistry
+import spock.lang.Specification
+
+class ClientRegistrySpec extends Specification {
+
+    def "Only the subscribers of a chatroom and the legacy clients should receive its messages"() {
+        given: "A registry with 3 clients"
+        def registry = new ClientRegistry([] as Set)
+        def legacy = Mock(ClientNotifierInterface)
+        def subscriber = Mock(ClientNotifierInterface)
+        def other = Mock(ClientNotifierInterface)
+        [legacy, subscriber, other].each { registry.add(it) }
+
+        and: "2 of them subscribed to different chatrooms"
+        registry.subscribe(subscriber, 1)
+        registry.subscribe(other, 2)
+
+        when: "The recipients of a message in the chatroom 1 are listed"
+        def recipients = []
+        registry.forEachSubscriber(1) { recipients << it }
+
+        then: "The legacy client and the subscriber should be listed"
+        recipients as Set == [legacy, subscriber] as Set
+    }
+
+    def "A client should stop receiving the messages of a chatroom after unsubscribing or disconnecting"() {
+        given: "A registry with a client subscribed to 2 chatrooms"
+        def registry = new ClientRegistry([] as Set)
+        def client = Mock(ClientNotifierInterface)
+        registry.add(client)
+        registry.subscribe(client, 1)
+        registry.subscribe(client, 2)
+
+        when: "The client unsubscribes from the chatroom 1 and disconnects"
+        registry.unsubscribe(client, 1)
+        def afterUnsubscribe = []
+        registry.forEachSubscriber(1) { afterUnsubscribe << it }
+        registry.remove(client)
+        def afterDisconnect = []
+        registry.forEachSubscriber(2) { afterDisconnect << it }
+
+        then: "The client should not be listed anymore"
+        afterUnsubscribe.isEmpty()
+        afterDisconnect.isEmpty()
+        registry.clients.isEmpty()
+    }
+}
@@ -0,0 +1,176 @@
+package specifications
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.messages.Chatroom
+import chatProject.model.messages.Message
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.ChatServer
+import chatProject.server.ClientNotifierInterface
+import com.google.gson.Gson
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class ConcurrentChatSpec extends Specification {
+
+    static final int CHATROOMS = 4
+    static final int WRITERS = 8
+    static final int MESSAGES_PER_WRITER = 2_000
+
+    /**
+     * A client counting the notifications it receives.
+     */
+    static class CountingNotifier implements ClientNotifierInterface<String> {
+        final AtomicInteger messages = new AtomicInteger()
+
+        void notifyNewChatroom(Chatroom<String> chatroom) {}
+
+        void notifyNewMessage(int chatroomId, Message<String> message) { messages.incrementAndGet() }
+
+        void notifyUserChange(UserInfo user) {}
+    }
+
+    /**
+     * Runs actions on many threads at once, and collects their errors.
+     */
+    static List<Throwable> runTogether(List<Closure> actions) {
+        def start = new CountDownLatch(1)
+        def errors = new ConcurrentLinkedQueue<Throwable>()
+        def threads = actions.collect { action ->
+            Thread.start {
+                start.await()
+                try {
+                    action()
+                } catch (Throwable e) {
+                    errors << e
+                }
+            }
+        }
+        start.countDown()
+        threads*.join()
+        errors as List
+    }
+
+    def "Messages added from many threads should all be stored, in the order of their IDs"() {
+        given: "A server with chatrooms"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        def user = new UserInfo(new UserAccount(1, "user"), Status.ACTIVE)
+        def ids = (0..<CHATROOMS).collect { room -> server.addChatroom("chatroom " + room, user) }
+        def done = new CountDownLatch(WRITERS)
+
+        and: "Writers adding messages in all the chatrooms"
+        def writers = (0..<WRITERS).collect { writer ->
+            { ->
+                try {
+                    (0..<MESSAGES_PER_WRITER).each { i -> server.addMessage(ids[i % CHATROOMS], user, "Message " + i) }
+                } finally {
+                    done.countDown()
+                }
+            }
+        }
+
+        and: "Readers paging the chatrooms meanwhile"
+        def readers = (0..<4).collect { reader ->
+            { ->
+                while (done.count > 0) {
+                    ids.each { room ->
+                        def page = server.getChatroomMessages(room, null, null, 50)
+                        // a page is always sorted and without gap
+                        assert page.collect { it.id } == (page ? (page.first().id..page.last().id).toList() : [])
+                        server.getChatroomMessages(room).size()
+                    }
+                    assert server.currentChatroomNames.size() == CHATROOMS
+                }
+            }
+        }
+
+        when: "They all run together"
+        def errors = runTogether(writers + readers)
+
+        then: "No thread should fail"
+        errors.isEmpty()
+
+        and: "Every message should be stored once, in the order of the IDs"
+        ids.every { room ->
+            def stored = server.getChatroomMessages(room).collect { it.id }
+            stored == (0L..<(WRITERS * MESSAGES_PER_WRITER / CHATROOMS)).toList()
+        }
+    }
+
+    def "Clients connecting and disconnecting during the notifications should not break them"() {
+        given: "A server with a connected client"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), new HashSet<ClientNotifierInterface<String>>(), new Gson())
+        int chatroomId = server.addChatroom("test", null)
+        def connected = new CountingNotifier()
+        server.clientNotifiers.add(connected)
+        def done = new CountDownLatch(WRITERS)
+
+        and: "Writers notifying new messages"
+        def writers = (0..<WRITERS).collect { writer ->
+            { ->
+                try {
+                    (0..<MESSAGES_PER_WRITER).each { i ->
+                        server.notifyNewMessage(chatroomId, server.addMessage(chatroomId, null, "Message " + i))
+                    }
+                } finally {
+                    done.countDown()
+                }
+            }
+        }
+
+        and: "Clients connecting, subscribing and disconnecting meanwhile"
+        def churn = (0..<2).collect { thread ->
+            { ->
+                while (done.count > 0) {
+                    def client = new CountingNotifier()
+                    server.clientNotifiers.add(client)
+                    server.clientNotifiers.subscribe(client, chatroomId)
+                    server.clientNotifiers.remove(client)
+                }
+            }
+        }
+
+        when: "They all run together"
+        def errors = runTogether(writers + churn)
+
+        then: "No thread should fail"
+        errors.isEmpty()
+
+        and: "The client connected all along should receive every message"
+        connected.messages.get() == WRITERS * MESSAGES_PER_WRITER
+        server.clientNotifiers.clients as List == [connected]
+    }
+
+    def "Chatrooms and users added from many threads should all be in the model"() {
+        given: "A server"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+
+        when: "Threads add the same chatrooms and log in many users"
+        def errors = runTogether((0..<WRITERS).collect { writer ->
+            { ->
+                (0..<100).each { i ->
+                    try {
+                        server.addChatroom("chatroom " + i, null)
+                    } catch (IllegalArgumentException e) {
+                        // added by another thread
+                    }
+                    server.login("user " + (writer * 100 + i))
+                    server.currentChatroomNames
+                    server.users
+                }
+            }
+        })
+
+        then: "No thread should fail"
+        errors.isEmpty()
+
+        and: "Each chatroom should be added once, and each user should have its own account"
+        server.currentChatroomNames.size() == 100
+        server.currentChatroomNames as Set == (0..<100).collect { "chatroom " + it } as Set
+        server.users.collect { it.account.id } as Set == (1..WRITERS * 100) as Set
+    }
+}
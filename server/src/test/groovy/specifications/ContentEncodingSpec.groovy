@@ -0,0 +1,29 @@
+package specifications
+
+import chatProject.server.ContentEncoding
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ContentEncodingSpec extends Specification {
+
+    @Unroll
+    def "The header '#header' should negotiate #encoding"() {
+        expect: "The accepted coding with the highest quality to be chosen"
+        ContentEncoding.negotiate(header) == encoding
+
+        where:
+        header                       || encoding
+        null                         || ContentEncoding.IDENTITY
+        ''                           || ContentEncoding.IDENTITY
+        'gzip, deflate'              || ContentEncoding.GZIP
+        'deflate'                    || ContentEncoding.DEFLATE
+        'x-gzip'                     || ContentEncoding.GZIP
+        '*'                          || ContentEncoding.GZIP
+        'gzip;q=0, *'                || ContentEncoding.DEFLATE
+        'gzip;q=0, deflate;q=0, *'   || ContentEncoding.IDENTITY
+        '*;q=0'                      || ContentEncoding.IDENTITY
+        'deflate;q=1, gzip;q=0.1'    || ContentEncoding.DEFLATE
+        'gzip;q=0.5, deflate;q=0.5'  || ContentEncoding.GZIP
+        'br, gzip;q=invalid'         || ContentEncoding.IDENTITY
+    }
+}
@@ -0,0 +1,157 @@
+package specifications
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.user.Status
+import chatProject.protocol.BinaryFrame
+import chatProject.protocol.FrameType
+import chatProject.protocol.NotificationProtocol
+import chatProject.server.ChatServer
+import chatProject.server.HeartbeatConfig
+import chatProject.server.IdleConfig
+import chatProject.server.NotificationServerConfig
+import chatProject.server.OutboundQueueConfig
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+
+class HeartbeatSpec extends Specification {
+
+    def conditions = new PollingConditions(timeout: 5)
+
+    /**
+     * A server detecting idle users after 200 ms, with heartbeats every 100 to 400 ms, one of them may be missed.
+     */
+    ChatServer server = new ChatServer(ChatInstance.initEmptyChat(), ConcurrentHashMap.newKeySet(), new Gson())
+
+    Socket client
+
+    def setup() {
+        server.checkIdleClients(new IdleConfig(200, 10))
+        server.openSocket(0, new NotificationServerConfig(1, 10, 0,
+                OutboundQueueConfig.fromSystemProperties(), new HeartbeatConfig(100, 400, 1)))
+        client = new Socket("127.0.0.1", server.@notificationServer.localPort)
+    }
+
+    def cleanup() {
+        client?.close()
+        server.close()
+    }
+
+    def "A client authenticated with its session token should keep its user active with its heartbeats"() {
+        given: "A logged in user"
+        def user = server.login("user")
+        def input = new DataInputStream(client.inputStream)
+
+        expect: "The server to offer the heartbeats"
+        readProtocol(input) == '9HELLO 2'
+        readProtocol(input) == '9HEARTBEAT 100 400'
+
+        when: "The client authenticates with the token of the user"
+        send('A' + server.getSessionToken(user.account))
+
+        then: "The server should acknowledge it"
+        readProtocol(input) == '9AUTHENTICATED ' + user.account.id
+
+        when: "The client sends heartbeats announcing 400 ms, every 300 ms, for longer than the idle timeout"
+        6.times {
+            send('H400')
+            Thread.sleep(300)
+        }
+
+        then: "The user should still be active"
+        status(user.account.id) == Status.ACTIVE
+
+        when: "The client disconnects"
+        client.close()
+
+        then: "The user should become inactive without waiting for its deadline"
+        conditions.within(0.3) {
+            assert status(user.account.id) == Status.INACTIVE
+        }
+    }
+
+    def "A client missing its heartbeats in the binary protocol should make its user inactive"() {
+        given: "A logged in user, with a client upgraded to the binary protocol"
+        def user = server.login("user")
+        def input = new DataInputStream(client.inputStream)
+        readProtocol(input)
+        readProtocol(input)
+        send('V2')
+        assert readProtocol(input) == '9V2'
+
+        when: "The client authenticates and sends a single heartbeat announcing 100 ms"
+        client.outputStream.write(NotificationProtocol.encode(FrameType.AUTHENTICATE, -1, 0,
+                server.getSessionToken(user.account).getBytes("UTF-8")))
+        client.outputStream.write(NotificationProtocol.encode(FrameType.HEARTBEAT, -1, 0, '100'.getBytes("UTF-8")))
+        client.outputStream.flush()
+
+        then: "The server should acknowledge the authentication in binary"
+        def frame = readBinary(input)
+        frame.type == FrameType.PROTOCOL
+        new String(frame.payload.array(), frame.payload.arrayOffset() + frame.payload.position(),
+                frame.payload.remaining(), "UTF-8") == NotificationProtocol.AUTHENTICATED + user.account.id
+
+        and: "The user should become inactive once the heartbeats are missed, though still connected"
+        conditions.eventually {
+            assert status(user.account.id) == Status.INACTIVE
+        }
+        !client.closed
+    }
+
+    def "A client with an unknown token should not be authenticated"() {
+        given: "A logged in user"
+        def user = server.login("user")
+        def input = new DataInputStream(client.inputStream)
+        readProtocol(input)
+        readProtocol(input)
+
+        when: "The client sends an unknown token, then the token of the user"
+        send('Aunknown')
+        send('A' + server.getSessionToken(user.account))
+
+        then: "Only the token of the user should be acknowledged"
+        readProtocol(input) == '9AUTHENTICATED ' + user.account.id
+    }
+
+    private void send(String line) {
+        client.outputStream.write((line + '\n').getBytes("UTF-8"))
+        client.outputStream.flush()
+    }
+
+    private Status status(int accountId) {
+        server.users.find { it.account.id == accountId }.currentStatus
+    }
+
+    /**
+     * Reads the next line of the text protocol, skipping the user changes broadcast to all the clients.
+     */
+    private static String readProtocol(DataInputStream input) {
+        while (true) {
+            def line = new StringBuilder()
+            int b
+            while ((b = input.read()) != ('\n' as char)) {
+                line.append((char) b)
+            }
+            if (!line.toString().startsWith('2')) {
+                return line.toString()
+            }
+        }
+    }
+
+    /**
+     * Reads the next frame of the binary protocol, skipping the user changes broadcast to all the clients.
+     */
+    private static BinaryFrame readBinary(DataInputStream input) {
+        while (true) {
+            def body = new byte[input.readInt()]
+            input.readFully(body)
+            def frame = BinaryFrame.decode(ByteBuffer.wrap(body))
+            if (frame.type != FrameType.USER_CHANGE) {
+                return frame
+            }
+        }
+    }
+}
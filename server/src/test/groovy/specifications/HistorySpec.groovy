@@ -0,0 +1,205 @@
+package specifications
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.messages.Message
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.user.UserInfo
+import chatProject.server.ChatServer
+import chatProject.server.history.HistoryConfig
+import chatProject.server.history.OffHeapArena
+import chatProject.server.log.LogConfig
+import com.google.gson.Gson
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicBoolean
+
+class HistorySpec extends Specification {
+
+    File directory = Files.createTempDirectory("chat-history").toFile()
+
+    def sender = new UserInfo(new UserAccount(1, "sender"), Status.ACTIVE)
+
+    def cleanup() {
+        directory.deleteDir()
+    }
+
+    def "The history of a chatroom should span its hot tail and the cold tier"() {
+        given: "A server keeping 10 messages per chatroom in memory"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openHistory(new HistoryConfig(10, directory, 1024))
+        int chatroomId = server.addChatroom("test", sender)
+
+        when: "100 messages are added"
+        (0..<100).each { server.addMessage(chatroomId, sender, "Message " + it) }
+
+        then: "Only the last 10 messages should stay in memory"
+        server.getChatroom(chatroomId).@messages.coldSize == 90
+
+        and: "The whole history should be read from both tiers"
+        server.getChatroomMessages(chatroomId).collect { it.message } == (0..<100).collect { "Message " + it }
+
+        and: "A page across the tiers should be read"
+        server.getChatroomMessages(chatroomId, 85, null, 10).collect { it.id } == (86L..95L).toList()
+
+        cleanup:
+        server.close()
+    }
+
+    def "The reads of the history should count the hits and misses of the hot tail"() {
+        given: "A server keeping 10 messages per chatroom in memory, with 100 messages"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openHistory(new HistoryConfig(10, directory, 1024))
+        int chatroomId = server.addChatroom("test", sender)
+        (0..<100).each { server.addMessage(chatroomId, sender, "Message " + it) }
+        def before = server.historyStats
+
+        when: "The last messages, then old messages are read"
+        server.getChatroomMessages(chatroomId, null, null, 5)
+        server.getChatroomMessages(chatroomId, null, 20, 5)
+
+        then: "The recent messages should be hits, the old ones misses"
+        def after = server.historyStats
+        after.hits - before.hits >= 5
+        after.misses - before.misses >= 5
+
+        cleanup:
+        server.close()
+    }
+
+    def "A temporary cold tier should be deleted when the server is closed"() {
+        given: "A server with a temporary cold tier"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openHistory(new HistoryConfig(1, null, 1024))
+        int chatroomId = server.addChatroom("test", sender)
+        (0..<10).each { server.addMessage(chatroomId, sender, "Message " + it) }
+        File temporary = server.coldTier.directory
+
+        expect: "The messages to be on disk"
+        temporary.listFiles().length > 0
+
+        when: "The server is closed"
+        server.close()
+
+        then: "The files should be deleted"
+        !temporary.exists()
+    }
+
+    def "The recent messages of a chatroom in the log should be read from memory"() {
+        given: "A server with a log, keeping 10 messages per chatroom in memory"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openLog(new LogConfig(directory, 1024 * 1024, 5, true), new HistoryConfig(10, null, 0))
+        int chatroomId = server.addChatroom("persistent", sender)
+        (0..<50).each { server.addMessage(chatroomId, sender, "Message " + it) }
+        def before = server.historyStats
+
+        when: "The last 10 messages are read"
+        def page = server.getChatroomMessages(chatroomId, null, null, 10)
+
+        then: "They should all be hits"
+        page.collect { it.message } == (40..<50).collect { "Message " + it }
+        server.historyStats.misses == before.misses
+        server.historyStats.hits >= before.hits + 10
+
+        and: "The older messages should still be decoded from the log"
+        server.getChatroomMessages(chatroomId).size() == 50
+
+        cleanup:
+        server.close()
+    }
+
+    def "A server with a log should refuse to keep its history off the heap"() {
+        given: "A server"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+
+        when: "The log is opened with an off-heap history"
+        server.openLog(new LogConfig(directory, 1024 * 1024, 5, true), new HistoryConfig(10, null, 1024, true))
+
+        then: "The combination should be rejected"
+        def e = thrown(IllegalArgumentException)
+        e.message.contains("chat.history.offHeap")
+
+        cleanup:
+        server.close()
+    }
+
+    def "Messages read while they move to the cold tier should always be found"() {
+        given: "A server keeping 16 messages per chatroom in memory"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openHistory(new HistoryConfig(16, directory, 64 * 1024))
+        int chatroomId = server.addChatroom("test", sender)
+        def messages = server.getChatroom(chatroomId).currentMessages
+        def errors = Collections.synchronizedList([])
+        def writing = new AtomicBoolean(true)
+
+        when: "Readers read the last messages while a writer adds messages"
+        def readers = (0..<4).collect {
+            Thread.start {
+                try {
+                    while (writing.get()) {
+                        int size = messages.size()
+                        for (int i = Math.max(0, size - 32); i < size; i++) {
+                            assert messages.get(i).message == "Message " + i
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors << e
+                }
+            }
+        }
+        (0..<5000).each { server.addMessage(chatroomId, sender, "Message " + it) }
+        writing.set(false)
+        readers*.join()
+
+        then: "Every message read should be the expected one"
+        errors.isEmpty()
+
+        cleanup:
+        server.close()
+    }
+
+    def "The old messages of a chatroom should be kept off the heap with their sender ID and time"() {
+        given: "A server keeping 10 messages per chatroom on the heap, the older ones in off-heap arenas of 1 KB"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), null, new Gson())
+        server.openHistory(new HistoryConfig(10, null, 1024, true))
+        int chatroomId = server.addChatroom("test", sender)
+
+        when: "100 messages are added, spanning several arenas"
+        def added = (0..<100).collect { server.addMessage(chatroomId, sender, "Message " + it + " é✓") }
+
+        then: "The old messages should be decoded from the arenas as they were added"
+        server.coldTier.reservedBytes > 1024
+        def read = server.getChatroomMessages(chatroomId)
+        read.collect { it.message } == added.collect { it.message }
+        read.collect { it.id } == added.collect { it.id }
+        read.collect { it.timestamp } == added.collect { it.timestamp }
+        read.every { it.senderId == sender.account.id }
+
+        cleanup:
+        server.close()
+    }
+
+    def "The off-heap arenas should only keep text messages"() {
+        given: "An off-heap arena"
+        def arena = new OffHeapArena(1024)
+
+        when: "A message without content is written"
+        def address = arena.write(0, new Message(1, sender, null, 42))
+
+        then: "It should be read back without content"
+        def read = arena.read(address)
+        read.id == 1
+        read.message == null
+        read.timestamp == 42
+
+        when: "A message whose content is not a text is written"
+        arena.write(0, new Message(2, sender, [text: "Message"], 43))
+
+        then: "It should be rejected instead of being read back as another type"
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        arena.close()
+    }
+}
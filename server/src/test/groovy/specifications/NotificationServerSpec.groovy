@@ -0,0 +1,206 @@
+package specifications
+
+import chatProject.model.user.Status
+import chatProject.model.user.UserAccount
+import chatProject.model.messages.Message
+import chatProject.model.user.UserInfo
+import chatProject.protocol.BinaryFrame
+import chatProject.protocol.FrameType
+import chatProject.protocol.NotificationProtocol
+import chatProject.server.ClientNotifierInterface
+import chatProject.server.ClientRegistry
+import chatProject.server.EventLoop
+import chatProject.server.NioClientNotifier
+import chatProject.server.NotificationServer
+import chatProject.server.NotificationServerConfig
+import chatProject.server.OutboundQueueConfig
+import chatProject.server.SlowConsumerPolicy
+import com.google.gson.Gson
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.ByteBuffer
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.util.concurrent.ConcurrentHashMap
+
+class NotificationServerSpec extends Specification {
+
+    def conditions = new PollingConditions(timeout: 5)
+
+    def "Clients connected to the notification server should receive the notifications"() {
+        given: "A notification server with 2 event loops"
+        Set<ClientNotifierInterface> notifiers = ConcurrentHashMap.newKeySet()
+        def server = new NotificationServer(new NotificationServerConfig(2, 10, 0), new ClientRegistry(notifiers), new Gson())
+        server.start(0)
+
+        and: "3 connected clients"
+        def clients = (1..3).collect { new Socket("127.0.0.1", server.localPort) }
+        conditions.eventually {
+            assert notifiers.size() == 3
+        }
+
+        when: "A user change is notified to all clients"
+        notifiers.each { it.notifyUserChange(new UserInfo(new UserAccount(1, "user"), Status.ACTIVE)) }
+
+        then: "Every client should read the protocol offer then the notification"
+        clients.every {
+            def reader = it.inputStream.newReader("UTF-8")
+            reader.readLine() == '9HELLO 2' && reader.readLine().startsWith('2{')
+        }
+
+        cleanup:
+        clients*.close()
+        server.close()
+    }
+
+    def "Clients above the admission limit should be rejected"() {
+        given: "A notification server accepting only 1 client"
+        Set<ClientNotifierInterface> notifiers = ConcurrentHashMap.newKeySet()
+        def server = new NotificationServer(new NotificationServerConfig(1, 1, 0), new ClientRegistry(notifiers), new Gson())
+        server.start(0)
+
+        when: "2 clients connect"
+        def first = new Socket("127.0.0.1", server.localPort)
+        conditions.eventually {
+            assert notifiers.size() == 1
+        }
+        def second = new Socket("127.0.0.1", server.localPort)
+
+        then: "The second client should be disconnected"
+        second.inputStream.read() == -1
+        server.connectedClients == 1
+
+        when: "The first client disconnects"
+        first.close()
+
+        then: "Its notifier should be removed"
+        conditions.eventually {
+            assert notifiers.isEmpty()
+            assert server.connectedClients == 0
+        }
+
+        cleanup:
+        second.close()
+        server.close()
+    }
+
+    def "A client failing while it is accepted should be disconnected and free its slot"() {
+        given: "A notification server accepting only 1 client, failing to register the first one"
+        def failures = 1
+        def registry = new ClientRegistry(ConcurrentHashMap.newKeySet()) {
+            @Override
+            void add(ClientNotifierInterface client) {
+                if (failures-- > 0) {
+                    throw new IllegalStateException("registry unavailable")
+                }
+                super.add(client)
+            }
+        }
+        def server = new NotificationServer(new NotificationServerConfig(1, 1, 0), registry, new Gson())
+        server.start(0)
+
+        when: "A client connects while the registry fails"
+        def first = new Socket("127.0.0.1", server.localPort)
+
+        then: "The client should be disconnected and its slot released"
+        first.inputStream.read() == -1
+        conditions.eventually {
+            assert server.connectedClients == 0
+        }
+
+        when: "Another client connects"
+        def second = new Socket("127.0.0.1", server.localPort)
+
+        then: "It should be accepted"
+        conditions.eventually {
+            assert registry.clients.size() == 1
+            assert server.connectedClients == 1
+        }
+
+        cleanup:
+        first?.close()
+        second?.close()
+        server.close()
+    }
+
+    def "A client upgrading to the binary protocol should receive binary frames of its subscribed chatrooms"() {
+        given: "A notification server"
+        def registry = new ClientRegistry(ConcurrentHashMap.newKeySet())
+        def server = new NotificationServer(new NotificationServerConfig(1, 10, 0), registry, new Gson())
+        server.start(0)
+
+        and: "A client reading the protocol offer"
+        def client = new Socket("127.0.0.1", server.localPort)
+        def input = new DataInputStream(client.inputStream)
+        assert readLine(input) == '9HELLO 2'
+
+        when: "The client upgrades and subscribes to the chatroom 12 with a binary frame"
+        client.outputStream.write('V2\n'.bytes)
+        client.outputStream.write(NotificationProtocol.encode(FrameType.SUBSCRIBE, 12, 0, new byte[0]))
+        client.outputStream.flush()
+        conditions.eventually {
+            def recipients = []
+            registry.forEachSubscriber(12) { recipients << it }
+            assert recipients.size() == 1
+        }
+
+        and: "Messages are sent in 2 chatrooms"
+        registry.forEachSubscriber(3) { it.notifyNewMessage(3, new Message(1, null, "ignored")) }
+        registry.forEachSubscriber(12) { it.notifyNewMessage(12, new Message(2, null, "Hello")) }
+
+        then: "The client should read the acknowledgment then the binary frame of its chatroom"
+        readLine(input) == '9V2'
+        def body = new byte[input.readInt()]
+        input.readFully(body)
+        def frame = BinaryFrame.decode(ByteBuffer.wrap(body))
+        frame.type == FrameType.NEW_MESSAGE
+        frame.chatroomId == 12
+        frame.sequence > 0
+        new String(body, frame.payload.arrayOffset(), frame.payload.remaining(), "UTF-8").contains('"Hello"')
+
+        cleanup:
+        client?.close()
+        server.close()
+    }
+
+    def "The protocol frames should be sent even when the queue of the notifications is full"() {
+        given: "A connected client with room for a single notification, dropping the oldest ones"
+        def server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0))
+        def channel = SocketChannel.open(server.localAddress)
+        def client = server.accept()
+        def eventLoop = new EventLoop("test-loop", {})
+        def notifier = new NioClientNotifier(channel, "127.0.0.1", eventLoop, new Gson(),
+                new OutboundQueueConfig(1, SlowConsumerPolicy.DROP_OLDEST, 0), new ClientRegistry(ConcurrentHashMap.newKeySet()))
+        def input = new DataInputStream(client.socket().inputStream)
+
+        when: "Notifications fill the queue and the client requests the binary protocol"
+        3.times { notifier.notifyNewMessage(1, new Message(it, null, "Message " + it)) }
+        notifier.onRead(ByteBuffer.wrap('V2\n'.bytes))
+        notifier.flush()
+
+        then: "The client should read the protocol offer and the acknowledgment before the last notification, in binary"
+        readLine(input) == '9HELLO 2'
+        readLine(input) == '9V2'
+        def body = new byte[input.readInt()]
+        input.readFully(body)
+        def frame = BinaryFrame.decode(ByteBuffer.wrap(body))
+        frame.type == FrameType.NEW_MESSAGE
+        new String(body, frame.payload.arrayOffset(), frame.payload.remaining(), "UTF-8").contains('"Message 2"')
+
+        cleanup:
+        eventLoop?.close()
+        channel?.close()
+        client?.close()
+        server?.close()
+    }
+
+    private static String readLine(DataInputStream input) {
+        def line = new StringBuilder()
+        int b
+        while ((b = input.read()) != ('\n' as char)) {
+            line.append((char) b)
+        }
+        line.toString()
+    }
+}
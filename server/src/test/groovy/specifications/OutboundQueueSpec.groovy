@@ -0,0 +1,48 @@
+package specifications
+
+import chatProject.server.OutboundQueue
+import chatProject.server.OutboundQueueConfig
+import chatProject.server.SlowConsumerPolicy
+import spock.lang.Specification
+
+class OutboundQueueSpec extends Specification {
+
+    def "A full queue should apply the slow consumer policy"() {
+        given: "A full queue of 2 notifications"
+        def queue = new OutboundQueue<String>(new OutboundQueueConfig(2, policy, 10))
+        queue.offer("first")
+        queue.offer("second")
+
+        when: "A new notification is queued"
+        def accepted = queue.offer("third")
+
+        then: "The client should be kept only when dropping the oldest notification"
+        accepted == keepClient
+        and: "The next notification to send depends on the policy"
+        queue.poll() == next
+        and: "The dropped notification should be counted"
+        queue.getStats("client").dropped == 1
+
+        where:
+        policy                         | keepClient | next
+        SlowConsumerPolicy.DROP_OLDEST | true       | "second"
+        SlowConsumerPolicy.DISCONNECT  | false      | "first"
+        SlowConsumerPolicy.BLOCK       | false      | "first"
+    }
+
+    def "The queue should count its depth for lagging clients"() {
+        given: "A queue"
+        def queue = new OutboundQueue<String>(new OutboundQueueConfig(10, SlowConsumerPolicy.DISCONNECT, 10))
+
+        when: "3 notifications are queued and 1 is sent"
+        (1..3).each { queue.offer("notif " + it) }
+        queue.poll()
+
+        then: "The counters should show the lag"
+        def stats = queue.getStats("client")
+        stats.queueDepth == 2
+        stats.maxQueueDepth == 3
+        stats.sent == 1
+        stats.dropped == 0
+    }
+}
@@ -0,0 +1,118 @@
+package specifications
+
+import chatProject.model.messages.ChatInstance
+import chatProject.model.user.Status
+import chatProject.server.ChatServer
+import chatProject.server.IdleConfig
+import chatProject.server.TimerWheel
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class TimerWheelSpec extends Specification {
+
+    static final long TICK = TimeUnit.MILLISECONDS.toNanos(10)
+
+    def "A timer should expire at the first tick after its deadline"() {
+        given: "A wheel with 10 ms ticks"
+        def wheel = new TimerWheel<String>(TICK, 0)
+
+        when: "A key is scheduled"
+        wheel.schedule("user", deadline)
+
+        then: "It should not expire before its deadline"
+        wheel.advance(deadline - TICK) == []
+
+        and: "It should expire once its deadline passed"
+        wheel.advance(deadline + TICK) == ["user"]
+        !wheel.isScheduled("user")
+
+        where: "The deadlines are at every level of the wheel"
+        deadline << [5 * TICK, 100 * TICK, 5_000 * TICK, 300_000 * TICK, 20_000_000 * TICK]
+    }
+
+    def "A rescheduled timer should only expire at its new deadline"() {
+        given: "A key scheduled in 50 ms"
+        def wheel = new TimerWheel<String>(TICK, 0)
+        wheel.schedule("user", 5 * TICK)
+
+        when: "It is rescheduled later, e.g. by a ping"
+        wheel.schedule("user", 2_000 * TICK)
+
+        then: "It should not expire at its first deadline"
+        wheel.advance(10 * TICK) == []
+        wheel.advance(1_999 * TICK) == []
+
+        and: "It should expire at its new deadline"
+        wheel.advance(2_000 * TICK) == ["user"]
+    }
+
+    def "A cancelled timer should never expire"() {
+        given: "A key scheduled in 50 ms"
+        def wheel = new TimerWheel<String>(TICK, 0)
+        wheel.schedule("user", 5 * TICK)
+
+        when: "It is cancelled"
+        wheel.cancel("user")
+
+        then: "It should not expire"
+        wheel.advance(100 * TICK) == []
+        wheel.size() == 0
+    }
+
+    def "Timers rescheduled while their slot is reached should never be lost"() {
+        given: "A thread rescheduling keys while another one reaches their deadline"
+        def executor = Executors.newFixedThreadPool(2)
+        def barrier = new CyclicBarrier(2)
+        def keys = (0..<1_000)
+        def lost = 0
+
+        when: "The race is run many times"
+        1_000.times {
+            def wheel = new TimerWheel<Integer>(TICK, 0)
+            keys.each { wheel.schedule(it, TICK) }
+            def rescheduled = executor.submit {
+                barrier.await()
+                keys.reverseEach { wheel.schedule(it, 100 * TICK) }
+            }
+            def advanced = executor.submit({
+                barrier.await()
+                wheel.advance(TICK)
+            } as Callable)
+            rescheduled.get()
+            advanced.get()
+            lost += keys.count { !wheel.isScheduled(it) }
+            lost += wheel.advance(99 * TICK).size()
+        }
+
+        then: "Every key should be scheduled at its new deadline, whether it expired first or not"
+        lost == 0
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "A user without ping should become inactive after the idle timeout"() {
+        given: "A server checking idle users every 10 ms with a 200 ms timeout"
+        def server = new ChatServer(ChatInstance.initEmptyChat(), [], null)
+        server.checkIdleClients(new IdleConfig(200, 10))
+
+        when: "2 users log in, and only one keeps pinging"
+        def idle = server.login("idle")
+        def pinging = server.login("pinging")
+        10.times {
+            Thread.sleep(50)
+            server.login("pinging")
+        }
+
+        then: "Only the user without ping should be inactive"
+        server.users.find { it.account == idle.account }.currentStatus == Status.INACTIVE
+        server.users.find { it.account == pinging.account }.currentStatus == Status.ACTIVE
+
+        cleanup:
+        server.close()
+    }
+}